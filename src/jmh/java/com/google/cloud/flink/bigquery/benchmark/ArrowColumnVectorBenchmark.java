@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.flink.table.data.ColumnarRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.vector.VectorizedColumnBatch;
+import org.apache.flink.table.types.logical.RowType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.cloud.flink.bigquery.ArrowDecodeContext;
+import com.google.cloud.flink.bigquery.fake.ArrowBatches;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * The columnar path: {@link ArrowDecodeContext#loadColumnar(ByteString)} of a
+ * record batch, and every field of every row read through the
+ * {@code Arrow*ColumnVector} accessors of a {@link ColumnarRowData} view.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Arrow's memory access needs java.nio opened on JDK 9+, older JVMs ignore the flag
+@Fork(value = 1, jvmArgsAppend = { "-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.nio=ALL-UNNAMED" })
+public class ArrowColumnVectorBenchmark {
+
+	@Param({ "NARROW_NUMERIC", "WIDE_STRING", "NESTED", "DECIMAL", "TIMESTAMP" })
+	public BenchmarkSchema schema;
+
+	@Param({ "4096" })
+	public int rows;
+
+	private ArrowDecodeContext context;
+	private ByteString message;
+	private RowData.FieldGetter[] fieldGetters;
+	private ColumnarRowData loadedView;
+
+	@Setup
+	public void setup() throws IOException {
+		RowType rowType = schema.getRowType();
+		context = new ArrowDecodeContext(rowType);
+		message = UnsafeByteOperations.unsafeWrap(ArrowBatches.serializedBatch(rowType, rows, 42L));
+		fieldGetters = new RowData.FieldGetter[rowType.getFieldCount()];
+		for (int i = 0; i < fieldGetters.length; i++) {
+			fieldGetters[i] = RowData.createFieldGetter(rowType.getTypeAt(i), i);
+		}
+		loadedView = new ColumnarRowData(context.loadColumnar(message));
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.release();
+		context.close();
+	}
+
+	/** Loads a batch and releases it again, without reading any value. */
+	@Benchmark
+	public int loadColumnar() throws IOException {
+		int numRows = context.loadColumnar(message).getNumRows();
+		context.release();
+		return numRows;
+	}
+
+	/** Reads all values of the batch which is loaded by {@link #setup()}. */
+	@Benchmark
+	public void readAllFields(Blackhole blackhole) {
+		readAll(loadedView, blackhole);
+	}
+
+	/** Loads a batch, reads all its values and releases it again. */
+	@Benchmark
+	public void loadAndReadAllFields(Blackhole blackhole) throws IOException {
+		VectorizedColumnBatch batch = context.loadColumnar(message);
+		readAll(new ColumnarRowData(batch), blackhole);
+		context.release();
+	}
+
+	private void readAll(ColumnarRowData view, Blackhole blackhole) {
+		int numRows = rows;
+		for (int row = 0; row < numRows; row++) {
+			view.setRowId(row);
+			for (RowData.FieldGetter fieldGetter : fieldGetters) {
+				blackhole.consume(fieldGetter.getFieldOrNull(view));
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.cloud.flink.bigquery.ArrowDecodeContext;
+import com.google.cloud.flink.bigquery.arrow.util.ArrowToRowDataConverter;
+import com.google.cloud.flink.bigquery.fake.ArrowBatches;
+
+/**
+ * {@link ArrowToRowDataConverter} alone, over a record batch which is already
+ * loaded into its vectors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Arrow's memory access needs java.nio opened on JDK 9+, older JVMs ignore the flag
+@Fork(value = 1, jvmArgsAppend = { "-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.nio=ALL-UNNAMED" })
+public class ArrowToRowDataConverterBenchmark {
+
+	@Param({ "NARROW_NUMERIC", "WIDE_STRING", "NESTED", "DECIMAL", "TIMESTAMP" })
+	public BenchmarkSchema schema;
+
+	@Param({ "4096" })
+	public int rows;
+
+	private ArrowDecodeContext context;
+	private VectorSchemaRoot root;
+	private ArrowToRowDataConverter converter;
+
+	@Setup
+	public void setup() throws IOException {
+		context = new ArrowDecodeContext(schema.getRowType());
+		root = context.load(ArrowBatches.serializedBatch(schema.getRowType(), rows, 42L));
+		converter = ArrowToRowDataConverter.createRowConverter(schema.getRowType());
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.release();
+		context.close();
+	}
+
+	@Benchmark
+	public Object convert() {
+		return converter.convert(root);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.benchmark;
+
+import org.apache.flink.table.types.logical.ArrayType;
+import org.apache.flink.table.types.logical.BigIntType;
+import org.apache.flink.table.types.logical.BooleanType;
+import org.apache.flink.table.types.logical.DateType;
+import org.apache.flink.table.types.logical.DecimalType;
+import org.apache.flink.table.types.logical.DoubleType;
+import org.apache.flink.table.types.logical.IntType;
+import org.apache.flink.table.types.logical.LocalZonedTimestampType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.TimeType;
+import org.apache.flink.table.types.logical.TimestampType;
+import org.apache.flink.table.types.logical.VarCharType;
+
+/** Representative shapes of the tables read through the Storage Read API. */
+public enum BenchmarkSchema {
+
+	NARROW_NUMERIC(RowType.of(
+			new LogicalType[] { new BigIntType(), new IntType(), new DoubleType(), new BooleanType() },
+			new String[] { "id", "quantity", "score", "active" })),
+
+	WIDE_STRING(wideString(16)),
+
+	NESTED(RowType.of(
+			new LogicalType[] { new BigIntType(), new ArrayType(new VarCharType(VarCharType.MAX_LENGTH)),
+					RowType.of(new LogicalType[] { new DoubleType(), new DoubleType(),
+							new VarCharType(VarCharType.MAX_LENGTH) }, new String[] { "x", "y", "label" }) },
+			new String[] { "id", "tags", "point" })),
+
+	DECIMAL(RowType.of(new LogicalType[] { new BigIntType(), new DecimalType(38, 9), new DecimalType(18, 2) },
+			new String[] { "id", "numeric_value", "amount" })),
+
+	TIMESTAMP(RowType.of(
+			new LogicalType[] { new TimestampType(6), new LocalZonedTimestampType(6), new DateType(),
+					new TimeType(6) },
+			new String[] { "created_at", "event_time", "day", "time_of_day" }));
+
+	private final RowType rowType;
+
+	BenchmarkSchema(RowType rowType) {
+		this.rowType = rowType;
+	}
+
+	public RowType getRowType() {
+		return rowType;
+	}
+
+	private static RowType wideString(int columns) {
+		LogicalType[] types = new LogicalType[columns];
+		String[] names = new String[columns];
+		for (int i = 0; i < columns; i++) {
+			types[i] = new VarCharType(VarCharType.MAX_LENGTH);
+			names[i] = "text_" + i;
+		}
+		return RowType.of(types, names);
+	}
+}
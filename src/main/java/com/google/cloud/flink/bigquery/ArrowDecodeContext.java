@@ -0,0 +1,187 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flatbuf.MessageHeader;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ReadChannel;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.ipc.message.MessageMetadataResult;
+import org.apache.arrow.vector.ipc.message.MessageSerializer;
+import org.apache.flink.table.data.vector.ColumnVector;
+import org.apache.flink.table.data.vector.VectorizedColumnBatch;
+import org.apache.flink.table.types.logical.RowType;
+
+import com.google.cloud.flink.bigquery.arrow.util.ArrowSchemaConverter;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * Decoding state for serialized Arrow record batches, owned by a single reader.
+ * It keeps its own allocator, {@link VectorSchemaRoot} and {@link VectorLoader},
+ * which are refilled for every batch, and reuses the message body buffer once
+ * the previous batch has been released. The body is copied straight from the
+ * response {@link ByteString} into that buffer, without an intermediate
+ * {@code byte[]}.
+ *
+ * <p>
+ * A context must only be used by one thread at a time.
+ */
+public class ArrowDecodeContext implements AutoCloseable {
+
+	// Arrow recommends a single root allocator per JVM, every context gets a child
+	private static final BufferAllocator ROOT_ALLOCATOR = new RootAllocator(Long.MAX_VALUE);
+
+	private final RowType rowType;
+	@Nullable
+	private final int[][] columnPaths;
+	private final BufferAllocator allocator;
+	private final VectorSchemaRoot root;
+	private final VectorLoader loader;
+
+	private ArrowBuf body;
+	private VectorizedColumnBatch columnarBatch;
+
+	public ArrowDecodeContext(RowType rowType) {
+		this(rowType, null);
+	}
+
+	/**
+	 * @param columnPaths The index paths of the fields which are the columns of
+	 *                    {@link #loadColumnar(ByteString)}, or null for all
+	 *                    top level fields.
+	 */
+	public ArrowDecodeContext(RowType rowType, @Nullable int[][] columnPaths) {
+		this.rowType = rowType;
+		this.columnPaths = columnPaths;
+		this.allocator = newAllocator("bigquery-arrow-decode");
+		this.root = VectorSchemaRoot.create(ArrowSchemaConverter.convertToSchema(rowType), allocator);
+		this.loader = new VectorLoader(root);
+	}
+
+	/** Creates an allocator for Arrow memory owned by a single reader. */
+	public static BufferAllocator newAllocator(String name) {
+		return ROOT_ALLOCATOR.newChildAllocator(name, 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Loads a serialized record batch into the vectors of this context. The
+	 * returned root stays valid until {@link #release()} or the next load.
+	 */
+	public VectorSchemaRoot load(ByteString message) throws IOException {
+		// only the small metadata header goes through a channel
+		ReadChannel channel = new ReadChannel(Channels.newChannel(message.newInput()));
+		MessageMetadataResult metadata = MessageSerializer.readMessage(channel);
+		if (metadata == null || metadata.headerType() != MessageHeader.RecordBatch) {
+			throw new IOException("Expected a serialized Arrow record batch");
+		}
+		long bodyOffset = channel.bytesRead();
+		long bodyLength = metadata.getMessageBodyLength();
+		if (message.size() - bodyOffset < bodyLength) {
+			throw new IOException("Unexpected end of Arrow record batch body");
+		}
+		ArrowBuf messageBody = bodyBuffer(bodyLength);
+		long index = 0;
+		for (ByteBuffer chunk : message.substring((int) bodyOffset, (int) (bodyOffset + bodyLength))
+				.asReadOnlyByteBufferList()) {
+			int length = chunk.remaining();
+			messageBody.setBytes(index, chunk);
+			index += length;
+		}
+		messageBody.writerIndex(bodyLength);
+		// deserializing consumes one reference to the body, keep ours for the next batch
+		messageBody.getReferenceManager().retain();
+		try (ArrowRecordBatch batch = MessageSerializer.deserializeRecordBatch(metadata, messageBody)) {
+			loader.load(batch);
+		}
+		return root;
+	}
+
+	/** Same as {@link #load(ByteString)}, for a message that is already on the heap. */
+	public VectorSchemaRoot load(byte[] message) throws IOException {
+		return load(UnsafeByteOperations.unsafeWrap(message));
+	}
+
+	/**
+	 * Loads a serialized record batch and returns a columnar view over it. The
+	 * column vectors wrap the field vectors of this context, so they are only
+	 * created once.
+	 */
+	public VectorizedColumnBatch loadColumnar(ByteString message) throws IOException {
+		load(message);
+		if (columnarBatch == null) {
+			ColumnVector[] columns;
+			if (columnPaths == null) {
+				columns = new ColumnVector[rowType.getFieldCount()];
+				for (int i = 0; i < columns.length; i++) {
+					columns[i] = ArrowSchemaConverter.createColumnVector(root.getVector(i), rowType.getTypeAt(i));
+				}
+			} else {
+				columns = new ColumnVector[columnPaths.length];
+				for (int i = 0; i < columns.length; i++) {
+					columns[i] = ArrowSchemaConverter.createColumnVector(
+							ArrowSchemaConverter.getVector(root, columnPaths[i]),
+							ArrowSchemaConverter.getType(rowType, columnPaths[i]));
+				}
+			}
+			columnarBatch = new VectorizedColumnBatch(columns);
+		}
+		columnarBatch.setNumRows(root.getRowCount());
+		return columnarBatch;
+	}
+
+	/** Same as {@link #loadColumnar(ByteString)}, for a message that is already on the heap. */
+	public VectorizedColumnBatch loadColumnar(byte[] message) throws IOException {
+		return loadColumnar(UnsafeByteOperations.unsafeWrap(message));
+	}
+
+	/** Releases the vectors of the last loaded batch. */
+	public void release() {
+		root.clear();
+	}
+
+	private ArrowBuf bodyBuffer(long length) {
+		// the body can only be overwritten when no vector holds a slice of it anymore
+		if (body == null || body.capacity() < length || body.getReferenceManager().getRefCount() > 1) {
+			if (body != null) {
+				body.close();
+			}
+			body = allocator.buffer(length);
+		}
+		body.clear();
+		return body;
+	}
+
+	@Override
+	public void close() {
+		root.close();
+		if (body != null) {
+			body.close();
+			body = null;
+		}
+		allocator.close();
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.table.connector.ChangelogMode;
+import org.apache.flink.table.connector.format.DecodingFormat;
+import org.apache.flink.table.connector.source.DynamicTableSource;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.DataType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.utils.DataTypeUtils;
+
+/**
+ * Decodes the Arrow record batches of a ReadSession. Besides the rows of the
+ * whole table it can produce the fields of a {@link FieldProjection}, since the
+ * record batches then only contain the selected fields.
+ */
+public class ArrowDecodingFormat implements DecodingFormat<DeserializationSchema<RowData>> {
+
+	private final boolean columnar;
+
+	public ArrowDecodingFormat(boolean columnar) {
+		this.columnar = columnar;
+	}
+
+	/** Whether rows are emitted as columnar views over the record batches. */
+	public boolean isColumnar() {
+		return columnar;
+	}
+
+	@Override
+	public DeserializationSchema<RowData> createRuntimeDecoder(DynamicTableSource.Context context,
+			DataType producedDataType) {
+		final RowType rowType = (RowType) producedDataType.getLogicalType();
+		final TypeInformation<RowData> rowDataTypeInfo = context.createTypeInformation(producedDataType);
+		return new ArrowRowDataDeserializationSchema(rowType, rowDataTypeInfo, columnar);
+	}
+
+	/**
+	 * Creates a decoder for the record batches of a ReadSession which selects the
+	 * fields of the projection, producing rows of the projected fields.
+	 */
+	public DeserializationSchema<RowData> createRuntimeDecoder(DynamicTableSource.Context context,
+			DataType physicalDataType, int[][] projection) {
+		FieldProjection fieldProjection = FieldProjection.of((RowType) physicalDataType.getLogicalType(), projection);
+		DataType producedDataType = DataTypeUtils.projectRow(physicalDataType, projection);
+		final TypeInformation<RowData> rowDataTypeInfo = context.createTypeInformation(producedDataType);
+		return new ArrowRowDataDeserializationSchema(fieldProjection.getReadType(),
+				fieldProjection.isIdentity() ? null : fieldProjection.getReadPaths(), rowDataTypeInfo, columnar);
+	}
+
+	@Override
+	public ChangelogMode getChangelogMode() {
+		return ChangelogMode.insertOnly();
+	}
+}
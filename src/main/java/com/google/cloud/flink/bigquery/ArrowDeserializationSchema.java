@@ -17,76 +17,58 @@ package com.google.cloud.flink.bigquery;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
 
-import org.apache.arrow.memory.BufferAllocator;
-import org.apache.arrow.memory.RootAllocator;
-import org.apache.arrow.vector.FieldVector;
-import org.apache.arrow.vector.VectorLoader;
 import org.apache.arrow.vector.VectorSchemaRoot;
-import org.apache.arrow.vector.ipc.ReadChannel;
-import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
-import org.apache.arrow.vector.ipc.message.MessageSerializer;
-import org.apache.arrow.vector.types.pojo.Field;
-import org.apache.arrow.vector.types.pojo.Schema;
-import org.apache.arrow.vector.util.ByteArrayReadableSeekableByteChannel;
 import org.apache.flink.api.common.serialization.DeserializationSchema;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.RowType;
 import org.apache.flink.util.Preconditions;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
 public class ArrowDeserializationSchema<T> implements DeserializationSchema<T>, Serializable {
 	private static final long serialVersionUID = 1L;
 
-	private BufferAllocator allocator;
 	private final TypeInformation<RowData> typeInfo;
-	static ArrowRecordBatch deserializedBatch;
+	private final RowType rowType;
+	private final Class<T> recordClazz;
+	private transient ArrowDecodeContext decodeContext;
 
-	public static ArrowDeserializationSchema<VectorSchemaRoot> forGeneric(Schema schema,
+	public static ArrowDeserializationSchema<VectorSchemaRoot> forGeneric(RowType rowType,
 			TypeInformation<RowData> typeInfo) {
-		return new ArrowDeserializationSchema<>(VectorSchemaRoot.class, schema, typeInfo);
+		return new ArrowDeserializationSchema<>(VectorSchemaRoot.class, rowType, typeInfo);
 	}
 
-	private static VectorSchemaRoot root;
-	private VectorLoader loader;
-	List<FieldVector> vectors = new ArrayList<>();
-	private Schema schema;
-	private final Class<T> recordClazz;
-
-	ArrowDeserializationSchema(Class<T> recordClazz, Schema schema, TypeInformation<RowData> typeInfo) {
+	ArrowDeserializationSchema(Class<T> recordClazz, RowType rowType, TypeInformation<RowData> typeInfo) {
 		Preconditions.checkNotNull(recordClazz, "Arrow record class must not be null.");
+		Preconditions.checkNotNull(rowType, "Arrow row type must not be null.");
 		this.typeInfo = typeInfo;
+		this.rowType = rowType;
 		this.recordClazz = recordClazz;
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Loads the record batch into the vectors owned by this instance. The returned
+	 * root is only valid until {@link #release()} or the next call.
+	 */
 	@Override
 	public T deserialize(byte[] message) throws IOException {
-		if (schema == null) {
-			this.schema = ArrowRowDataDeserializationSchema.getArrowSchema();
-		}
-		checkArrowInitialized();
-		deserializedBatch = MessageSerializer
-				.deserializeRecordBatch(new ReadChannel(new ByteArrayReadableSeekableByteChannel(message)), allocator);
-		loader.load(deserializedBatch);
-		return (T) root;
+		return deserialize(UnsafeByteOperations.unsafeWrap(message));
 	}
 
-	void checkArrowInitialized() {
-		Preconditions.checkNotNull(schema);
-		if (root != null) {
-			return;
-		}
-		if (allocator == null) {
-			this.allocator = new RootAllocator(Long.MAX_VALUE);
-		}
-		for (Field field : schema.getFields()) {
-			vectors.add(field.createVector(allocator));
+	/**
+	 * Same as {@link #deserialize(byte[])}, but reads the batch directly from the
+	 * response bytes.
+	 */
+	@SuppressWarnings("unchecked")
+	public T deserialize(ByteString message) throws IOException {
+		if (decodeContext == null) {
+			decodeContext = new ArrowDecodeContext(rowType);
 		}
-		root = new VectorSchemaRoot(vectors);
-		this.loader = new VectorLoader(root);
+		return (T) decodeContext.load(message);
 	}
 
 	@Override
@@ -109,16 +91,26 @@ public class ArrowDeserializationSchema<T> implements DeserializationSchema<T>,
 			return false;
 		}
 		ArrowDeserializationSchema<?> that = (ArrowDeserializationSchema<?>) o;
-		return recordClazz.equals(that.recordClazz) && Objects.equals(schema, that.schema);
+		return recordClazz.equals(that.recordClazz) && Objects.equals(rowType, that.rowType);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(recordClazz, schema);
+		return Objects.hash(recordClazz, rowType);
+	}
+
+	/** Releases the vectors of the last deserialized batch. */
+	public void release() {
+		if (decodeContext != null) {
+			decodeContext.release();
+		}
 	}
 
-	public static void close() {
-		deserializedBatch.close();
-		root.clear();
+	/** Frees all Arrow memory held by this instance. */
+	public void close() {
+		if (decodeContext != null) {
+			decodeContext.close();
+			decodeContext = null;
+		}
 	}
 }
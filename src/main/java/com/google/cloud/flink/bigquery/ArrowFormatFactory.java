@@ -16,48 +16,38 @@
 package com.google.cloud.flink.bigquery;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
 import org.apache.flink.api.common.serialization.DeserializationSchema;
 import org.apache.flink.api.common.serialization.SerializationSchema;
-import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.configuration.ConfigOption;
+import org.apache.flink.configuration.ConfigOptions;
 import org.apache.flink.configuration.ReadableConfig;
-import org.apache.flink.table.connector.ChangelogMode;
 import org.apache.flink.table.connector.format.DecodingFormat;
 import org.apache.flink.table.connector.format.EncodingFormat;
-import org.apache.flink.table.connector.source.DynamicTableSource;
 import org.apache.flink.table.data.RowData;
 import org.apache.flink.table.factories.DeserializationFormatFactory;
 import org.apache.flink.table.factories.DynamicTableFactory.Context;
 import org.apache.flink.table.factories.FactoryUtil;
 import org.apache.flink.table.factories.SerializationFormatFactory;
-import org.apache.flink.table.types.DataType;
-import org.apache.flink.table.types.logical.RowType;
 
 public class ArrowFormatFactory implements DeserializationFormatFactory, SerializationFormatFactory {
 
 	public static final String IDENTIFIER = "arrow";
 
+	// emit reusable ColumnarRowData views over each Arrow batch instead of copying
+	// every row into a BinaryRowData
+	public static final ConfigOption<Boolean> COLUMNAR = ConfigOptions.key("columnar").booleanType()
+			.defaultValue(false);
+
 	@Override
 	public DecodingFormat<DeserializationSchema<RowData>> createDecodingFormat(Context context,
 			ReadableConfig formatOptions) {
 		FactoryUtil.validateFactoryOptions(this, formatOptions);
+		final boolean columnar = formatOptions.get(COLUMNAR);
 
-		return new DecodingFormat<DeserializationSchema<RowData>>() {
-			@Override
-			public DeserializationSchema<RowData> createRuntimeDecoder(DynamicTableSource.Context context,
-					DataType producedDataType) {
-				final RowType rowType = (RowType) producedDataType.getLogicalType();
-				final TypeInformation<RowData> rowDataTypeInfo = context.createTypeInformation(producedDataType);
-				return new ArrowRowDataDeserializationSchema(rowType, rowDataTypeInfo);
-			}
-
-			@Override
-			public ChangelogMode getChangelogMode() {
-				return ChangelogMode.insertOnly();
-			}
-		};
+		return new ArrowDecodingFormat(columnar);
 	}
 
 	@Override
@@ -72,7 +62,9 @@ public class ArrowFormatFactory implements DeserializationFormatFactory, Seriali
 
 	@Override
 	public Set<ConfigOption<?>> optionalOptions() {
-		return Collections.emptySet();
+		final Set<ConfigOption<?>> options = new HashSet<>();
+		options.add(COLUMNAR);
+		return options;
 	}
 
 	@Override
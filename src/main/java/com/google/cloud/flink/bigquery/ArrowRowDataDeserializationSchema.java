@@ -17,39 +17,71 @@ package com.google.cloud.flink.bigquery;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
 import javax.annotation.Nullable;
 
 import org.apache.arrow.vector.VectorSchemaRoot;
-import org.apache.arrow.vector.types.pojo.Schema;
 import org.apache.flink.api.common.serialization.DeserializationSchema;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
-import org.apache.flink.table.data.GenericRowData;
 import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.LogicalTypeRoot;
 import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.utils.LogicalTypeChecks;
 import org.apache.flink.util.Collector;
 
-import com.google.cloud.flink.bigquery.arrow.util.ArrowSchemaConverter;
 import com.google.cloud.flink.bigquery.arrow.util.ArrowToRowDataConverter;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 
 public class ArrowRowDataDeserializationSchema implements DeserializationSchema<RowData>, Serializable {
 
 	public static final long serialVersionUID = 1L;
 	public TypeInformation<RowData> typeInfo;
-	@SuppressWarnings("rawtypes")
-	public DeserializationSchema<VectorSchemaRoot> nestedSchema;
+	public ArrowDeserializationSchema<VectorSchemaRoot> nestedSchema;
 	public ArrowToRowDataConverter runtimeConverter;
-	List<GenericRowData> rowDataList;
-
-	public static Schema arrowSchema;
+	private final RowType rowType;
+	@Nullable
+	private final int[][] projection;
+	private final boolean columnar;
 
 	public ArrowRowDataDeserializationSchema(RowType rowType, TypeInformation<RowData> typeInfo) {
+		this(rowType, typeInfo, false);
+	}
+
+	public ArrowRowDataDeserializationSchema(RowType rowType, TypeInformation<RowData> typeInfo, boolean columnar) {
+		this(rowType, null, typeInfo, columnar);
+	}
+
+	/**
+	 * @param rowType    The type of the record batches.
+	 * @param projection The index paths of the fields of the produced rows in
+	 *                   the record batches, or null for all top level fields.
+	 */
+	public ArrowRowDataDeserializationSchema(RowType rowType, @Nullable int[][] projection,
+			TypeInformation<RowData> typeInfo, boolean columnar) {
+		// ColumnarRowData and ColumnarArrayData cannot read maps
+		if (columnar && LogicalTypeChecks.hasNested(rowType, type -> type.getTypeRoot() == LogicalTypeRoot.MAP)) {
+			throw new IllegalArgumentException(
+					"MAP columns can only be read when the Arrow format is not columnar: " + rowType);
+		}
 		this.typeInfo = typeInfo;
-		arrowSchema = ArrowSchemaConverter.convertToSchema(rowType);
-		this.nestedSchema = ArrowDeserializationSchema.forGeneric(arrowSchema, typeInfo);
-		this.runtimeConverter = ArrowToRowDataConverter.createRowConverter(rowType);
+		this.rowType = rowType;
+		this.projection = projection;
+		this.columnar = columnar;
+		this.nestedSchema = ArrowDeserializationSchema.forGeneric(rowType, typeInfo);
+		this.runtimeConverter = projection == null ? ArrowToRowDataConverter.createRowConverter(rowType)
+				: ArrowToRowDataConverter.createProjectedRowConverter(rowType, projection);
+	}
+
+	/**
+	 * Whether the rows should be read as columnar views through an
+	 * {@link ArrowDecodeContext} instead of being copied one by one.
+	 */
+	public boolean isColumnar() {
+		return columnar;
 	}
 
 	@Override
@@ -62,26 +94,49 @@ public class ArrowRowDataDeserializationSchema implements DeserializationSchema<
 		this.nestedSchema.open(context);
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public void deserialize(@Nullable byte[] message, Collector<RowData> out) throws IOException {
 		if (message == null) {
 			throw new FlinkBigQueryException("Deserializing message is empty");
 		}
+		deserialize(UnsafeByteOperations.unsafeWrap(message), out);
+	}
+
+	/**
+	 * Deserializes a record batch straight from the bytes of a ReadRowsResponse,
+	 * so the payload is only copied once into Arrow memory.
+	 */
+	public void deserialize(ByteString message, Collector<RowData> out) throws IOException {
 		try {
-			VectorSchemaRoot root = nestedSchema.deserialize(message);
-			List<GenericRowData> rowdatalist = (List<GenericRowData>) runtimeConverter.convert(root);
-			for (int i = 0; i < rowdatalist.size(); i++) {
-				out.collect(rowdatalist.get(i));
-			}
-			ArrowDeserializationSchema.close();
+			collectRows(nestedSchema.deserialize(message), out);
 		} catch (Exception ex) {
 			throw new FlinkBigQueryException("Error while deserializing Arrow type", ex);
+		} finally {
+			nestedSchema.release();
+		}
+	}
+
+	/** Converts the rows of a loaded batch into rows which do not depend on the vectors. */
+	@SuppressWarnings("unchecked")
+	public void collectRows(VectorSchemaRoot root, Collector<RowData> out) {
+		List<RowData> rowdatalist = (List<RowData>) runtimeConverter.convert(root);
+		for (int i = 0; i < rowdatalist.size(); i++) {
+			out.collect(rowdatalist.get(i));
 		}
 	}
 
-	public static Schema getArrowSchema() {
-		return arrowSchema;
+	/** The type of the record batches, which may contain more fields than the produced rows. */
+	public RowType getRowType() {
+		return rowType;
+	}
+
+	/**
+	 * Creates decoding state for the columnar read path. Every context owns its
+	 * own vectors, so batches decoded by different contexts can be used
+	 * concurrently.
+	 */
+	public ArrowDecodeContext createDecodeContext() {
+		return new ArrowDecodeContext(rowType, projection);
 	}
 
 	@Override
@@ -95,6 +150,8 @@ public class ArrowRowDataDeserializationSchema implements DeserializationSchema<
 			rowData = (RowData) runtimeConverter.convert(root);
 		} catch (Exception ex) {
 			throw new FlinkBigQueryException("Error while deserializing Arrow type", ex);
+		} finally {
+			nestedSchema.release();
 		}
 		return rowData;
 	}
@@ -108,16 +165,22 @@ public class ArrowRowDataDeserializationSchema implements DeserializationSchema<
 			return false;
 		}
 		ArrowRowDataDeserializationSchema that = (ArrowRowDataDeserializationSchema) o;
-		return nestedSchema.equals(that.nestedSchema) && typeInfo.equals(that.typeInfo);
+		return columnar == that.columnar && nestedSchema.equals(that.nestedSchema) && typeInfo.equals(that.typeInfo)
+				&& Arrays.deepEquals(projection, that.projection);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(nestedSchema, typeInfo);
+		return Objects.hash(nestedSchema, typeInfo, columnar, Arrays.deepHashCode(projection));
 	}
 
 	@Override
 	public boolean isEndOfStream(RowData nextElement) {
 		return false;
 	}
+
+	/** Frees the Arrow memory used by the row read path. */
+	public void close() {
+		nestedSchema.close();
+	}
 }
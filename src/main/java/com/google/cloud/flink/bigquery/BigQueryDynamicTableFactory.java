@@ -15,13 +15,12 @@
  */
 package com.google.cloud.flink.bigquery;
 
-import java.io.IOException;
-
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 import org.apache.flink.api.common.serialization.DeserializationSchema;
@@ -41,7 +40,6 @@ import org.apache.flink.table.types.DataType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.cloud.bigquery.storage.v1.ReadSession;
 import com.google.cloud.flink.bigquery.model.Configuration;
 
 public final class BigQueryDynamicTableFactory implements DynamicTableSourceFactory, DynamicTableSinkFactory {
@@ -51,7 +49,6 @@ public final class BigQueryDynamicTableFactory implements DynamicTableSourceFact
 
 	public static final ConfigOption<String> CONFIGOPTIONS = ConfigOptions.key("configOptions").stringType()
 			.noDefaultValue();
-	public static ReadSession readSession;
 
 	@Override
 	public String factoryIdentifier() {
@@ -89,28 +86,19 @@ public final class BigQueryDynamicTableFactory implements DynamicTableSourceFact
 			configOption.put(entry[0].trim(),entry.length == 2 ? entry[1].trim():"");
 		}
 
-		final String table = configOption.get("table");
-		final String dataset = configOption.get("dataset");
-		final String projectId = configOption.get("projectId");
-
 		log.info("Config Options -> " + configOption);
-		DataType producedDataType = null;
-		try {
-//			List<DataType> datatypeList = context.getCatalogTable().getResolvedSchema().getColumnDataTypes();
-//			List<String> columnNameList = context.getCatalogTable().getResolvedSchema().getColumnNames();
-//			if (datatypeList.indexOf(DataTypes.INT())>-1 ) {
-//				datatypeList.set(datatypeList.indexOf(DataTypes.INT()),DataTypes.BIGINT());
-//			}
-//			
-//			context.getCatalogTable().getResolvedSchema();
-			producedDataType = context.getCatalogTable().getResolvedSchema().toPhysicalRowDataType();
-			readSession = BigQueryReadSession.getReadsession(projectId, table, dataset, configOption);
-		} catch (IOException ex) {
-			log.error("Error while reading big query session", ex);
-			throw new FlinkBigQueryException("Error while reading big query session", ex);
-
+		DataType physicalDataType = context.getCatalogTable().getResolvedSchema().toPhysicalRowDataType();
+		List<String> partitionKeys = context.getCatalogTable().getPartitionKeys();
+		if (!partitionKeys.isEmpty()) {
+			// only a table whose partitions hold all of its rows can be pruned by Flink
+			Optional<List<Map<String, String>>> partitions = BigQueryPartitions.listPartitions(configOption,
+					partitionKeys);
+			if (partitions.isPresent()) {
+				return new PartitionedBigQueryDynamicTableSource(decodingFormat, physicalDataType, configOption,
+						partitions.get());
+			}
 		}
-		return new BigQueryDynamicTableSource(decodingFormat, producedDataType);
+		return new BigQueryDynamicTableSource(decodingFormat, physicalDataType, configOption);
 	}
 
 	@Override
@@ -15,26 +15,67 @@
  */
 package com.google.cloud.flink.bigquery;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 import org.apache.flink.api.common.serialization.DeserializationSchema;
-import org.apache.flink.streaming.api.functions.source.SourceFunction;
 import org.apache.flink.table.connector.ChangelogMode;
 import org.apache.flink.table.connector.format.DecodingFormat;
 import org.apache.flink.table.connector.source.DynamicTableSource;
 import org.apache.flink.table.connector.source.ScanTableSource;
-import org.apache.flink.table.connector.source.SourceFunctionProvider;
+import org.apache.flink.table.connector.source.SourceProvider;
+import org.apache.flink.table.connector.source.abilities.SupportsFilterPushDown;
+import org.apache.flink.table.connector.source.abilities.SupportsLimitPushDown;
+import org.apache.flink.table.connector.source.abilities.SupportsProjectionPushDown;
 import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.expressions.ResolvedExpression;
 import org.apache.flink.table.types.DataType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.utils.DataTypeUtils;
+
+import com.google.cloud.flink.bigquery.source.BigQuerySource;
+
+/**
+ * Reads a BigQuery table through the Storage Read API. Only the fields the
+ * query needs are selected in the ReadSession, nested fields included, and the
+ * filters that compile to a row restriction are evaluated by BigQuery. A
+ * pushed down limit is read from fewer streams and ends the reads early.
+ *
+ * @see PartitionedBigQueryDynamicTableSource
+ */
+public class BigQueryDynamicTableSource implements ScanTableSource, SupportsProjectionPushDown,
+		SupportsFilterPushDown, SupportsLimitPushDown {
 
-public final class BigQueryDynamicTableSource implements ScanTableSource {
+	// a small limit is read from one stream per this many rows
+	private static final long LIMIT_ROWS_PER_STREAM = 100_000L;
 
 	private final DecodingFormat<DeserializationSchema<RowData>> decodingFormat;
-	private final DataType producedDataType;
+	private final DataType physicalDataType;
+	private final Map<String, String> configOption;
+	private int[][] projectedFields;
+	private List<String> pushedFilters = new ArrayList<>();
+	private long limit = -1;
+	private List<Map<String, String>> remainingPartitions;
 
 	public BigQueryDynamicTableSource(DecodingFormat<DeserializationSchema<RowData>> decodingFormat,
-			DataType producedDataType) {
+			DataType physicalDataType, Map<String, String> configOption) {
 
 		this.decodingFormat = decodingFormat;
-		this.producedDataType = producedDataType;
+		this.physicalDataType = physicalDataType;
+		this.configOption = configOption;
+	}
+
+	/** Copies the source with everything pushed down into it so far. */
+	BigQueryDynamicTableSource(BigQueryDynamicTableSource source) {
+
+		this(source.decodingFormat, source.physicalDataType, source.configOption);
+		this.projectedFields = source.projectedFields;
+		this.pushedFilters = new ArrayList<>(source.pushedFilters);
+		this.limit = source.limit;
+		this.remainingPartitions = source.remainingPartitions;
 	}
 
 	@Override
@@ -46,21 +87,122 @@ public final class BigQueryDynamicTableSource implements ScanTableSource {
 	@Override
 	public ScanRuntimeProvider getScanRuntimeProvider(ScanContext runtimeProviderContext) {
 
+		int[][] projection = projectedFields == null ? allFields() : projectedFields;
+		FieldProjection fieldProjection = FieldProjection.of((RowType) physicalDataType.getLogicalType(), projection);
+		Map<String, String> sessionOptions = new HashMap<>(configOption);
+		sessionOptions.put("selectedfields", String.join(",", fieldProjection.getSelectedFields()));
+		FlinkBigQueryConfig bqconfig = BigQueryReadSession.getConfig(configOption);
+		Optional<String> filter = getRowRestriction(bqconfig);
+		if (filter.isPresent()) {
+			sessionOptions.put("filter", filter.get());
+		} else {
+			sessionOptions.remove("filter");
+		}
+		if (limit >= 0) {
+			sessionOptions.put("limit", Long.toString(limit));
+			sessionOptions.put("maxParallelism", Integer.toString(getMaxStreams(bqconfig)));
+		}
+
 		// create runtime classes that are shipped to the cluster
-		final DeserializationSchema<RowData> deserializer = decodingFormat.createRuntimeDecoder(runtimeProviderContext,
-				producedDataType);
-		final SourceFunction<RowData> sourceFunction = new BigQuerySourceFunction(deserializer);
-		return SourceFunctionProvider.of(sourceFunction, false);
+		final DeserializationSchema<RowData> deserializer;
+		if (decodingFormat instanceof ArrowDecodingFormat) {
+			deserializer = ((ArrowDecodingFormat) decodingFormat).createRuntimeDecoder(runtimeProviderContext,
+					physicalDataType, projection);
+		} else {
+			deserializer = decodingFormat.createRuntimeDecoder(runtimeProviderContext,
+					DataTypeUtils.projectRow(physicalDataType, projection));
+		}
+		// the ReadSession is created by the split enumerator when the job starts
+		return SourceProvider.of(new BigQuerySource(deserializer, sessionOptions));
+	}
+
+	/**
+	 * The row restriction of the ReadSession. The partitions left after pruning
+	 * always restrict it, even when the filter option replaces the pushed
+	 * filters, because Flink has removed the partition filters from the plan.
+	 */
+	Optional<String> getRowRestriction(FlinkBigQueryConfig bqconfig) {
+		Optional<String> filter = FlinkFilterUtils.getCompiledFilter(bqconfig.isCombinePushedDownFilters(),
+				bqconfig.getFilter(), pushedFilters);
+		if (remainingPartitions == null) {
+			return filter;
+		}
+		String partitionRestriction = "(" + BigQueryPartitions.toRowRestriction(remainingPartitions) + ")";
+		return Optional.of(filter.map(f -> "(" + f + ") AND " + partitionRestriction).orElse(partitionRestriction));
+	}
+
+	@Override
+	public boolean supportsNestedProjection() {
+		// the columnar views can only pick top level fields out of a batch
+		return decodingFormat instanceof ArrowDecodingFormat && !((ArrowDecodingFormat) decodingFormat).isColumnar();
+	}
+
+	@Override
+	public void applyProjection(int[][] projectedFields) {
+		this.projectedFields = projectedFields;
+	}
+
+	@Override
+	public Result applyFilters(List<ResolvedExpression> filters) {
+		List<ResolvedExpression> acceptedFilters = new ArrayList<>();
+		List<ResolvedExpression> remainingFilters = new ArrayList<>();
+		List<String> compiledFilters = new ArrayList<>();
+		for (ResolvedExpression filter : filters) {
+			Optional<String> compiled = FlinkFilterUtils.compile(filter);
+			if (compiled.isPresent()) {
+				acceptedFilters.add(filter);
+				compiledFilters.add(compiled.get());
+			} else {
+				remainingFilters.add(filter);
+			}
+		}
+		this.pushedFilters = compiledFilters;
+		FlinkBigQueryConfig bqconfig = BigQueryReadSession.getConfig(configOption);
+		if (!bqconfig.getPushAllFilters()) {
+			// the row restriction only prunes the rows, Flink still evaluates every filter
+			remainingFilters = filters;
+		} else if (bqconfig.getFilter().isPresent() && !bqconfig.isCombinePushedDownFilters()) {
+			// the filter option replaces the pushed filters, so none of them is applied
+			remainingFilters = filters;
+		}
+		return Result.of(acceptedFilters, remainingFilters);
+	}
+
+	@Override
+	public void applyLimit(long limit) {
+		this.limit = limit;
+	}
+
+	/** Enough streams for the limit, but never more than configured. */
+	private int getMaxStreams(FlinkBigQueryConfig bqconfig) {
+		long streams = Math.max(1, (limit + LIMIT_ROWS_PER_STREAM - 1) / LIMIT_ROWS_PER_STREAM);
+		if (bqconfig.getMaxParallelism().isPresent()) {
+			streams = Math.min(streams, bqconfig.getMaxParallelism().getAsInt());
+		}
+		return (int) Math.min(streams, Integer.MAX_VALUE);
+	}
+
+	/** Restricts the rows of the session to the partitions left after pruning. */
+	void restrictToPartitions(List<Map<String, String>> remainingPartitions) {
+		this.remainingPartitions = remainingPartitions;
 	}
 
 	@Override
 	public DynamicTableSource copy() {
 
-		return new BigQueryDynamicTableSource(decodingFormat, producedDataType);
+		return new BigQueryDynamicTableSource(this);
 	}
 
 	@Override
 	public String asSummaryString() {
 		return "BigQuery Table Source";
 	}
+
+	private int[][] allFields() {
+		int[][] fields = new int[((RowType) physicalDataType.getLogicalType()).getFieldCount()][];
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = new int[] { i };
+		}
+		return fields;
+	}
 }
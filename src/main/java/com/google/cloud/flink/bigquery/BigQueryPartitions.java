@@ -0,0 +1,159 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TimePartitioning;
+import com.google.cloud.flink.bigquery.common.BigQueryClientPool.Lease;
+
+/**
+ * Maps the partitions of a BigQuery table to Flink partitions, and the
+ * partitions left after pruning back to a row restriction.
+ *
+ * <p>
+ * Flink prunes a partition by evaluating the filter on its partition value, so
+ * only partitions whose rows all have the same value of the partition column
+ * can be exposed: daily partitions of a DATE column, and the partition of its
+ * NULL values. Other partitioned tables are still pruned by BigQuery when the
+ * filters on their partition column are pushed down.
+ *
+ * <p>
+ * The __UNPARTITIONED__ partition holds the dates out of the range of daily
+ * partitions, which have no single partition value. Flink would prune it away
+ * together with the partition filters, so a table with such rows has no
+ * partitions to list and is only pruned through its pushed filters.
+ */
+public final class BigQueryPartitions {
+
+	private static final Logger log = LoggerFactory.getLogger(BigQueryPartitions.class);
+
+	/** Partition id of the rows whose partition column is NULL. */
+	static final String NULL_PARTITION_ID = "__NULL__";
+
+	/** Partition id of the rows whose date is out of the range of daily partitions. */
+	static final String UNPARTITIONED_PARTITION_ID = "__UNPARTITIONED__";
+
+	private static final DateTimeFormatter PARTITION_ID_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+	private BigQueryPartitions() {
+	}
+
+	/**
+	 * Lists the partitions of the table given by the config options, or only the
+	 * one of the "datePartition" option if it is set. Nothing is listed when some
+	 * rows are out of the range of daily partitions.
+	 */
+	public static Optional<List<Map<String, String>>> listPartitions(Map<String, String> configOption,
+			List<String> partitionKeys) {
+		FlinkBigQueryConfig bqconfig = BigQueryReadSession.getConfig(configOption);
+		TableId tableId = TableId.of(configOption.get("dataset"), configOption.get("table"));
+		try (Lease<BigQuery> lease = BigQueryReadSession.acquireBigQuery(configOption)) {
+			BigQuery bigquery = lease.get();
+			Table table = bigquery.getTable(tableId);
+			if (table == null) {
+				throw new IllegalArgumentException("Table " + tableId + " does not exist");
+			}
+			String partitionField = getPartitionField(table, partitionKeys);
+			String decoratedTable = bqconfig.getTableId().getTable();
+			List<String> partitionIds = decoratedTable.contains("$")
+					? Collections.singletonList(decoratedTable.substring(decoratedTable.indexOf('$') + 1))
+					: bigquery.listPartitions(tableId);
+			return toPartitions(partitionField, partitionIds);
+		} catch (IOException e) {
+			throw new FlinkBigQueryException("Error while listing the partitions of " + tableId, e);
+		}
+	}
+
+	/** Checks that the table is partitioned by day on the DATE column of the partition keys. */
+	static String getPartitionField(Table table, List<String> partitionKeys) {
+		if (partitionKeys.size() != 1) {
+			throw new IllegalArgumentException(
+					"A BigQuery table is partitioned by a single column, not by " + partitionKeys);
+		}
+		String partitionKey = partitionKeys.get(0);
+		if (!(table.getDefinition() instanceof StandardTableDefinition)) {
+			throw new IllegalArgumentException(table.getTableId() + " is not a partitioned table");
+		}
+		StandardTableDefinition definition = table.getDefinition();
+		TimePartitioning timePartitioning = definition.getTimePartitioning();
+		if (timePartitioning == null || !partitionKey.equals(timePartitioning.getField())) {
+			throw new IllegalArgumentException(table.getTableId() + " is not time partitioned by " + partitionKey);
+		}
+		Field field = definition.getSchema().getFields().get(partitionKey);
+		if (timePartitioning.getType() != TimePartitioning.Type.DAY
+				|| field.getType().getStandardType() != StandardSQLTypeName.DATE) {
+			throw new IllegalArgumentException("Only daily partitions of a DATE column can be partition keys, "
+					+ table.getTableId() + " has " + timePartitioning.getType() + " partitions of "
+					+ field.getType().getStandardType() + " " + partitionKey);
+		}
+		return partitionKey;
+	}
+
+	/**
+	 * Converts partition ids like 20220301 to the partition values of the field,
+	 * or to nothing if the __UNPARTITIONED__ partition is among them.
+	 */
+	static Optional<List<Map<String, String>>> toPartitions(String partitionField, List<String> partitionIds) {
+		List<Map<String, String>> partitions = new ArrayList<>(partitionIds.size());
+		for (String partitionId : partitionIds) {
+			if (NULL_PARTITION_ID.equals(partitionId)) {
+				partitions.add(Collections.singletonMap(partitionField, null));
+			} else if (partitionId.chars().allMatch(Character::isDigit)) {
+				partitions.add(Collections.singletonMap(partitionField,
+						LocalDate.parse(partitionId, PARTITION_ID_FORMAT).toString()));
+			} else if (UNPARTITIONED_PARTITION_ID.equals(partitionId)) {
+				log.info("Some values of {} are out of the range of daily partitions, partitions are not pushed down",
+						partitionField);
+				return Optional.empty();
+			}
+		}
+		return Optional.of(partitions);
+	}
+
+	/** Compiles the remaining partitions into a row restriction on their partition column. */
+	public static String toRowRestriction(List<Map<String, String>> partitions) {
+		if (partitions.isEmpty()) {
+			return "FALSE";
+		}
+		List<String> restrictions = new ArrayList<>();
+		Map<String, List<String>> datesByField = partitions.stream().flatMap(partition -> partition.entrySet().stream())
+				.filter(entry -> entry.getValue() != null).collect(Collectors.groupingBy(Map.Entry::getKey,
+						Collectors.mapping(entry -> "DATE '" + entry.getValue() + "'", Collectors.toList())));
+		datesByField.forEach((field, dates) -> restrictions.add("`" + field + "` IN (" + String.join(", ", dates) + ")"));
+		partitions.stream().flatMap(partition -> partition.entrySet().stream())
+				.filter(entry -> entry.getValue() == null).map(Map.Entry::getKey).distinct()
+				.forEach(field -> restrictions.add("`" + field + "` IS NULL"));
+		return String.join(" OR ", restrictions);
+	}
+}
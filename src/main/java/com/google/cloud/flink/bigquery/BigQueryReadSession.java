@@ -19,60 +19,208 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import org.apache.hadoop.conf.Configuration;
 
+import com.google.api.gax.core.CredentialsProvider;
+import com.google.api.gax.core.FixedCredentialsProvider;
+import com.google.api.gax.core.NoCredentialsProvider;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.BigQueryOptions;
 import com.google.cloud.bigquery.TableId;
 import com.google.cloud.bigquery.connector.common.BigQueryClient;
-import com.google.cloud.bigquery.connector.common.BigQueryClientFactory;
 import com.google.cloud.bigquery.connector.common.BigQueryCredentialsSupplier;
 import com.google.cloud.bigquery.connector.common.ReadSessionCreator;
 import com.google.cloud.bigquery.connector.common.ReadSessionCreatorConfig;
 import com.google.cloud.bigquery.connector.common.ReadSessionResponse;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadSettings;
+import com.google.cloud.bigquery.storage.v1.CreateReadSessionRequest;
+import com.google.cloud.bigquery.storage.v1.DataFormat;
+import com.google.cloud.bigquery.storage.v1.ReadSession.TableReadOptions;
+import com.google.cloud.bigquery.storage.v1.TableName;
+import com.google.cloud.flink.bigquery.common.BigQueryClientPool;
+import com.google.cloud.flink.bigquery.common.BigQueryClientPool.ClientKey;
+import com.google.cloud.flink.bigquery.common.BigQueryClientPool.Lease;
+import com.google.cloud.flink.bigquery.common.PooledBigQueryClientFactory;
 import com.google.cloud.flink.bigquery.common.UserAgentHeaderProvider;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 public class BigQueryReadSession {
 
+	private static final ImmutableList<String> SESSION_OPTIONS = ImmutableList.of("filter", "pushAllFilters",
+			"combinePushedDownFilters", "maxParallelism", "partitionField", "partitionType",
+			"parentProject", FlinkBigQueryConfig.DATE_PARTITION_PARAM);
+
 	public static com.google.cloud.bigquery.storage.v1.ReadSession getReadsession(String projectId, String table,
 			String dataset, Map<String, String> configOption) throws FileNotFoundException, IOException {
 
-		String credentialKeyFile =configOption.get("credentialKeyFile");
-		GoogleCredentials credentials = GoogleCredentials.fromStream(new FileInputStream(credentialKeyFile));
-		Optional<String> credentialkey_file = Optional.of(credentialKeyFile);
-		BigQueryCredentialsSupplier bigQueryCredentialsSupplier = new BigQueryCredentialsSupplier(Optional.empty(),
-				Optional.empty(), credentialkey_file, Optional.empty(), Optional.empty(), Optional.empty());
+		FlinkBigQueryConfig bqconfig = createConfig(projectId, table, dataset, configOption);
+		ImmutableList<String> selectedFields = Optional.ofNullable(configOption.get("selectedfields"))
+				.filter(fields -> !fields.isEmpty())
+				.map(fields -> ImmutableList.copyOf(Arrays.asList(fields.split(","))))
+				.orElse(ImmutableList.of());
+		Optional<String> filter = Optional.ofNullable(configOption.get("filter")).filter(f -> !f.isEmpty());
+		if (bqconfig.getGrpcConfig().isPlaintext()) {
+			return createPlaintextReadSession(bqconfig, configOption, selectedFields, filter);
+		}
+		try (Lease<BigQuery> bigquery = acquireBigQuery(configOption);
+				Lease<PooledBigQueryClientFactory> clientFactory = acquireClientFactory(bqconfig, configOption)) {
+			BigQueryClient bigQueryClient = new BigQueryClient(bigquery.get(), null, null);
+			ReadSessionCreatorConfig readSessionCreatorConfig = bqconfig.toReadSessionCreatorConfig();
+			ReadSessionCreator readSessionCreator = new ReadSessionCreator(readSessionCreatorConfig, bigQueryClient,
+					clientFactory.get());
+			TableId tableId = TableId.of(dataset, table);
+			ReadSessionResponse response = readSessionCreator.create(tableId, selectedFields, filter);
+			return response.getReadSession();
+		}
+	}
+
+	/**
+	 * Creates the ReadSession through the Storage Read API alone. A plaintext
+	 * endpoint is a local stand-in of that API, which has no BigQuery REST API
+	 * to look the table up with, so neither views nor table types are checked.
+	 */
+	private static com.google.cloud.bigquery.storage.v1.ReadSession createPlaintextReadSession(
+			FlinkBigQueryConfig bqconfig, Map<String, String> configOption, List<String> selectedFields,
+			Optional<String> filter) throws IOException {
+		TableId tableId = bqconfig.getTableId();
+		TableReadOptions.Builder readOptions = TableReadOptions.newBuilder().addAllSelectedFields(selectedFields);
+		filter.ifPresent(readOptions::setRowRestriction);
+		CreateReadSessionRequest request = CreateReadSessionRequest.newBuilder()
+				.setParent("projects/" + bqconfig.getParentProjectId())
+				.setReadSession(com.google.cloud.bigquery.storage.v1.ReadSession.newBuilder()
+						.setTable(TableName.of(tableId.getProject(), tableId.getDataset(), tableId.getTable())
+								.toString())
+						.setDataFormat(DataFormat.ARROW).setReadOptions(readOptions))
+				.setMaxStreamCount(bqconfig.getMaxParallelism().orElse(bqconfig.getDefaultParallelism())).build();
+		try (Lease<BigQueryReadClient> readClient = acquireReadClient(BigQueryClientPool.getInstance(),
+				getClientKey(configOption), configOption)) {
+			return readClient.get().createReadSession(request);
+		}
+	}
+
+	/**
+	 * Creates a new ReadSession for the table given by the "projectId", "dataset"
+	 * and "table" options.
+	 */
+	public static com.google.cloud.bigquery.storage.v1.ReadSession getReadsession(Map<String, String> configOption)
+			throws FileNotFoundException, IOException {
+		return getReadsession(configOption.get("projectId"), configOption.get("table"), configOption.get("dataset"),
+				configOption);
+	}
+
+	/**
+	 * Leases the shared BigQuery client for the table metadata, authenticated by
+	 * the "credentialKeyFile" option.
+	 */
+	public static Lease<BigQuery> acquireBigQuery(Map<String, String> configOption)
+			throws FileNotFoundException, IOException {
+		GoogleCredentials credentials = getCredentials(configOption);
+		return BigQueryClientPool.getInstance().acquireBigQuery(getClientKey(configOption),
+				() -> BigQueryOptions.newBuilder().setCredentials(credentials).build().getService());
+	}
+
+	/** The settings the BigQuery clients of the table are pooled by. */
+	public static ClientKey getClientKey(Map<String, String> configOption) throws FileNotFoundException, IOException {
+		FlinkBigQueryConfig bqconfig = getConfig(configOption);
+		GoogleCredentials credentials = bqconfig.getGrpcConfig().isPlaintext() ? null : getCredentials(configOption);
+		return new ClientKey(credentials, bqconfig.getEndpoint(), bqconfig.getBigQueryProxyConfig(),
+				bqconfig.getGrpcConfig());
+	}
+
+	/**
+	 * Loads the credentials of the "credentialKeyFile" option. The file is read
+	 * again every time, so a replaced key is picked up, while clients are still
+	 * pooled by the content of the credentials.
+	 */
+	private static GoogleCredentials getCredentials(Map<String, String> configOption)
+			throws FileNotFoundException, IOException {
+		try (FileInputStream in = new FileInputStream(configOption.get("credentialKeyFile"))) {
+			return GoogleCredentials.fromStream(in);
+		}
+	}
+
+	/** Parses the BigQuery read options out of the table's config options. */
+	public static FlinkBigQueryConfig getConfig(Map<String, String> configOption) {
+		return createConfig(configOption.get("projectId"), configOption.get("table"), configOption.get("dataset"),
+				configOption);
+	}
 
+	/**
+	 * Creates the BigQueryReadClient of the source readers, whose ReadRows calls
+	 * are spread over the channels configured by {@link FlinkBigQueryGrpcConfig}.
+	 * A client of a plaintext endpoint is not authenticated.
+	 */
+	public static BigQueryReadClient createReadClient(Map<String, String> configOption)
+			throws FileNotFoundException, IOException {
+		FlinkBigQueryConfig bqconfig = getConfig(configOption);
+		CredentialsProvider credentialsProvider = bqconfig.getGrpcConfig().isPlaintext()
+				? NoCredentialsProvider.create()
+				: FixedCredentialsProvider.create(getCredentials(configOption));
+		BigQueryReadSettings settings = BigQueryReadSettings.newBuilder().setCredentialsProvider(credentialsProvider)
+				.setHeaderProvider(new UserAgentHeaderProvider("test-agent"))
+				.setTransportChannelProvider(bqconfig.getGrpcConfig().createChannelProvider(bqconfig.getEndpoint(),
+						bqconfig.getBigQueryProxyConfig()))
+				.build();
+		return BigQueryReadClient.create(settings);
+	}
+
+	private static FlinkBigQueryConfig createConfig(String projectId, String table, String dataset,
+			Map<String, String> configOption) {
 		int DEFAULT_PARALLELISM = Integer.parseInt(configOption.get("defaultParallelism"));
 		String FLINK_VERSION = configOption.get("flinkVersion");
 
 		Configuration hadoopConfiguration = new Configuration();
 
-		ImmutableMap<String, String> defaultOptions = ImmutableMap.of("table", projectId + "." + dataset + "." + table);
+		ImmutableMap.Builder<String, String> options = ImmutableMap.builder();
+		// read tuning options like bqNumStreamsPerPartition are passed through as they are
+		configOption.entrySet().stream()
+				.filter(option -> option.getKey().startsWith("bq") || SESSION_OPTIONS.contains(option.getKey()))
+				.forEach(options::put);
+		options.put("table", projectId + "." + dataset + "." + table);
+		ImmutableMap<String, String> defaultOptions = options.build();
 
-		FlinkBigQueryConfig bqconfig = FlinkBigQueryConfig.from(defaultOptions, defaultOptions, // ImmutableMap.of(),
+		return FlinkBigQueryConfig.from(defaultOptions, defaultOptions, // ImmutableMap.of(),
 				hadoopConfiguration, DEFAULT_PARALLELISM, new org.apache.flink.configuration.Configuration(),
 				FLINK_VERSION, Optional.empty());
-		final UserAgentHeaderProvider userAgentHeaderProvider = new UserAgentHeaderProvider("test-agent");
-		BigQueryClientFactory bigQueryReadClientFactory = new BigQueryClientFactory(bigQueryCredentialsSupplier,
-				userAgentHeaderProvider, bqconfig);
-		final BigQuery bigquery = BigQueryOptions.newBuilder().setCredentials(credentials).build().getService();
-		BigQueryClient bigQueryClient = new BigQueryClient(bigquery, null, null);
-		ReadSessionCreatorConfig readSessionCreatorConfig = bqconfig.toReadSessionCreatorConfig();
-		ReadSessionCreator readSessionCreator = new ReadSessionCreator(readSessionCreatorConfig, bigQueryClient,
-				bigQueryReadClientFactory);
-		TableId tableId = TableId.of(dataset, table);
-
-		ImmutableList<String> selectedFields =
-                ImmutableList.copyOf(Arrays.asList((configOption.get("selectedfields")).split(",")));
-		Optional<String> filter = Optional.of(configOption.get("filter"));
-		ReadSessionResponse response = readSessionCreator.create(tableId, selectedFields, filter);
-		return response.getReadSession();
+	}
+
+	/**
+	 * Leases the pooled client factory of the ReadSessionCreator, which hands
+	 * out the pooled Storage Read client of the source readers.
+	 */
+	private static Lease<PooledBigQueryClientFactory> acquireClientFactory(FlinkBigQueryConfig bqconfig,
+			Map<String, String> configOption) throws FileNotFoundException, IOException {
+		return acquireClientFactory(BigQueryClientPool.getInstance(), bqconfig, configOption);
+	}
+
+	static Lease<PooledBigQueryClientFactory> acquireClientFactory(BigQueryClientPool pool,
+			FlinkBigQueryConfig bqconfig, Map<String, String> configOption) throws FileNotFoundException, IOException {
+		ClientKey clientKey = getClientKey(configOption);
+		return pool.acquireClientFactory(clientKey, () -> {
+			Optional<String> credentialKeyFile = Optional.ofNullable(configOption.get("credentialKeyFile"));
+			BigQueryCredentialsSupplier credentialsSupplier = new BigQueryCredentialsSupplier(Optional.empty(),
+					Optional.empty(), credentialKeyFile, Optional.empty(), Optional.empty(), Optional.empty());
+			return new PooledBigQueryClientFactory(credentialsSupplier, new UserAgentHeaderProvider("test-agent"),
+					bqconfig, acquireReadClient(pool, clientKey, configOption));
+		});
+	}
+
+	/** Leases the pooled Storage Read client, the one the source readers read with. */
+	static Lease<BigQueryReadClient> acquireReadClient(BigQueryClientPool pool, ClientKey clientKey,
+			Map<String, String> configOption) {
+		return pool.acquireReadClient(clientKey, () -> {
+			try {
+				return createReadClient(configOption);
+			} catch (IOException e) {
+				throw new FlinkBigQueryException("Error while creating the BigQueryReadClient", e);
+			}
+		});
 	}
 }
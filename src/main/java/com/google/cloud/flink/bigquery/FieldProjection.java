@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.RowType.RowField;
+
+/**
+ * The columns a query reads from a table, given as the (possibly nested) field
+ * index paths pushed down by the planner.
+ *
+ * <p>
+ * BigQuery returns the selected fields in table order and nested fields inside
+ * their pruned parent structs, so the rows are decoded with
+ * {@link #getReadType()} and the projected fields are picked out of them
+ * through {@link #getReadPaths()}.
+ */
+public final class FieldProjection implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final RowType readType;
+	private final int[][] readPaths;
+	private final List<String> selectedFields;
+
+	private FieldProjection(RowType readType, int[][] readPaths, List<String> selectedFields) {
+		this.readType = readType;
+		this.readPaths = readPaths;
+		this.selectedFields = selectedFields;
+	}
+
+	/**
+	 * @param physicalType The columns of the table, in table order.
+	 * @param projection   The index paths of the projected fields, in the order
+	 *                     they are produced.
+	 */
+	public static FieldProjection of(RowType physicalType, int[][] projection) {
+		Node root = new Node();
+		for (int[] path : projection) {
+			if (path.length == 0) {
+				throw new IllegalArgumentException("Empty field path in projection");
+			}
+			Node node = root;
+			LogicalType type = physicalType;
+			for (int index : path) {
+				if (!(type instanceof RowType) || index < 0 || index >= ((RowType) type).getFieldCount()) {
+					throw new IllegalArgumentException("Invalid field path in projection of " + physicalType);
+				}
+				node = node.child(((RowType) type).getFieldCount(), index);
+				type = ((RowType) type).getTypeAt(index);
+			}
+			node.whole = true;
+		}
+		if (projection.length == 0 && physicalType.getFieldCount() > 0) {
+			// no selected fields would read all of them, only the row count is needed
+			root.child(physicalType.getFieldCount(), 0).whole = true;
+		}
+		List<String> selectedFields = new ArrayList<>();
+		RowType readType = prune(physicalType, root, "", selectedFields);
+		int[][] readPaths = new int[projection.length][];
+		for (int i = 0; i < projection.length; i++) {
+			readPaths[i] = toReadPath(root, projection[i]);
+		}
+		return new FieldProjection(readType, readPaths, selectedFields);
+	}
+
+	/** The type of the rows returned by BigQuery. */
+	public RowType getReadType() {
+		return readType;
+	}
+
+	/** For every projected field, its index path in {@link #getReadType()}. */
+	public int[][] getReadPaths() {
+		return readPaths;
+	}
+
+	/** Whether the produced rows are the rows returned by BigQuery. */
+	public boolean isIdentity() {
+		if (readPaths.length != readType.getFieldCount()) {
+			return false;
+		}
+		for (int i = 0; i < readPaths.length; i++) {
+			if (readPaths[i].length != 1 || readPaths[i][0] != i) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** The fields to select in the ReadSession, nested fields separated by dots. */
+	public List<String> getSelectedFields() {
+		return selectedFields;
+	}
+
+	private static RowType prune(RowType type, Node node, String prefix, List<String> selectedFields) {
+		List<RowField> fields = new ArrayList<>();
+		for (int i = 0; i < type.getFieldCount(); i++) {
+			Node child = node.children == null ? null : node.children[i];
+			if (child == null) {
+				continue;
+			}
+			RowField field = type.getFields().get(i);
+			String name = prefix + field.getName();
+			if (child.whole) {
+				fields.add(field);
+				selectedFields.add(name);
+			} else {
+				RowType pruned = prune((RowType) field.getType(), child, name + ".", selectedFields);
+				fields.add(new RowField(field.getName(), pruned, field.getDescription().orElse(null)));
+			}
+		}
+		return new RowType(type.isNullable(), fields);
+	}
+
+	private static int[] toReadPath(Node root, int[] path) {
+		int[] readPath = new int[path.length];
+		Node node = root;
+		for (int depth = 0; depth < path.length; depth++) {
+			int position = 0;
+			for (int i = 0; i < path[depth]; i++) {
+				if (node.children[i] != null) {
+					position++;
+				}
+			}
+			readPath[depth] = position;
+			node = node.children[path[depth]];
+			if (node.whole) {
+				// the whole field is read, the rest of the path stays the same
+				System.arraycopy(path, depth + 1, readPath, depth + 1, path.length - depth - 1);
+				break;
+			}
+		}
+		return readPath;
+	}
+
+	/** A field which is read, either whole or with the fields of its children. */
+	private static final class Node {
+		private boolean whole;
+		private Node[] children;
+
+		private Node child(int fieldCount, int index) {
+			if (children == null) {
+				children = new Node[fieldCount];
+			}
+			if (children[index] == null) {
+				children[index] = new Node();
+			}
+			return children[index];
+		}
+	}
+}
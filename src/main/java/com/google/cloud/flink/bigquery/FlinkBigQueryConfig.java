@@ -106,6 +106,8 @@ public class FlinkBigQueryConfig implements BigQueryConfig, Serializable {
 
 	public static final int MIN_BUFFERED_RESPONSES_PER_STREAM = 1;
 	public static final int MIN_STREAMS_PER_PARTITION = 1;
+	/** The bytes every stream may decode ahead of the consumer, unless configured otherwise. */
+	public static final long DEFAULT_READ_AHEAD_BYTES_PER_STREAM = 32L * 1024 * 1024;
 	private static final int DEFAULT_BIGQUERY_CLIENT_RETRIES = 10;
 	private static final String ARROW_COMPRESSION_CODEC_OPTION = "arrowCompressionCodec";
 	private static final WriteMethod DEFAULT_WRITE_METHOD = WriteMethod.INDIRECT;
@@ -148,7 +150,9 @@ public class FlinkBigQueryConfig implements BigQueryConfig, Serializable {
 	private int numBackgroundThreadsPerStream = 0;
 	private int numPrebufferReadRowsResponses = MIN_BUFFERED_RESPONSES_PER_STREAM;
 	private int numStreamsPerPartition = MIN_STREAMS_PER_PARTITION;
+	private long readAheadBytesPerStream = DEFAULT_READ_AHEAD_BYTES_PER_STREAM;
 	private FlinkBigQueryProxyAndHttpConfig flinkBigQueryProxyAndHttpConfig;
+	private FlinkBigQueryGrpcConfig flinkBigQueryGrpcConfig;
 	private CompressionCodec arrowCompressionCodec = DEFAULT_ARROW_COMPRESSION_CODEC;
 	private WriteMethod writeMethod = DEFAULT_WRITE_METHOD;
 	// for V2 write with BigQuery Storage Write API
@@ -169,6 +173,7 @@ public class FlinkBigQueryConfig implements BigQueryConfig, Serializable {
 		ImmutableMap<String, String> globalOptions = normalizeConf(originalGlobalOptions);
 		config.flinkBigQueryProxyAndHttpConfig = FlinkBigQueryProxyAndHttpConfig.from(options, globalOptions,
 				hadoopConfiguration);
+		config.flinkBigQueryGrpcConfig = FlinkBigQueryGrpcConfig.from(options, globalOptions);
 		// Issue #247
 		// we need those parameters in case a read from query is issued
 		config.viewsEnabled = getAnyBooleanOption(globalOptions, options, VIEWS_ENABLED_OPTION, false);
@@ -279,6 +284,8 @@ public class FlinkBigQueryConfig implements BigQueryConfig, Serializable {
 				.transform(Integer::parseInt).or(MIN_BUFFERED_RESPONSES_PER_STREAM);
 		config.numStreamsPerPartition = getAnyOption(globalOptions, options, "bqNumStreamsPerPartition")
 				.transform(Integer::parseInt).or(MIN_STREAMS_PER_PARTITION);
+		config.readAheadBytesPerStream = getAnyOption(globalOptions, options, "bqReadAheadBytesPerStream")
+				.transform(Long::parseLong).or(DEFAULT_READ_AHEAD_BYTES_PER_STREAM);
 
 		String arrowCompressionCodecParam = getAnyOption(globalOptions, options, ARROW_COMPRESSION_CODEC_OPTION)
 				.transform(String::toUpperCase).or(DEFAULT_ARROW_COMPRESSION_CODEC.toString());
@@ -460,6 +467,18 @@ public class FlinkBigQueryConfig implements BigQueryConfig, Serializable {
 		return defaultParallelism;
 	}
 
+	public int getNumPrebufferReadRowsResponses() {
+		return numPrebufferReadRowsResponses;
+	}
+
+	public int getNumStreamsPerPartition() {
+		return numStreamsPerPartition;
+	}
+
+	public long getReadAheadBytesPerStream() {
+		return readAheadBytesPerStream;
+	}
+
 	public Optional<String> getTemporaryGcsBucket() {
 		return temporaryGcsBucket.toJavaUtil();
 	}
@@ -573,6 +592,10 @@ public class FlinkBigQueryConfig implements BigQueryConfig, Serializable {
 		return flinkBigQueryProxyAndHttpConfig;
 	}
 
+	public FlinkBigQueryGrpcConfig getGrpcConfig() {
+		return flinkBigQueryGrpcConfig;
+	}
+
 	@Override
 	public Optional<String> getEndpoint() {
 		return storageReadEndpoint.toJavaUtil();
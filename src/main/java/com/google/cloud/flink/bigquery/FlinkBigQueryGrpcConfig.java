@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+
+import org.threeten.bp.Duration;
+
+import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
+import com.google.cloud.bigquery.connector.common.BigQueryProxyConfig;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadSettings;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import io.grpc.HttpConnectProxiedSocketAddress;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+
+/**
+ * Channel settings of the Storage Read API clients. The ReadRows calls of a
+ * client are spread round robin over a pool of gRPC channels, as a single
+ * HTTP/2 connection can not carry the throughput of many streams.
+ *
+ * <p>
+ * A plaintext channel is only meant for a local server standing in for the
+ * Storage Read API, configured by the {@code bqStorageReadEndpoint} option.
+ */
+public class FlinkBigQueryGrpcConfig implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String CHANNEL_POOL_SIZE_OPTION = "bqChannelPoolSize";
+	public static final String MAX_INBOUND_MESSAGE_SIZE_OPTION = "bqMaxInboundMessageSize";
+	public static final String FLOW_CONTROL_WINDOW_OPTION = "bqFlowControlWindow";
+	public static final String KEEP_ALIVE_TIME_OPTION = "bqKeepAliveTimeMs";
+	public static final String KEEP_ALIVE_TIMEOUT_OPTION = "bqKeepAliveTimeoutMs";
+	public static final String PLAINTEXT_OPTION = "bqStorageReadPlaintext";
+
+	static final int DEFAULT_CHANNEL_POOL_SIZE = 4;
+	// as in BigQueryReadSettings, no response is too large to be received
+	static final int DEFAULT_MAX_INBOUND_MESSAGE_SIZE = Integer.MAX_VALUE;
+
+	private int channelPoolSize = DEFAULT_CHANNEL_POOL_SIZE;
+	private int maxInboundMessageSize = DEFAULT_MAX_INBOUND_MESSAGE_SIZE;
+	private Integer flowControlWindow;
+	private Long keepAliveTimeMs;
+	private Long keepAliveTimeoutMs;
+	private boolean plaintext;
+
+	@VisibleForTesting
+	FlinkBigQueryGrpcConfig() {
+
+	}
+
+	public static FlinkBigQueryGrpcConfig from(Map<String, String> options,
+			ImmutableMap<String, String> globalOptions) throws IllegalArgumentException {
+		FlinkBigQueryGrpcConfig config = new FlinkBigQueryGrpcConfig();
+		config.channelPoolSize = getOption(options, globalOptions, CHANNEL_POOL_SIZE_OPTION)
+				.map(Integer::parseInt).orElse(DEFAULT_CHANNEL_POOL_SIZE);
+		config.maxInboundMessageSize = getOption(options, globalOptions, MAX_INBOUND_MESSAGE_SIZE_OPTION)
+				.map(Integer::parseInt).orElse(DEFAULT_MAX_INBOUND_MESSAGE_SIZE);
+		config.flowControlWindow = getOption(options, globalOptions, FLOW_CONTROL_WINDOW_OPTION)
+				.map(Integer::valueOf).orElse(null);
+		config.keepAliveTimeMs = getOption(options, globalOptions, KEEP_ALIVE_TIME_OPTION).map(Long::valueOf)
+				.orElse(null);
+		config.keepAliveTimeoutMs = getOption(options, globalOptions, KEEP_ALIVE_TIMEOUT_OPTION).map(Long::valueOf)
+				.orElse(null);
+		config.plaintext = getOption(options, globalOptions, PLAINTEXT_OPTION).map(Boolean::parseBoolean)
+				.orElse(false);
+
+		checkArgument(config.channelPoolSize > 0, "%s must be positive", CHANNEL_POOL_SIZE_OPTION);
+		checkArgument(config.maxInboundMessageSize > 0, "%s must be positive", MAX_INBOUND_MESSAGE_SIZE_OPTION);
+		checkArgument(config.flowControlWindow == null || config.flowControlWindow > 0, "%s must be positive",
+				FLOW_CONTROL_WINDOW_OPTION);
+		checkArgument(config.keepAliveTimeMs == null || config.keepAliveTimeMs > 0, "%s must be positive",
+				KEEP_ALIVE_TIME_OPTION);
+		checkArgument(config.keepAliveTimeoutMs == null || config.keepAliveTimeoutMs > 0, "%s must be positive",
+				KEEP_ALIVE_TIMEOUT_OPTION);
+		return config;
+	}
+
+	private static Optional<String> getOption(Map<String, String> options, ImmutableMap<String, String> globalOptions,
+			String name) {
+		Optional<String> option = Optional.ofNullable(options.get(name.toLowerCase()));
+		return option.isPresent() ? option : Optional.ofNullable(globalOptions.get(name));
+	}
+
+	/**
+	 * Creates the channel provider of a read client for the endpoint, tunneling
+	 * through the proxy if one is configured.
+	 */
+	public InstantiatingGrpcChannelProvider createChannelProvider(Optional<String> endpoint,
+			BigQueryProxyConfig proxyConfig) {
+		InstantiatingGrpcChannelProvider.Builder builder = BigQueryReadSettings.defaultGrpcTransportProviderBuilder()
+				.setEndpoint(endpoint.orElse(BigQueryReadSettings.getDefaultEndpoint())).setPoolSize(channelPoolSize)
+				.setMaxInboundMessageSize(maxInboundMessageSize);
+		if (keepAliveTimeMs != null) {
+			builder.setKeepAliveTime(Duration.ofMillis(keepAliveTimeMs)).setKeepAliveWithoutCalls(true);
+		}
+		if (keepAliveTimeoutMs != null) {
+			builder.setKeepAliveTimeout(Duration.ofMillis(keepAliveTimeoutMs));
+		}
+		Optional<URI> proxyUri = proxyConfig.getProxyUri();
+		Integer window = flowControlWindow;
+		boolean usePlaintext = plaintext;
+		builder.setChannelConfigurator(channelBuilder -> {
+			if (usePlaintext) {
+				channelBuilder.usePlaintext();
+			}
+			if (window != null && channelBuilder instanceof NettyChannelBuilder) {
+				((NettyChannelBuilder) channelBuilder).flowControlWindow(window);
+			}
+			if (proxyUri.isPresent()) {
+				InetSocketAddress proxyAddress = new InetSocketAddress(proxyUri.get().getHost(),
+						proxyUri.get().getPort());
+				channelBuilder.proxyDetector(targetAddress -> HttpConnectProxiedSocketAddress.newBuilder()
+						.setProxyAddress(proxyAddress).setTargetAddress((InetSocketAddress) targetAddress)
+						.setUsername(proxyConfig.getProxyUsername().orElse(null))
+						.setPassword(proxyConfig.getProxyPassword().orElse(null)).build());
+			}
+			return channelBuilder;
+		});
+		return builder.build();
+	}
+
+	int getChannelPoolSize() {
+		return channelPoolSize;
+	}
+
+	int getMaxInboundMessageSize() {
+		return maxInboundMessageSize;
+	}
+
+	Optional<Integer> getFlowControlWindow() {
+		return Optional.ofNullable(flowControlWindow);
+	}
+
+	Optional<Long> getKeepAliveTimeMs() {
+		return Optional.ofNullable(keepAliveTimeMs);
+	}
+
+	Optional<Long> getKeepAliveTimeoutMs() {
+		return Optional.ofNullable(keepAliveTimeoutMs);
+	}
+
+	/** Whether the channels are not secured, so no credentials must be sent over them. */
+	public boolean isPlaintext() {
+		return plaintext;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof FlinkBigQueryGrpcConfig)) {
+			return false;
+		}
+		FlinkBigQueryGrpcConfig that = (FlinkBigQueryGrpcConfig) o;
+		return channelPoolSize == that.channelPoolSize && maxInboundMessageSize == that.maxInboundMessageSize
+				&& Objects.equal(flowControlWindow, that.flowControlWindow)
+				&& Objects.equal(keepAliveTimeMs, that.keepAliveTimeMs)
+				&& Objects.equal(keepAliveTimeoutMs, that.keepAliveTimeoutMs) && plaintext == that.plaintext;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(channelPoolSize, maxInboundMessageSize, flowControlWindow, keepAliveTimeMs,
+				keepAliveTimeoutMs, plaintext);
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.apache.flink.table.expressions.CallExpression;
+import org.apache.flink.table.expressions.FieldReferenceExpression;
+import org.apache.flink.table.expressions.ResolvedExpression;
+import org.apache.flink.table.expressions.ValueLiteralExpression;
+import org.apache.flink.table.functions.BuiltInFunctionDefinitions;
+import org.apache.flink.table.functions.FunctionDefinition;
+import org.apache.flink.table.types.logical.DecimalType;
+import org.apache.flink.table.types.logical.LogicalType;
+
+/**
+ * Compiles Flink filter expressions into BigQuery row restrictions, the SQL
+ * predicates a ReadSession filters rows with on the server.
+ *
+ * <p>
+ * Comparisons, IN, BETWEEN, IS [NOT] NULL, LIKE with a prefix pattern and
+ * their boolean combinations of fields and literals are supported. Any other
+ * expression is not compiled and left to Flink.
+ */
+public final class FlinkFilterUtils {
+
+	private static final Map<FunctionDefinition, String> BINARY_OPERATORS = new HashMap<>();
+	static {
+		BINARY_OPERATORS.put(BuiltInFunctionDefinitions.EQUALS, "=");
+		BINARY_OPERATORS.put(BuiltInFunctionDefinitions.NOT_EQUALS, "!=");
+		BINARY_OPERATORS.put(BuiltInFunctionDefinitions.GREATER_THAN, ">");
+		BINARY_OPERATORS.put(BuiltInFunctionDefinitions.GREATER_THAN_OR_EQUAL, ">=");
+		BINARY_OPERATORS.put(BuiltInFunctionDefinitions.LESS_THAN, "<");
+		BINARY_OPERATORS.put(BuiltInFunctionDefinitions.LESS_THAN_OR_EQUAL, "<=");
+	}
+
+	private static final Map<FunctionDefinition, String> POSTFIX_OPERATORS = new HashMap<>();
+	static {
+		POSTFIX_OPERATORS.put(BuiltInFunctionDefinitions.IS_NULL, "IS NULL");
+		POSTFIX_OPERATORS.put(BuiltInFunctionDefinitions.IS_NOT_NULL, "IS NOT NULL");
+		POSTFIX_OPERATORS.put(BuiltInFunctionDefinitions.IS_TRUE, "IS TRUE");
+		POSTFIX_OPERATORS.put(BuiltInFunctionDefinitions.IS_FALSE, "IS FALSE");
+		POSTFIX_OPERATORS.put(BuiltInFunctionDefinitions.IS_NOT_TRUE, "IS NOT TRUE");
+		POSTFIX_OPERATORS.put(BuiltInFunctionDefinitions.IS_NOT_FALSE, "IS NOT FALSE");
+	}
+
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter
+			.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSSSSS");
+
+	private FlinkFilterUtils() {
+	}
+
+	/** Compiles the expression into a row restriction, if all of it is supported. */
+	public static Optional<String> compile(ResolvedExpression expression) {
+		if (expression instanceof FieldReferenceExpression) {
+			// a boolean column
+			return Optional.of(quoteField(((FieldReferenceExpression) expression).getName()));
+		}
+		if (!(expression instanceof CallExpression)) {
+			return Optional.empty();
+		}
+		CallExpression call = (CallExpression) expression;
+		FunctionDefinition function = call.getFunctionDefinition();
+		List<ResolvedExpression> args = call.getResolvedChildren();
+
+		if (BINARY_OPERATORS.containsKey(function) && args.size() == 2) {
+			return operand(args.get(0)).flatMap(
+					left -> operand(args.get(1)).map(right -> left + " " + BINARY_OPERATORS.get(function) + " " + right));
+		}
+		if (POSTFIX_OPERATORS.containsKey(function) && args.size() == 1) {
+			return operand(args.get(0)).map(arg -> arg + " " + POSTFIX_OPERATORS.get(function));
+		}
+		if (function == BuiltInFunctionDefinitions.AND || function == BuiltInFunctionDefinitions.OR) {
+			String operator = function == BuiltInFunctionDefinitions.AND ? " AND " : " OR ";
+			List<String> compiled = new ArrayList<>(args.size());
+			for (ResolvedExpression arg : args) {
+				Optional<String> compiledArg = compile(arg);
+				if (!compiledArg.isPresent()) {
+					return Optional.empty();
+				}
+				compiled.add("(" + compiledArg.get() + ")");
+			}
+			return Optional.of(String.join(operator, compiled));
+		}
+		if (function == BuiltInFunctionDefinitions.NOT && args.size() == 1) {
+			return compile(args.get(0)).map(arg -> "NOT (" + arg + ")");
+		}
+		if (function == BuiltInFunctionDefinitions.IN && args.size() > 1) {
+			List<String> operands = new ArrayList<>(args.size());
+			for (ResolvedExpression arg : args) {
+				Optional<String> operand = operand(arg);
+				if (!operand.isPresent()) {
+					return Optional.empty();
+				}
+				operands.add(operand.get());
+			}
+			return Optional.of(operands.get(0) + " IN ("
+					+ operands.subList(1, operands.size()).stream().collect(Collectors.joining(", ")) + ")");
+		}
+		if ((function == BuiltInFunctionDefinitions.BETWEEN || function == BuiltInFunctionDefinitions.NOT_BETWEEN)
+				&& args.size() == 3) {
+			String operator = function == BuiltInFunctionDefinitions.BETWEEN ? " BETWEEN " : " NOT BETWEEN ";
+			return operand(args.get(0)).flatMap(value -> operand(args.get(1)).flatMap(
+					lower -> operand(args.get(2)).map(upper -> value + operator + lower + " AND " + upper)));
+		}
+		if (function == BuiltInFunctionDefinitions.LIKE && args.size() == 2
+				&& args.get(0) instanceof FieldReferenceExpression && args.get(1) instanceof ValueLiteralExpression) {
+			return compileLike((FieldReferenceExpression) args.get(0), (ValueLiteralExpression) args.get(1));
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Combines the filters pushed down by the planner with the filter of the
+	 * table options, the latter is used alone unless combinePushedDownFilters is
+	 * set.
+	 */
+	public static Optional<String> getCompiledFilter(boolean combinePushedDownFilters, Optional<String> configFilter,
+			List<String> pushedFilters) {
+		Optional<String> compiledPushedFilters = pushedFilters.isEmpty() ? Optional.empty()
+				: Optional.of(pushedFilters.stream().map(filter -> "(" + filter + ")")
+						.collect(Collectors.joining(" AND ")));
+		if (!configFilter.isPresent()) {
+			return compiledPushedFilters;
+		}
+		if (!combinePushedDownFilters || !compiledPushedFilters.isPresent()) {
+			return configFilter;
+		}
+		return Optional.of("(" + configFilter.get() + ") AND " + compiledPushedFilters.get());
+	}
+
+	/** Only prefix patterns are supported, which are the same as STARTS_WITH. */
+	private static Optional<String> compileLike(FieldReferenceExpression field, ValueLiteralExpression pattern) {
+		Optional<String> value = pattern.getValueAs(String.class);
+		if (!value.isPresent()) {
+			return Optional.empty();
+		}
+		String prefix = value.get();
+		boolean startsWith = prefix.endsWith("%");
+		if (startsWith) {
+			prefix = prefix.substring(0, prefix.length() - 1);
+		}
+		if (prefix.contains("%") || prefix.contains("_") || prefix.contains("\\")) {
+			return Optional.empty();
+		}
+		String column = quoteField(field.getName());
+		return Optional.of(startsWith ? "STARTS_WITH(" + column + ", " + quoteString(prefix) + ")"
+				: column + " = " + quoteString(prefix));
+	}
+
+	private static Optional<String> operand(ResolvedExpression expression) {
+		if (expression instanceof FieldReferenceExpression) {
+			return Optional.of(quoteField(((FieldReferenceExpression) expression).getName()));
+		}
+		if (expression instanceof ValueLiteralExpression) {
+			return literal((ValueLiteralExpression) expression);
+		}
+		return Optional.empty();
+	}
+
+	private static Optional<String> literal(ValueLiteralExpression literal) {
+		if (literal.isNull()) {
+			return Optional.empty();
+		}
+		LogicalType type = literal.getOutputDataType().getLogicalType();
+		switch (type.getTypeRoot()) {
+		case CHAR:
+		case VARCHAR:
+			return literal.getValueAs(String.class).map(FlinkFilterUtils::quoteString);
+		case BOOLEAN:
+			return literal.getValueAs(Boolean.class).map(value -> value ? "TRUE" : "FALSE");
+		case TINYINT:
+		case SMALLINT:
+		case INTEGER:
+		case BIGINT:
+			return literal.getValueAs(Number.class).map(value -> Long.toString(value.longValue()));
+		case FLOAT:
+		case DOUBLE:
+			return literal.getValueAs(Number.class).map(Number::doubleValue)
+					.filter(value -> !value.isNaN() && !value.isInfinite()).map(value -> Double.toString(value));
+		case DECIMAL:
+			DecimalType decimalType = (DecimalType) type;
+			// NUMERIC holds 29 integer and 9 fractional digits, anything larger is a BIGNUMERIC
+			String numericType = decimalType.getScale() <= 9
+					&& decimalType.getPrecision() - decimalType.getScale() <= 29 ? "NUMERIC" : "BIGNUMERIC";
+			return literal.getValueAs(BigDecimal.class)
+					.map(value -> numericType + " " + quoteString(value.toPlainString()));
+		case DATE:
+			return literal.getValueAs(LocalDate.class).map(value -> "DATE " + quoteString(value.toString()));
+		case TIME_WITHOUT_TIME_ZONE:
+			return literal.getValueAs(LocalTime.class).map(value -> "TIME " + quoteString(TIME_FORMAT.format(value)));
+		case TIMESTAMP_WITHOUT_TIME_ZONE:
+			// a string is coerced to both DATETIME and TIMESTAMP columns
+			return literal.getValueAs(LocalDateTime.class)
+					.map(value -> quoteString(TIMESTAMP_FORMAT.format(value)));
+		case TIMESTAMP_WITH_LOCAL_TIME_ZONE:
+			return literal.getValueAs(Instant.class).map(value -> "TIMESTAMP "
+					+ quoteString(TIMESTAMP_FORMAT.format(value.atOffset(ZoneOffset.UTC)) + "+00"));
+		default:
+			return Optional.empty();
+		}
+	}
+
+	private static String quoteField(String name) {
+		return "`" + name.replace("`", "\\`") + "`";
+	}
+
+	private static String quoteString(String value) {
+		return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.table.connector.format.DecodingFormat;
+import org.apache.flink.table.connector.source.DynamicTableSource;
+import org.apache.flink.table.connector.source.abilities.SupportsPartitionPushDown;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.DataType;
+
+/**
+ * Reads a partitioned BigQuery table whose partitions Flink can prune. The
+ * partitions left after pruning restrict the rows of the session to theirs.
+ *
+ * <p>
+ * Flink removes the partition filters from the plan once it has pruned the
+ * partitions, so this source is only created when every row of the table is in
+ * one of the listed partitions.
+ */
+public final class PartitionedBigQueryDynamicTableSource extends BigQueryDynamicTableSource
+		implements SupportsPartitionPushDown {
+
+	private final List<Map<String, String>> partitions;
+
+	public PartitionedBigQueryDynamicTableSource(DecodingFormat<DeserializationSchema<RowData>> decodingFormat,
+			DataType physicalDataType, Map<String, String> configOption, List<Map<String, String>> partitions) {
+
+		super(decodingFormat, physicalDataType, configOption);
+		this.partitions = partitions;
+	}
+
+	private PartitionedBigQueryDynamicTableSource(PartitionedBigQueryDynamicTableSource source) {
+
+		super(source);
+		this.partitions = source.partitions;
+	}
+
+	@Override
+	public Optional<List<Map<String, String>>> listPartitions() {
+		return Optional.of(partitions);
+	}
+
+	@Override
+	public void applyPartitions(List<Map<String, String>> remainingPartitions) {
+		restrictToPartitions(remainingPartitions);
+	}
+
+	@Override
+	public DynamicTableSource copy() {
+
+		return new PartitionedBigQueryDynamicTableSource(this);
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.arrow.util;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.table.data.binary.BinaryStringData;
+import org.apache.flink.table.data.vector.BytesColumnVector;
+import org.apache.flink.util.Preconditions;
+
+/**
+ * Arrow column vector for variable width values, which hands out slices of the
+ * data buffer instead of copying every value.
+ *
+ * <p>
+ * {@link #getBytes(int)} slices a heap copy of the data buffer, which is taken
+ * once per batch, so the returned bytes stay valid after the batch has been
+ * released. {@link #getString(int)} points straight into the Arrow memory and
+ * must only be used while the batch is loaded.
+ */
+public abstract class ArrowBytesColumnVector implements BytesColumnVector {
+
+	private final BaseVariableWidthVector vector;
+
+	// the data buffer of the loaded batch, the vectors are refilled for every batch
+	private ArrowBuf heapBuffer;
+	private byte[] heapData;
+	private ArrowBuf segmentBuffer;
+	private MemorySegment[] segments;
+
+	protected ArrowBytesColumnVector(BaseVariableWidthVector vector) {
+		this.vector = Preconditions.checkNotNull(vector, "BaseVariableWidthVector is null");
+	}
+
+	@Override
+	public Bytes getBytes(int i) {
+		ArrowBuf data = vector.getDataBuffer();
+		if (data != heapBuffer) {
+			heapData = new byte[vector.getStartOffset(vector.getValueCount())];
+			data.getBytes(0, heapData);
+			heapBuffer = data;
+		}
+		int offset = vector.getStartOffset(i);
+		return new Bytes(heapData, offset, vector.getStartOffset(i + 1) - offset);
+	}
+
+	/**
+	 * Returns the value at the given row as a string which wraps the Arrow data
+	 * buffer without copying it. It is only valid until the batch is released.
+	 */
+	public BinaryStringData getString(int i) {
+		int offset = vector.getStartOffset(i);
+		int length = vector.getStartOffset(i + 1) - offset;
+		if (length == 0) {
+			return BinaryStringData.EMPTY_UTF8;
+		}
+		ArrowBuf data = vector.getDataBuffer();
+		if (data != segmentBuffer) {
+			segments = new MemorySegment[] {
+					MemorySegmentFactory.wrapOffHeapMemory(data.nioBuffer(0, (int) data.capacity())) };
+			segmentBuffer = data;
+		}
+		return BinaryStringData.fromAddress(segments, offset, length);
+	}
+
+	@Override
+	public boolean isNullAt(int i) {
+		return vector.isNull(i);
+	}
+}
@@ -15,15 +15,33 @@
  */
 package com.google.cloud.flink.bigquery.arrow.util;
 
+import java.nio.ByteOrder;
+
+import org.apache.arrow.memory.ArrowBuf;
 import org.apache.arrow.vector.DecimalVector;
 import org.apache.flink.table.data.DecimalData;
 import org.apache.flink.table.data.vector.DecimalColumnVector;
 import org.apache.flink.util.Preconditions;
 
-/** Arrow column vector for DecimalData. */
+/**
+ * Arrow column vector for DecimalData. Decimals of a compact precision (at most
+ * 18 digits) are read as unscaled longs straight from the little-endian 128-bit
+ * values of the Arrow buffer, wider ones go through {@link java.math.BigDecimal}.
+ */
 
 public final class ArrowDecimalColumnVector implements DecimalColumnVector {
 
+	private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+	private static final long[] POWERS_OF_TEN = new long[19];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
 	/**
 	 * Container which is used to store the sequence of DecimalData values of a
 	 * column to read.
@@ -36,6 +54,19 @@ public final class ArrowDecimalColumnVector implements DecimalColumnVector {
 
 	@Override
 	public DecimalData getDecimal(int i, int precision, int scale) {
+		if (LITTLE_ENDIAN && DecimalData.isCompact(precision) && decimalVector.getScale() == scale) {
+			ArrowBuf data = decimalVector.getDataBuffer();
+			long index = (long) i * DecimalVector.TYPE_WIDTH;
+			long unscaled = data.getLong(index);
+			// the high word only holds the sign of a value which fits into a long
+			if (data.getLong(index + Long.BYTES) == unscaled >> 63) {
+				if (unscaled <= -POWERS_OF_TEN[precision] || unscaled >= POWERS_OF_TEN[precision]) {
+					// same as fromBigDecimal for a value which exceeds the precision
+					return null;
+				}
+				return DecimalData.fromUnscaledLong(unscaled, precision, scale);
+			}
+		}
 		return DecimalData.fromBigDecimal(decimalVector.getObject(i), precision, scale);
 	}
 
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.arrow.util;
+
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.flink.table.data.MapData;
+import org.apache.flink.table.data.vector.ColumnVector;
+import org.apache.flink.util.Preconditions;
+
+/**
+ * Arrow column vector for Map. BigQuery represents a map as a repeated record
+ * of key and value fields, so the map is read from a list of structs.
+ */
+
+public final class ArrowMapColumnVector implements MapColumnVector {
+
+	/**
+	 * Container which is used to store the sequence of key value entries of a
+	 * column to read.
+	 */
+	private final ListVector listVector;
+
+	private final ColumnVector keyVector;
+
+	private final ColumnVector valueVector;
+
+	public ArrowMapColumnVector(ListVector listVector, ColumnVector keyVector, ColumnVector valueVector) {
+		this.listVector = Preconditions.checkNotNull(listVector, "ListVector is null");
+		this.keyVector = Preconditions.checkNotNull(keyVector, "Key ColumnVector is null");
+		this.valueVector = Preconditions.checkNotNull(valueVector, "Value ColumnVector is null");
+	}
+
+	@Override
+	public MapData getMap(int i) {
+		int start = listVector.getElementStartIndex(i);
+		return new ColumnarMapData(keyVector, valueVector, start, listVector.getElementEndIndex(i) - start);
+	}
+
+	@Override
+	public boolean isNullAt(int i) {
+		return listVector.isNull(i);
+	}
+}
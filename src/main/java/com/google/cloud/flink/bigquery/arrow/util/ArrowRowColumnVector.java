@@ -32,17 +32,18 @@ public final class ArrowRowColumnVector implements RowColumnVector {
 	 */
 	private final StructVector structVector;
 
-	private final ColumnVector[] fieldColumns;
+	// the field columns wrap the child vectors, so one batch serves every row
+	private final VectorizedColumnBatch fieldBatch;
 
 	public ArrowRowColumnVector(StructVector structVector, ColumnVector[] fieldColumns) {
 		this.structVector = Preconditions.checkNotNull(structVector, "StructVector is null");
-		this.fieldColumns = Preconditions.checkNotNull(fieldColumns, "ColumnVector array is null");
+		this.fieldBatch = new VectorizedColumnBatch(
+				Preconditions.checkNotNull(fieldColumns, "ColumnVector array is null"));
 	}
 
 	@Override
 	public ColumnarRowData getRow(int i) {
-		VectorizedColumnBatch vectorizedColumnBatch = new VectorizedColumnBatch(fieldColumns);
-		return new ColumnarRowData(vectorizedColumnBatch, i);
+		return new ColumnarRowData(fieldBatch, i);
 	}
 
 	@Override
@@ -16,6 +16,7 @@
 package com.google.cloud.flink.bigquery.arrow.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -38,6 +39,7 @@ import org.apache.arrow.vector.TinyIntVector;
 import org.apache.arrow.vector.ValueVector;
 import org.apache.arrow.vector.VarBinaryVector;
 import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.complex.ListVector;
 import org.apache.arrow.vector.complex.StructVector;
 import org.apache.arrow.vector.types.pojo.ArrowType;
@@ -47,6 +49,7 @@ import org.apache.arrow.vector.types.pojo.Schema;
 import org.apache.flink.table.data.vector.ColumnVector;
 import org.apache.flink.table.types.logical.ArrayType;
 import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.MapType;
 import org.apache.flink.table.types.logical.RowType;
 
 /**
@@ -78,6 +81,13 @@ public class ArrowSchemaConverter {
 		if (logicalType instanceof ArrayType) {
 			children = Collections
 					.singletonList(convertToSchema("element", ((ArrayType) logicalType).getElementType()));
+		} else if (logicalType instanceof MapType) {
+			// a map is read from a repeated record of key and value fields
+			MapType mapType = (MapType) logicalType;
+			children = Collections.singletonList(new Field("element",
+					new FieldType(true, ArrowType.Struct.INSTANCE, null),
+					Arrays.asList(convertToSchema("key", mapType.getKeyType()),
+							convertToSchema("value", mapType.getValueType()))));
 		} else if (logicalType instanceof RowType) {
 			RowType rowType = (RowType) logicalType;
 			children = new ArrayList<>(rowType.getFieldCount());
@@ -88,6 +98,24 @@ public class ArrowSchemaConverter {
 		return new Field(fieldName, fieldType, children);
 	}
 
+	/** Returns the vector of a (possibly nested) field given by its index path. */
+	public static ValueVector getVector(VectorSchemaRoot root, int[] path) {
+		ValueVector vector = root.getVector(path[0]);
+		for (int depth = 1; depth < path.length; depth++) {
+			vector = ((StructVector) vector).getVectorById(path[depth]);
+		}
+		return vector;
+	}
+
+	/** Returns the type of a (possibly nested) field given by its index path. */
+	public static LogicalType getType(RowType rowType, int[] path) {
+		LogicalType type = rowType;
+		for (int index : path) {
+			type = ((RowType) type).getTypeAt(index);
+		}
+		return type;
+	}
+
 	public static ColumnVector createColumnVector(ValueVector vector, LogicalType fieldType) {
 		if (vector instanceof TinyIntVector) {
 			return new ArrowTinyIntColumnVector((TinyIntVector) vector);
@@ -113,10 +141,15 @@ public class ArrowSchemaConverter {
 			return new ArrowDateColumnVector((DateDayVector) vector);
 		} else if (vector instanceof TimeSecVector || vector instanceof TimeMilliVector
 				|| vector instanceof TimeMicroVector || vector instanceof TimeNanoVector) {
-			return new ArrowTimeColumnVector(vector);
-		} else if (vector instanceof TimeStampVector
-				&& ((ArrowType.Timestamp) vector.getField().getType()).getTimezone() == null) {
-			return new ArrowTimestampColumnVector(vector);
+			return ArrowTimeColumnVector.create(vector);
+		} else if (vector instanceof TimeStampVector) {
+			return ArrowTimestampColumnVector.create((TimeStampVector) vector);
+		} else if (vector instanceof ListVector && fieldType instanceof MapType) {
+			ListVector listVector = (ListVector) vector;
+			StructVector entries = (StructVector) listVector.getDataVector();
+			return new ArrowMapColumnVector(listVector,
+					createColumnVector(entries.getVectorById(0), ((MapType) fieldType).getKeyType()),
+					createColumnVector(entries.getVectorById(1), ((MapType) fieldType).getValueType()));
 		} else if (vector instanceof ListVector) {
 			ListVector listVector = (ListVector) vector;
 			return new ArrowArrayColumnVector(listVector,
@@ -23,9 +23,13 @@ import org.apache.arrow.vector.ValueVector;
 import org.apache.flink.table.data.vector.IntColumnVector;
 import org.apache.flink.util.Preconditions;
 
-/** Arrow column vector for Time. */
+/**
+ * Arrow column vector for Time, as milliseconds of the day. The time unit of
+ * the vector is resolved once by {@link #create(ValueVector)}, which picks a
+ * column vector that only converts that unit.
+ */
 
-public final class ArrowTimeColumnVector implements IntColumnVector {
+public abstract class ArrowTimeColumnVector implements IntColumnVector {
 
 	/**
 	 * Container which is used to store the sequence of time values of a column to
@@ -33,30 +37,87 @@ public final class ArrowTimeColumnVector implements IntColumnVector {
 	 */
 	private final ValueVector valueVector;
 
-	public ArrowTimeColumnVector(ValueVector valueVector) {
-		this.valueVector = Preconditions.checkNotNull(valueVector, "ValueVector is null");
-		Preconditions.checkState(
-				valueVector instanceof TimeSecVector || valueVector instanceof TimeMilliVector
-						|| valueVector instanceof TimeMicroVector || valueVector instanceof TimeNanoVector,
-				"valueVector is of type %s, allowed types are "
-						+ "TimeSecVector,TimeMilliVector,TimeMicroVector,TimeNanoVector");
+	private ArrowTimeColumnVector(ValueVector valueVector) {
+		this.valueVector = valueVector;
 	}
 
-	@Override
-	public int getInt(int i) {
+	public static ArrowTimeColumnVector create(ValueVector valueVector) {
+		Preconditions.checkNotNull(valueVector, "ValueVector is null");
 		if (valueVector instanceof TimeSecVector) {
-			return ((TimeSecVector) valueVector).get(i) * 1000;
+			return new Seconds((TimeSecVector) valueVector);
 		} else if (valueVector instanceof TimeMilliVector) {
-			return ((TimeMilliVector) valueVector).get(i);
+			return new Millis((TimeMilliVector) valueVector);
 		} else if (valueVector instanceof TimeMicroVector) {
-			return (int) (((TimeMicroVector) valueVector).get(i) / 1000);
-		} else {
-			return (int) (((TimeNanoVector) valueVector).get(i) / 1000000);
+			return new Micros((TimeMicroVector) valueVector);
+		} else if (valueVector instanceof TimeNanoVector) {
+			return new Nanos((TimeNanoVector) valueVector);
 		}
+		throw new IllegalStateException(String.format("valueVector is of type %s, allowed types are "
+				+ "TimeSecVector,TimeMilliVector,TimeMicroVector,TimeNanoVector", valueVector.getClass()));
 	}
 
 	@Override
 	public boolean isNullAt(int i) {
 		return valueVector.isNull(i);
 	}
+
+	private static final class Seconds extends ArrowTimeColumnVector {
+
+		private final TimeSecVector timeSecVector;
+
+		Seconds(TimeSecVector timeSecVector) {
+			super(timeSecVector);
+			this.timeSecVector = timeSecVector;
+		}
+
+		@Override
+		public int getInt(int i) {
+			return timeSecVector.get(i) * 1000;
+		}
+	}
+
+	private static final class Millis extends ArrowTimeColumnVector {
+
+		private final TimeMilliVector timeMilliVector;
+
+		Millis(TimeMilliVector timeMilliVector) {
+			super(timeMilliVector);
+			this.timeMilliVector = timeMilliVector;
+		}
+
+		@Override
+		public int getInt(int i) {
+			return timeMilliVector.get(i);
+		}
+	}
+
+	private static final class Micros extends ArrowTimeColumnVector {
+
+		private final TimeMicroVector timeMicroVector;
+
+		Micros(TimeMicroVector timeMicroVector) {
+			super(timeMicroVector);
+			this.timeMicroVector = timeMicroVector;
+		}
+
+		@Override
+		public int getInt(int i) {
+			return (int) (timeMicroVector.get(i) / 1000);
+		}
+	}
+
+	private static final class Nanos extends ArrowTimeColumnVector {
+
+		private final TimeNanoVector timeNanoVector;
+
+		Nanos(TimeNanoVector timeNanoVector) {
+			super(timeNanoVector);
+			this.timeNanoVector = timeNanoVector;
+		}
+
+		@Override
+		public int getInt(int i) {
+			return (int) (timeNanoVector.get(i) / 1000000);
+		}
+	}
 }
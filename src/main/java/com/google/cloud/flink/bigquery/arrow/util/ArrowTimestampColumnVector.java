@@ -15,52 +15,102 @@
  */
 package com.google.cloud.flink.bigquery.arrow.util;
 
-import org.apache.arrow.vector.TimeStampMicroVector;
-import org.apache.arrow.vector.TimeStampMilliVector;
-import org.apache.arrow.vector.TimeStampNanoVector;
-import org.apache.arrow.vector.TimeStampSecVector;
 import org.apache.arrow.vector.TimeStampVector;
-import org.apache.arrow.vector.ValueVector;
 import org.apache.arrow.vector.types.pojo.ArrowType;
 import org.apache.flink.table.data.TimestampData;
 import org.apache.flink.table.data.vector.TimestampColumnVector;
 import org.apache.flink.util.Preconditions;
 
-/** Arrow column vector for Timestamp. */
+/**
+ * Arrow column vector for Timestamp. The time unit of the vector is resolved
+ * once by {@link #create(TimeStampVector)}, which picks a column vector that
+ * only converts that unit. Timestamps with a time zone hold UTC instants, so
+ * they are read the same way, as TIMESTAMP_LTZ values.
+ */
 
-public final class ArrowTimestampColumnVector implements TimestampColumnVector {
+public abstract class ArrowTimestampColumnVector implements TimestampColumnVector {
 
 	/**
 	 * Container which is used to store the sequence of timestamp values of a column
 	 * to read.
 	 */
-	private final ValueVector valueVector;
-
-	public ArrowTimestampColumnVector(ValueVector valueVector) {
-		this.valueVector = Preconditions.checkNotNull(valueVector, "ValueVector is null");
-		Preconditions.checkState(
-				valueVector instanceof TimeStampVector
-						&& ((ArrowType.Timestamp) valueVector.getField().getType()).getTimezone() == null,
-				"ValueVector is of type %s, allowed types is " + "TimeStampVector");
+	protected final TimeStampVector timeStampVector;
+
+	private ArrowTimestampColumnVector(TimeStampVector timeStampVector) {
+		this.timeStampVector = timeStampVector;
 	}
 
-	@Override
-	public TimestampData getTimestamp(int i, int precision) {
-		if (valueVector instanceof TimeStampSecVector) {
-			return TimestampData.fromEpochMillis(((TimeStampSecVector) valueVector).get(i) * 1000);
-		} else if (valueVector instanceof TimeStampMilliVector) {
-			return TimestampData.fromEpochMillis(((TimeStampMilliVector) valueVector).get(i));
-		} else if (valueVector instanceof TimeStampMicroVector) {
-			long micros = ((TimeStampMicroVector) valueVector).get(i);
-			return TimestampData.fromEpochMillis(micros / 1000, (int) (micros % 1000) * 1000);
-		} else {
-			long nanos = ((TimeStampNanoVector) valueVector).get(i);
-			return TimestampData.fromEpochMillis(nanos / 1_000_000, (int) (nanos % 1_000_000));
+	public static ArrowTimestampColumnVector create(TimeStampVector timeStampVector) {
+		Preconditions.checkNotNull(timeStampVector, "TimeStampVector is null");
+		switch (((ArrowType.Timestamp) timeStampVector.getField().getType()).getUnit()) {
+		case SECOND:
+			return new Seconds(timeStampVector);
+		case MILLISECOND:
+			return new Millis(timeStampVector);
+		case MICROSECOND:
+			return new Micros(timeStampVector);
+		case NANOSECOND:
+			return new Nanos(timeStampVector);
+		default:
+			throw new UnsupportedOperationException(
+					String.format("Unsupported timestamp vector %s.", timeStampVector.getField()));
 		}
 	}
 
 	@Override
 	public boolean isNullAt(int i) {
-		return valueVector.isNull(i);
+		return timeStampVector.isNull(i);
+	}
+
+	private static final class Seconds extends ArrowTimestampColumnVector {
+
+		Seconds(TimeStampVector timeStampVector) {
+			super(timeStampVector);
+		}
+
+		@Override
+		public TimestampData getTimestamp(int i, int precision) {
+			return TimestampData.fromEpochMillis(timeStampVector.get(i) * 1000);
+		}
+	}
+
+	private static final class Millis extends ArrowTimestampColumnVector {
+
+		Millis(TimeStampVector timeStampVector) {
+			super(timeStampVector);
+		}
+
+		@Override
+		public TimestampData getTimestamp(int i, int precision) {
+			return TimestampData.fromEpochMillis(timeStampVector.get(i));
+		}
+	}
+
+	private static final class Micros extends ArrowTimestampColumnVector {
+
+		Micros(TimeStampVector timeStampVector) {
+			super(timeStampVector);
+		}
+
+		@Override
+		public TimestampData getTimestamp(int i, int precision) {
+			long micros = timeStampVector.get(i);
+			return TimestampData.fromEpochMillis(Math.floorDiv(micros, 1000),
+					(int) Math.floorMod(micros, 1000) * 1000);
+		}
+	}
+
+	private static final class Nanos extends ArrowTimestampColumnVector {
+
+		Nanos(TimeStampVector timeStampVector) {
+			super(timeStampVector);
+		}
+
+		@Override
+		public TimestampData getTimestamp(int i, int precision) {
+			long nanos = timeStampVector.get(i);
+			return TimestampData.fromEpochMillis(Math.floorDiv(nanos, 1_000_000),
+					(int) Math.floorMod(nanos, 1_000_000));
+		}
 	}
 }
@@ -16,22 +16,24 @@
 package com.google.cloud.flink.bigquery.arrow.util;
 
 import java.io.Serializable;
-import java.lang.reflect.Array;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.apache.arrow.vector.ValueVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
-import org.apache.flink.table.data.DecimalData;
-import org.apache.flink.table.data.GenericArrayData;
-import org.apache.flink.table.data.GenericRowData;
-import org.apache.flink.table.data.StringData;
-import org.apache.flink.table.types.logical.ArrayType;
-import org.apache.flink.table.types.logical.DecimalType;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.binary.BinaryRowData;
+import org.apache.flink.table.data.writer.BinaryRowWriter;
 import org.apache.flink.table.types.logical.LogicalType;
 import org.apache.flink.table.types.logical.RowType;
-import org.apache.flink.table.types.logical.utils.LogicalTypeUtils;
 
+/**
+ * Converts the rows of a {@link VectorSchemaRoot} into a list of
+ * {@link RowData}, which do not depend on the vectors anymore. Every value is
+ * read from its typed vector and written unboxed into a
+ * {@link BinaryRowData}, which is copied out once per row.
+ */
 @FunctionalInterface
 public interface ArrowToRowDataConverter extends Serializable {
 
@@ -42,112 +44,57 @@ public interface ArrowToRowDataConverter extends Serializable {
 // -------------------------------------------------------------------------------------
 
 	public static ArrowToRowDataConverter createRowConverter(RowType rowType) {
-		final ArrowToRowDataConverter[] fieldConverters = rowType.getFields().stream().map(RowType.RowField::getType)
-				.map(ArrowToRowDataConverter::createNullableConverter).toArray(ArrowToRowDataConverter[]::new);
-		final int arity = rowType.getFieldCount();
+		final LogicalType[] fieldTypes = rowType.getChildren().toArray(new LogicalType[0]);
 
 		return arrowObject -> {
 			VectorSchemaRoot record = (VectorSchemaRoot) arrowObject;
-			int numOfRows = record.getRowCount();
-			List<GenericRowData> rowdatalist = new ArrayList<GenericRowData>();
-			for (int row = 0; row < numOfRows; ++row) {
-				GenericRowData genericRowData = new GenericRowData(arity);
-				for (int col = 0; col < arity; col++) {
-					genericRowData.setField(col,
-							fieldConverters[col].convert(record.getFieldVectors().get(col).getObject(row)));
-				}
-				rowdatalist.add(genericRowData);
-			}
-			return rowdatalist;
-		};
-	}
-
-	/** Creates a runtime converter which is null safe. */
-	static ArrowToRowDataConverter createNullableConverter(LogicalType type) {
-		final ArrowToRowDataConverter converter = createConverter(type);
-		return arrowObject -> {
-			if (arrowObject == null) {
-				return null;
+			BinaryRowFieldWriter[] fieldWriters = new BinaryRowFieldWriter[fieldTypes.length];
+			for (int col = 0; col < fieldWriters.length; col++) {
+				fieldWriters[col] = BinaryRowFieldWriter.create(fieldTypes[col], record.getVector(col));
 			}
-			return converter.convert(arrowObject);
+			return convertRows(fieldWriters, record.getRowCount());
 		};
 	}
 
-	/** Creates a runtime converter which assuming input object is not null. */
-	static ArrowToRowDataConverter createConverter(LogicalType type) {
-		switch (type.getTypeRoot()) {
-		case NULL:
-			return arrowObject -> null;
-		case TINYINT:
-			return arrowObject -> ((Integer) arrowObject).byteValue();
-		case SMALLINT:
-			return arrowObject -> ((Integer) arrowObject).shortValue();
-		case BOOLEAN: // boolean
-		case INTEGER: // int
-		case INTERVAL_YEAR_MONTH: // long
-		case BIGINT: // long
-		case INTERVAL_DAY_TIME: // long
-		case FLOAT: // float
-		case DOUBLE: // double
-			return arrowObject -> arrowObject;
-		case CHAR:
-		case VARCHAR:
-			return arrowObject -> StringData.fromString(arrowObject.toString());
-		case BINARY:
-		case VARBINARY:
-			return ArrowToRowDataConverter::convertToBytes;
-		case DECIMAL:
-			return createDecimalConverter((DecimalType) type);
-		case ARRAY:
-			return createArrayConverter((ArrayType) type);
-		case ROW:
-			return createRowConverter((RowType) type);
-		case MAP:
-		case RAW:
-		default:
-			throw new UnsupportedOperationException("Unsupported type: " + type);
+	/**
+	 * Creates a converter of the rows of a {@link VectorSchemaRoot} of the given
+	 * type into rows of the fields at the given index paths. A nested field is
+	 * null when one of its parents is.
+	 */
+	public static ArrowToRowDataConverter createProjectedRowConverter(RowType rowType, int[][] paths) {
+		final LogicalType[] fieldTypes = new LogicalType[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			fieldTypes[i] = ArrowSchemaConverter.getType(rowType, paths[i]);
 		}
-	}
 
-	static ArrowToRowDataConverter createDecimalConverter(DecimalType decimalType) {
-		final int precision = decimalType.getPrecision();
-		final int scale = decimalType.getScale();
 		return arrowObject -> {
-			final byte[] bytes;
-			if (arrowObject instanceof ByteBuffer) {
-				ByteBuffer byteBuffer = (ByteBuffer) arrowObject;
-				bytes = new byte[byteBuffer.remaining()];
-				byteBuffer.get(bytes);
-			} else {
-				bytes = (byte[]) arrowObject;
+			VectorSchemaRoot record = (VectorSchemaRoot) arrowObject;
+			BinaryRowFieldWriter[] fieldWriters = new BinaryRowFieldWriter[paths.length];
+			for (int col = 0; col < fieldWriters.length; col++) {
+				int[] path = paths[col];
+				ValueVector[] parents = new ValueVector[path.length - 1];
+				for (int depth = 0; depth < parents.length; depth++) {
+					parents[depth] = ArrowSchemaConverter.getVector(record, Arrays.copyOf(path, depth + 1));
+				}
+				fieldWriters[col] = BinaryRowFieldWriter.create(fieldTypes[col],
+						ArrowSchemaConverter.getVector(record, path), parents);
 			}
-			return DecimalData.fromUnscaledBytes(bytes, precision, scale);
+			return convertRows(fieldWriters, record.getRowCount());
 		};
 	}
 
-	static ArrowToRowDataConverter createArrayConverter(ArrayType arrayType) {
-		final ArrowToRowDataConverter elementConverter = createNullableConverter(arrayType.getElementType());
-		final Class<?> elementClass = LogicalTypeUtils.toInternalConversionClass(arrayType.getElementType());
-
-		return arrowObject -> {
-			final List<?> list = (List<?>) arrowObject;
-			final int length = list.size();
-			final Object[] array = (Object[]) Array.newInstance(elementClass, length);
-			for (int i = 0; i < length; ++i) {
-				array[i] = elementConverter.convert(list.get(i));
+	static List<RowData> convertRows(BinaryRowFieldWriter[] fieldWriters, int numRows) {
+		BinaryRowData reuse = new BinaryRowData(fieldWriters.length);
+		BinaryRowWriter writer = new BinaryRowWriter(reuse);
+		List<RowData> rows = new ArrayList<>(numRows);
+		for (int row = 0; row < numRows; ++row) {
+			writer.reset();
+			for (int col = 0; col < fieldWriters.length; col++) {
+				fieldWriters[col].write(writer, col, row);
 			}
-			return new GenericArrayData(array);
-		};
-	}
-
-	static byte[] convertToBytes(Object object) {
-		if (object instanceof ByteBuffer) {
-			ByteBuffer byteBuffer = (ByteBuffer) object;
-			byte[] bytes = new byte[byteBuffer.remaining()];
-			byteBuffer.get(bytes);
-			return bytes;
-		} else {
-			return (byte[]) object;
+			writer.complete();
+			rows.add(reuse.copy());
 		}
+		return rows;
 	}
 }
@@ -16,31 +16,12 @@
 package com.google.cloud.flink.bigquery.arrow.util;
 
 import org.apache.arrow.vector.VarCharVector;
-import org.apache.flink.table.data.vector.BytesColumnVector;
-import org.apache.flink.util.Preconditions;
 
 /** Arrow column vector for VarChar. */
 
-public final class ArrowVarCharColumnVector implements BytesColumnVector {
-
-	/**
-	 * Container which is used to store the sequence of varchar values of a column
-	 * to read.
-	 */
-	private final VarCharVector varCharVector;
+public final class ArrowVarCharColumnVector extends ArrowBytesColumnVector {
 
 	public ArrowVarCharColumnVector(VarCharVector varCharVector) {
-		this.varCharVector = Preconditions.checkNotNull(varCharVector, "VarCharVector is null");
-	}
-
-	@Override
-	public Bytes getBytes(int i) {
-		byte[] bytes = varCharVector.get(i);
-		return new Bytes(bytes, 0, bytes.length);
-	}
-
-	@Override
-	public boolean isNullAt(int i) {
-		return varCharVector.isNull(i);
+		super(varCharVector);
 	}
 }
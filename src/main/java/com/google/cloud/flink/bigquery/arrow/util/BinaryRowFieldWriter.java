@@ -0,0 +1,265 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.arrow.util;
+
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.flink.table.data.DecimalData;
+import org.apache.flink.table.data.binary.BinaryArrayData;
+import org.apache.flink.table.data.binary.BinaryMapData;
+import org.apache.flink.table.data.binary.BinaryRowData;
+import org.apache.flink.table.data.vector.BooleanColumnVector;
+import org.apache.flink.table.data.vector.ByteColumnVector;
+import org.apache.flink.table.data.vector.ColumnVector;
+import org.apache.flink.table.data.vector.DecimalColumnVector;
+import org.apache.flink.table.data.vector.DoubleColumnVector;
+import org.apache.flink.table.data.vector.FloatColumnVector;
+import org.apache.flink.table.data.vector.IntColumnVector;
+import org.apache.flink.table.data.vector.LongColumnVector;
+import org.apache.flink.table.data.vector.ShortColumnVector;
+import org.apache.flink.table.data.vector.TimestampColumnVector;
+import org.apache.flink.table.data.writer.BinaryArrayWriter;
+import org.apache.flink.table.data.writer.BinaryRowWriter;
+import org.apache.flink.table.data.writer.BinaryWriter;
+import org.apache.flink.table.runtime.typeutils.ArrayDataSerializer;
+import org.apache.flink.table.runtime.typeutils.MapDataSerializer;
+import org.apache.flink.table.runtime.typeutils.RowDataSerializer;
+import org.apache.flink.table.types.logical.ArrayType;
+import org.apache.flink.table.types.logical.DecimalType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.MapType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.utils.LogicalTypeChecks;
+
+/**
+ * Writes the values of one Arrow vector into a field of {@link BinaryRowWriter}
+ * rows. Values are read through the typed column vectors of
+ * {@link ArrowSchemaConverter#createColumnVector}, so primitives are never
+ * boxed. Nested rows and arrays are written into reused binary writers and
+ * copied into the enclosing row as a whole. A vector without nulls skips the
+ * null check of every value.
+ */
+@FunctionalInterface
+interface BinaryRowFieldWriter {
+
+	void write(BinaryWriter writer, int pos, int row);
+
+	/**
+	 * Creates the writer of a vector of the given type. The value of a row is
+	 * null if it is null in the vector or in one of its parent vectors.
+	 */
+	static BinaryRowFieldWriter create(LogicalType type, ValueVector vector, ValueVector... parents) {
+		BinaryRowFieldWriter valueWriter = createValueWriter(type, vector);
+		boolean mayBeNull = vector.getNullCount() > 0;
+		for (ValueVector parent : parents) {
+			mayBeNull |= parent.getNullCount() > 0;
+		}
+		if (!mayBeNull) {
+			return valueWriter;
+		}
+		return (writer, pos, row) -> {
+			if (vector.isNull(row) || isParentNull(parents, row)) {
+				writer.setNullAt(pos);
+			} else {
+				valueWriter.write(writer, pos, row);
+			}
+		};
+	}
+
+	/**
+	 * Creates the writer of the elements of an array vector, which writes into a
+	 * {@link BinaryArrayWriter}. Null elements are cleared according to their
+	 * type.
+	 */
+	static BinaryRowFieldWriter createElementWriter(LogicalType elementType, ValueVector vector) {
+		BinaryRowFieldWriter valueWriter = createValueWriter(elementType, vector);
+		if (vector.getNullCount() == 0) {
+			return valueWriter;
+		}
+		BinaryArrayWriter.NullSetter nullSetter = BinaryArrayWriter.createNullSetter(elementType);
+		return (writer, pos, row) -> {
+			if (vector.isNull(row)) {
+				nullSetter.setNull((BinaryArrayWriter) writer, pos);
+			} else {
+				valueWriter.write(writer, pos, row);
+			}
+		};
+	}
+
+	static boolean isParentNull(ValueVector[] parents, int row) {
+		for (ValueVector parent : parents) {
+			if (parent.isNull(row)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Creates a writer which assumes that the value is not null. */
+	static BinaryRowFieldWriter createValueWriter(LogicalType type, ValueVector vector) {
+		switch (type.getTypeRoot()) {
+		case ARRAY:
+			return createArrayWriter((ArrayType) type, (ListVector) vector);
+		case MAP:
+			return createMapWriter((MapType) type, (ListVector) vector);
+		case ROW:
+			return createRowWriter((RowType) type, (StructVector) vector);
+		default:
+			return createValueWriter(type, ArrowSchemaConverter.createColumnVector(vector, type));
+		}
+	}
+
+	/** Creates the writer of an array, which is copied into the enclosing row or array. */
+	static BinaryRowFieldWriter createArrayWriter(ArrayType type, ListVector vector) {
+		ElementsWriter elements = new ElementsWriter(type.getElementType(), vector.getDataVector());
+		ArrayDataSerializer serializer = new ArrayDataSerializer(type.getElementType());
+		return (writer, pos, row) -> {
+			int start = vector.getElementStartIndex(row);
+			writer.writeArray(pos, elements.write(start, vector.getElementEndIndex(row) - start), serializer);
+		};
+	}
+
+	/**
+	 * Creates the writer of a map which is read from a list of key value structs,
+	 * the way BigQuery represents maps.
+	 */
+	static BinaryRowFieldWriter createMapWriter(MapType type, ListVector vector) {
+		StructVector entries = (StructVector) vector.getDataVector();
+		ElementsWriter keys = new ElementsWriter(type.getKeyType(), entries.getVectorById(0));
+		ElementsWriter values = new ElementsWriter(type.getValueType(), entries.getVectorById(1));
+		MapDataSerializer serializer = new MapDataSerializer(type.getKeyType(), type.getValueType());
+		return (writer, pos, row) -> {
+			int start = vector.getElementStartIndex(row);
+			int size = vector.getElementEndIndex(row) - start;
+			writer.writeMap(pos, BinaryMapData.valueOf(keys.write(start, size), values.write(start, size)),
+					serializer);
+		};
+	}
+
+	/**
+	 * Creates the writer of a nested row, which is written into a reused
+	 * {@link BinaryRowData} and then copied into the enclosing row or array.
+	 */
+	static BinaryRowFieldWriter createRowWriter(RowType type, StructVector vector) {
+		BinaryRowFieldWriter[] fieldWriters = new BinaryRowFieldWriter[type.getFieldCount()];
+		for (int i = 0; i < fieldWriters.length; i++) {
+			fieldWriters[i] = create(type.getTypeAt(i), vector.getVectorById(i));
+		}
+		RowDataSerializer serializer = new RowDataSerializer(type);
+		BinaryRowData nestedRow = new BinaryRowData(fieldWriters.length);
+		BinaryRowWriter nestedWriter = new BinaryRowWriter(nestedRow);
+		return (writer, pos, row) -> {
+			nestedWriter.reset();
+			for (int i = 0; i < fieldWriters.length; i++) {
+				fieldWriters[i].write(nestedWriter, i, row);
+			}
+			nestedWriter.complete();
+			writer.writeRow(pos, nestedRow, serializer);
+		};
+	}
+
+	/** Creates the writer of a non-null value which is read through its column vector. */
+	static BinaryRowFieldWriter createValueWriter(LogicalType type, ColumnVector column) {
+		switch (type.getTypeRoot()) {
+		case BOOLEAN:
+			BooleanColumnVector booleans = (BooleanColumnVector) column;
+			return (writer, pos, row) -> writer.writeBoolean(pos, booleans.getBoolean(row));
+		case TINYINT:
+			ByteColumnVector bytes = (ByteColumnVector) column;
+			return (writer, pos, row) -> writer.writeByte(pos, bytes.getByte(row));
+		case SMALLINT:
+			ShortColumnVector shorts = (ShortColumnVector) column;
+			return (writer, pos, row) -> writer.writeShort(pos, shorts.getShort(row));
+		case INTEGER:
+		case DATE:
+		case TIME_WITHOUT_TIME_ZONE:
+			IntColumnVector ints = (IntColumnVector) column;
+			return (writer, pos, row) -> writer.writeInt(pos, ints.getInt(row));
+		case BIGINT:
+			LongColumnVector longs = (LongColumnVector) column;
+			return (writer, pos, row) -> writer.writeLong(pos, longs.getLong(row));
+		case FLOAT:
+			FloatColumnVector floats = (FloatColumnVector) column;
+			return (writer, pos, row) -> writer.writeFloat(pos, floats.getFloat(row));
+		case DOUBLE:
+			DoubleColumnVector doubles = (DoubleColumnVector) column;
+			return (writer, pos, row) -> writer.writeDouble(pos, doubles.getDouble(row));
+		case CHAR:
+		case VARCHAR:
+			ArrowBytesColumnVector strings = (ArrowBytesColumnVector) column;
+			return (writer, pos, row) -> writer.writeString(pos, strings.getString(row));
+		case BINARY:
+		case VARBINARY:
+			// binary and string fields share the variable length layout of the row,
+			// so the bytes are copied straight from the Arrow buffer into the row
+			ArrowBytesColumnVector binaries = (ArrowBytesColumnVector) column;
+			return (writer, pos, row) -> writer.writeString(pos, binaries.getString(row));
+		case DECIMAL:
+			DecimalColumnVector decimals = (DecimalColumnVector) column;
+			int precision = ((DecimalType) type).getPrecision();
+			int scale = ((DecimalType) type).getScale();
+			return (writer, pos, row) -> {
+				DecimalData value = decimals.getDecimal(row, precision, scale);
+				// a value which exceeds the precision of the type is read as null
+				if (value == null) {
+					writer.setNullAt(pos);
+				} else {
+					writer.writeDecimal(pos, value, precision);
+				}
+			};
+		case TIMESTAMP_WITHOUT_TIME_ZONE:
+		case TIMESTAMP_WITH_LOCAL_TIME_ZONE:
+			TimestampColumnVector timestamps = (TimestampColumnVector) column;
+			int timestampPrecision = LogicalTypeChecks.getPrecision(type);
+			return (writer, pos, row) -> writer.writeTimestamp(pos,
+					timestamps.getTimestamp(row, timestampPrecision), timestampPrecision);
+		default:
+			throw new UnsupportedOperationException("Unsupported type: " + type);
+		}
+	}
+
+	/**
+	 * Writes a range of the elements of a vector into a reused
+	 * {@link BinaryArrayData}. The array writer is reused as long as consecutive
+	 * ranges have the same size.
+	 */
+	final class ElementsWriter {
+
+		private final BinaryRowFieldWriter elementWriter;
+		private final int elementSize;
+		private final BinaryArrayData array = new BinaryArrayData();
+		private BinaryArrayWriter arrayWriter;
+
+		ElementsWriter(LogicalType elementType, ValueVector vector) {
+			this.elementWriter = createElementWriter(elementType, vector);
+			this.elementSize = BinaryArrayData.calculateFixLengthPartSize(elementType);
+		}
+
+		BinaryArrayData write(int start, int size) {
+			if (arrayWriter == null || arrayWriter.getNumElements() != size) {
+				arrayWriter = new BinaryArrayWriter(array, size, elementSize);
+			} else {
+				arrayWriter.reset();
+			}
+			for (int i = 0; i < size; i++) {
+				elementWriter.write(arrayWriter, i, start + i);
+			}
+			arrayWriter.complete();
+			return array;
+		}
+	}
+}
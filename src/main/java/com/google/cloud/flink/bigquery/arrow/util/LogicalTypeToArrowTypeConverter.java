@@ -32,6 +32,7 @@ import org.apache.flink.table.types.logical.IntType;
 import org.apache.flink.table.types.logical.LegacyTypeInformationType;
 import org.apache.flink.table.types.logical.LocalZonedTimestampType;
 import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.MapType;
 import org.apache.flink.table.types.logical.RowType;
 import org.apache.flink.table.types.logical.SmallIntType;
 import org.apache.flink.table.types.logical.TimeType;
@@ -128,13 +129,13 @@ public class LogicalTypeToArrowTypeConverter extends LogicalTypeDefaultVisitor<A
 	@Override
 	public ArrowType visit(LocalZonedTimestampType localZonedTimestampType) {
 		if (localZonedTimestampType.getPrecision() == 0) {
-			return new ArrowType.Timestamp(TimeUnit.SECOND, null);
+			return new ArrowType.Timestamp(TimeUnit.SECOND, "UTC");
 		} else if (localZonedTimestampType.getPrecision() >= 1 && localZonedTimestampType.getPrecision() <= 3) {
-			return new ArrowType.Timestamp(TimeUnit.MILLISECOND, null);
+			return new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC");
 		} else if (localZonedTimestampType.getPrecision() >= 4 && localZonedTimestampType.getPrecision() <= 6) {
-			return new ArrowType.Timestamp(TimeUnit.MICROSECOND, null);
+			return new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC");
 		} else {
-			return new ArrowType.Timestamp(TimeUnit.NANOSECOND, null);
+			return new ArrowType.Timestamp(TimeUnit.NANOSECOND, "UTC");
 		}
 	}
 
@@ -156,6 +157,12 @@ public class LogicalTypeToArrowTypeConverter extends LogicalTypeDefaultVisitor<A
 		return ArrowType.List.INSTANCE;
 	}
 
+	@Override
+	public ArrowType visit(MapType mapType) {
+		// BigQuery represents a map as a repeated record of key and value fields
+		return ArrowType.List.INSTANCE;
+	}
+
 	@Override
 	public ArrowType visit(RowType rowType) {
 		return ArrowType.Struct.INSTANCE;
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.auth.Credentials;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.connector.common.BigQueryProxyConfig;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.flink.bigquery.FlinkBigQueryGrpcConfig;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Shares the BigQuery clients of all sources in a JVM. Clients are pooled by
+ * their credentials, endpoint and proxy configuration, so every source reading
+ * with the same settings uses the same gRPC channels and REST transport.
+ *
+ * <p>
+ * Clients are reference counted through {@link Lease}s. A client nobody leases
+ * anymore is kept for an idle timeout, so that a source starting right after
+ * another one finished does not set up its channels again, and is closed
+ * afterwards.
+ */
+public final class BigQueryClientPool {
+
+	private static final Logger log = LoggerFactory.getLogger(BigQueryClientPool.class);
+
+	static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+	private static final BigQueryClientPool INSTANCE = new BigQueryClientPool(DEFAULT_IDLE_TIMEOUT_MILLIS);
+
+	private final long idleTimeoutMillis;
+	private final Map<PoolKey, Entry<?>> entries = new HashMap<>();
+	private ScheduledExecutorService idleCloser;
+
+	/** Creates a pool of its own, all sources share the one of {@link #getInstance()}. */
+	public BigQueryClientPool(long idleTimeoutMillis) {
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	/** The pool shared by all sources of this JVM. */
+	public static BigQueryClientPool getInstance() {
+		return INSTANCE;
+	}
+
+	/** Leases the Storage Read client for the key, created by the factory if none is pooled. */
+	public Lease<BigQueryReadClient> acquireReadClient(ClientKey key, Supplier<BigQueryReadClient> factory) {
+		return acquire(BigQueryReadClient.class, key, factory, BigQueryReadClient::close);
+	}
+
+	/**
+	 * Leases the client factory the ReadSessionCreator creates sessions with,
+	 * created by the factory if none is pooled.
+	 */
+	public Lease<PooledBigQueryClientFactory> acquireClientFactory(ClientKey key,
+			Supplier<PooledBigQueryClientFactory> factory) {
+		return acquire(PooledBigQueryClientFactory.class, key, factory, PooledBigQueryClientFactory::close);
+	}
+
+	/** Leases the BigQuery REST client for the key, created by the factory if none is pooled. */
+	public Lease<BigQuery> acquireBigQuery(ClientKey key, Supplier<BigQuery> factory) {
+		// the REST client holds no connections of its own, it only needs to be shared
+		return acquire(BigQuery.class, key, factory, bigquery -> {
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	synchronized <T> Lease<T> acquire(Class<?> clientType, ClientKey clientKey, Supplier<T> factory,
+			Consumer<T> closer) {
+		PoolKey key = new PoolKey(clientType, clientKey);
+		Entry<T> entry = (Entry<T>) entries.get(key);
+		if (entry == null) {
+			log.info("Creating a {} for {}", key.clientType.getSimpleName(), key.clientKey);
+			entry = new Entry<>(factory.get(), closer);
+			entries.put(key, entry);
+		} else if (entry.idleClose != null) {
+			entry.idleClose.cancel(false);
+			entry.idleClose = null;
+		}
+		entry.references++;
+		return new Lease<>(this, key, entry);
+	}
+
+	private synchronized void release(PoolKey key, Entry<?> entry) {
+		entry.references--;
+		if (entry.references > 0) {
+			return;
+		}
+		if (idleTimeoutMillis <= 0) {
+			close(key, entry);
+			return;
+		}
+		if (idleCloser == null) {
+			idleCloser = Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactoryBuilder().setNameFormat("bigquery-client-pool").setDaemon(true).build());
+		}
+		entry.idleClose = idleCloser.schedule(() -> closeIdle(key, entry), idleTimeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized void closeIdle(PoolKey key, Entry<?> entry) {
+		// the entry may have been leased again after the close was scheduled
+		if (entry.references == 0 && entries.get(key) == entry) {
+			close(key, entry);
+		}
+	}
+
+	private void close(PoolKey key, Entry<?> entry) {
+		log.info("Closing the idle {} for {}", key.clientType.getSimpleName(), key.clientKey);
+		entries.remove(key);
+		entry.close();
+	}
+
+	/** Number of clients in the pool, leased or idle. */
+	synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Settings a client is shared by. Credentials are compared by their content,
+	 * as credentials loaded twice from the same key are not the same object.
+	 * Clients with different channel settings are never shared.
+	 */
+	public static final class ClientKey {
+
+		private final Credentials credentials;
+		private final Optional<String> endpoint;
+		private final BigQueryProxyConfig proxyConfig;
+		private final FlinkBigQueryGrpcConfig grpcConfig;
+
+		public ClientKey(Credentials credentials, Optional<String> endpoint, BigQueryProxyConfig proxyConfig,
+				FlinkBigQueryGrpcConfig grpcConfig) {
+			this.credentials = credentials;
+			this.endpoint = endpoint;
+			this.proxyConfig = proxyConfig;
+			this.grpcConfig = grpcConfig;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof ClientKey)) {
+				return false;
+			}
+			ClientKey that = (ClientKey) o;
+			return BigQueryUtil.areCredentialsEqual(credentials, that.credentials)
+					&& endpoint.equals(that.endpoint) && Objects.equals(proxyConfig, that.proxyConfig)
+					&& Objects.equals(grpcConfig, that.grpcConfig);
+		}
+
+		@Override
+		public int hashCode() {
+			// equal credentials may differ in their hash code
+			return Objects.hash(endpoint, proxyConfig, grpcConfig);
+		}
+
+		@Override
+		public String toString() {
+			return "endpoint " + endpoint.orElse("default") + (proxyConfig != null && proxyConfig.getProxyUri().isPresent()
+					? " through proxy " + proxyConfig.getProxyUri().get()
+					: "");
+		}
+	}
+
+	/** A reference to a pooled client, which is released on close. */
+	public static final class Lease<T> implements AutoCloseable {
+
+		private final BigQueryClientPool pool;
+		private final PoolKey key;
+		private final Entry<T> entry;
+		private boolean released;
+
+		private Lease(BigQueryClientPool pool, PoolKey key, Entry<T> entry) {
+			this.pool = pool;
+			this.key = key;
+			this.entry = entry;
+		}
+
+		public T get() {
+			if (released) {
+				throw new IllegalStateException("The client was already released");
+			}
+			return entry.client;
+		}
+
+		@Override
+		public void close() {
+			if (!released) {
+				released = true;
+				pool.release(key, entry);
+			}
+		}
+	}
+
+	private static final class PoolKey {
+
+		private final Class<?> clientType;
+		private final ClientKey clientKey;
+
+		private PoolKey(Class<?> clientType, ClientKey clientKey) {
+			this.clientType = clientType;
+			this.clientKey = clientKey;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof PoolKey)) {
+				return false;
+			}
+			PoolKey that = (PoolKey) o;
+			return clientType.equals(that.clientType) && clientKey.equals(that.clientKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(clientType, clientKey);
+		}
+	}
+
+	private static final class Entry<T> {
+
+		private final T client;
+		private final Consumer<T> closer;
+		private int references;
+		private ScheduledFuture<?> idleClose;
+
+		private Entry(T client, Consumer<T> closer) {
+			this.client = client;
+			this.closer = closer;
+		}
+
+		private void close() {
+			closer.accept(client);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A bounded lock-free ring with any number of producers and a single
+ * consumer. Producers claim a slot by advancing the producer index and then
+ * publish the element into it. The consumer parks while the ring is empty and
+ * is unparked by the next publishing producer, producers back off while the
+ * ring is full.
+ */
+final class BoundedMpscQueue<E> {
+
+	private static final long FULL_BACKOFF_NANOS = 50_000L;
+
+	private final AtomicReferenceArray<E> buffer;
+	private final int capacity;
+	private final int mask;
+	private final AtomicLong producerIndex = new AtomicLong();
+	// Only written by the consumer.
+	private final AtomicLong consumerIndex = new AtomicLong();
+	private volatile Thread waitingConsumer;
+
+	BoundedMpscQueue(int capacity) {
+		Preconditions.checkArgument(capacity > 0 && capacity <= (1 << 30), "Invalid capacity %s", capacity);
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.buffer = new AtomicReferenceArray<>(size);
+		this.capacity = size;
+		this.mask = size - 1;
+	}
+
+	/** Adds the element unless the ring is full. */
+	boolean offer(E element) {
+		Preconditions.checkNotNull(element);
+		long index;
+		do {
+			index = producerIndex.get();
+			if (index - consumerIndex.get() >= capacity) {
+				return false;
+			}
+		} while (!producerIndex.compareAndSet(index, index + 1));
+		// A volatile store so the consumer either sees the element or is seen
+		// waiting below.
+		buffer.set((int) index & mask, element);
+		Thread consumer = waitingConsumer;
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
+		}
+		return true;
+	}
+
+	/** Adds the element, backing off while the ring is full. */
+	void put(E element) throws InterruptedException {
+		while (!offer(element)) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			LockSupport.parkNanos(this, FULL_BACKOFF_NANOS);
+		}
+	}
+
+	/**
+	 * Removes the next element, or returns null if there is none. Must only be
+	 * called by the consumer thread.
+	 */
+	E poll() {
+		long index = consumerIndex.get();
+		int offset = (int) index & mask;
+		E element = buffer.get(offset);
+		if (element == null) {
+			// Either empty, or the producer of this slot has not published it yet.
+			return null;
+		}
+		buffer.lazySet(offset, null);
+		consumerIndex.lazySet(index + 1);
+		return element;
+	}
+
+	/** Removes the next element, parking while the ring is empty. */
+	E take() throws InterruptedException {
+		E element = poll();
+		while (element == null) {
+			waitingConsumer = Thread.currentThread();
+			element = poll();
+			if (element == null) {
+				LockSupport.park(this);
+				element = poll();
+			}
+			waitingConsumer = null;
+			if (element == null && Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+		return element;
+	}
+
+	int size() {
+		return (int) (producerIndex.get() - consumerIndex.get());
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.MeterView;
+import org.apache.flink.metrics.MetricGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link BigQueryStorageReadRowsTracer} which records into the metrics of a
+ * Flink {@link MetricGroup}:
+ * <ul>
+ * <li>bytesReceived, bytesReceivedPerSecond: the size of the ReadRowsResponses.
+ * <li>rowsParsed, rowsParsedPerSecond: the rows decoded from them.
+ * <li>serverWaitMicros, parseMicros: histograms of the time spent waiting for a
+ * response and decoding it.
+ * <li>batchBytes, batchRows: histograms of the batch sizes.
+ * </ul>
+ * The metrics of a group are shared by all tracers of the streams it reads
+ * one after the other, {@link #forkWithPrefix(String)} records into a sub
+ * group per background thread, whose number is bounded. A summary of every
+ * stream is logged when it is finished.
+ *
+ * <p>
+ * The tracer is created on the task manager and is never serialized.
+ */
+public class FlinkMetricsReadRowsTracer implements BigQueryStorageReadRowsTracer {
+
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = LoggerFactory.getLogger(FlinkMetricsReadRowsTracer.class);
+
+	private final String streamName;
+	private final transient Metrics metrics;
+
+	private long streamStartNanos;
+	private long requestStartNanos;
+	private long parseStartNanos;
+	private long bytes;
+	private long rows;
+	private long serverWaitNanos;
+	private long parseNanos;
+
+	FlinkMetricsReadRowsTracer(String streamName, Metrics metrics) {
+		this.streamName = streamName;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void startStream() {
+		streamStartNanos = System.nanoTime();
+	}
+
+	@Override
+	public void rowsParseStarted() {
+		parseStartNanos = System.nanoTime();
+	}
+
+	@Override
+	public void rowsParseFinished(long rowsParsed) {
+		long elapsed = System.nanoTime() - parseStartNanos;
+		parseNanos += elapsed;
+		rows += rowsParsed;
+		metrics.parseMicros.update(TimeUnit.NANOSECONDS.toMicros(elapsed));
+		metrics.rowsParsed.inc(rowsParsed);
+		metrics.batchRows.update(rowsParsed);
+	}
+
+	@Override
+	public void readRowsResponseRequested() {
+		requestStartNanos = System.nanoTime();
+	}
+
+	@Override
+	public void readRowsResponseObtained(long bytesReceived) {
+		long elapsed = System.nanoTime() - requestStartNanos;
+		serverWaitNanos += elapsed;
+		metrics.serverWaitMicros.update(TimeUnit.NANOSECONDS.toMicros(elapsed));
+		if (bytesReceived > 0) {
+			bytes += bytesReceived;
+			metrics.bytesReceived.inc(bytesReceived);
+			metrics.batchBytes.update(bytesReceived);
+		}
+	}
+
+	@Override
+	public void finished() {
+		log.info("Finished {}: {} bytes, {} rows in {} ms, {} ms waiting for the server, {} ms parsing", streamName,
+				bytes, rows, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - streamStartNanos),
+				TimeUnit.NANOSECONDS.toMillis(serverWaitNanos), TimeUnit.NANOSECONDS.toMillis(parseNanos));
+	}
+
+	@Override
+	public void nextBatchNeeded() {
+	}
+
+	@Override
+	public BigQueryStorageReadRowsTracer forkWithPrefix(String id) {
+		return new FlinkMetricsReadRowsTracer(streamName + "/" + id, metrics.child(id));
+	}
+
+	/** The metrics of one group, registered once and shared by the tracers recording into it. */
+	static final class Metrics {
+
+		private static final int HISTOGRAM_WINDOW_SIZE = 1024;
+
+		private final MetricGroup group;
+		private final Map<String, Metrics> children = new ConcurrentHashMap<>();
+		private final Counter bytesReceived;
+		private final Counter rowsParsed;
+		private final Histogram serverWaitMicros;
+		private final Histogram parseMicros;
+		private final Histogram batchBytes;
+		private final Histogram batchRows;
+
+		Metrics(MetricGroup group) {
+			this.group = group;
+			this.bytesReceived = group.counter("bytesReceived");
+			group.meter("bytesReceivedPerSecond", new MeterView(bytesReceived));
+			this.rowsParsed = group.counter("rowsParsed");
+			group.meter("rowsParsedPerSecond", new MeterView(rowsParsed));
+			this.serverWaitMicros = group.histogram("serverWaitMicros",
+					new SlidingWindowHistogram(HISTOGRAM_WINDOW_SIZE));
+			this.parseMicros = group.histogram("parseMicros", new SlidingWindowHistogram(HISTOGRAM_WINDOW_SIZE));
+			this.batchBytes = group.histogram("batchBytes", new SlidingWindowHistogram(HISTOGRAM_WINDOW_SIZE));
+			this.batchRows = group.histogram("batchRows", new SlidingWindowHistogram(HISTOGRAM_WINDOW_SIZE));
+		}
+
+		Metrics child(String id) {
+			return children.computeIfAbsent(id, name -> new Metrics(group.addGroup(name)));
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import org.apache.flink.metrics.MetricGroup;
+
+/**
+ * Creates {@link FlinkMetricsReadRowsTracer}s which record into the given
+ * metric group, typically the one of a source reader.
+ *
+ * <p>
+ * All streams of the reader record into the same metrics on purpose. A reader
+ * reads many short lived streams and remainders, and a Flink metric group can
+ * not be removed again, so a sub group per stream would grow with every split
+ * for the lifetime of the task. The figures of every single stream are logged
+ * when it is finished.
+ */
+public class FlinkMetricsTracerFactory implements BigQueryTracerFactory {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient FlinkMetricsReadRowsTracer.Metrics metrics;
+
+	public FlinkMetricsTracerFactory(MetricGroup group) {
+		this.metrics = new FlinkMetricsReadRowsTracer.Metrics(group);
+	}
+
+	@Override
+	public BigQueryStorageReadRowsTracer newReadRowsTracer(String streamName) {
+		return new FlinkMetricsReadRowsTracer(streamName, metrics);
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+/** A {@link BigQueryStorageReadRowsTracer} which records nothing. */
+public final class NoOpBigQueryStorageReadRowsTracer implements BigQueryStorageReadRowsTracer {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final NoOpBigQueryStorageReadRowsTracer INSTANCE = new NoOpBigQueryStorageReadRowsTracer();
+
+	private NoOpBigQueryStorageReadRowsTracer() {
+	}
+
+	@Override
+	public void startStream() {
+	}
+
+	@Override
+	public void rowsParseStarted() {
+	}
+
+	@Override
+	public void rowsParseFinished(long rowsParsed) {
+	}
+
+	@Override
+	public void readRowsResponseRequested() {
+	}
+
+	@Override
+	public void readRowsResponseObtained(long bytesReceived) {
+	}
+
+	@Override
+	public void finished() {
+	}
+
+	@Override
+	public void nextBatchNeeded() {
+	}
+
+	@Override
+	public BigQueryStorageReadRowsTracer forkWithPrefix(String id) {
+		return this;
+	}
+}
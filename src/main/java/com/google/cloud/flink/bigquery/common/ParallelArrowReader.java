@@ -15,16 +15,20 @@
  */
 package com.google.cloud.flink.bigquery.common;
 
+import com.google.cloud.flink.bigquery.FlinkBigQueryConfig;
 import com.google.common.base.Preconditions;
 import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import org.apache.arrow.vector.VectorLoader;
 import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.VectorUnloader;
@@ -35,9 +39,10 @@ import org.slf4j.LoggerFactory;
 
 /*
  * A utility class for taking up to N {@link ArrowReader} objects and reading data from them
- * asynchronously. This tries to round robin between all readers given to it to maintain
- * a consistent order. It does not appear spark actually cares about this though
- * so it could be relaxed in the future.
+ * asynchronously. By default this tries to round robin between all readers given to it to
+ * maintain a consistent order. In {@link DeliveryOrder#COMPLETION} order every reader is drained
+ * by its own task and batches are delivered as soon as they are decoded, through a bounded
+ * lock-free ring, so one slow reader never stalls the others.
  *
  * This is useful in a few contexts:
  * * For InputPartitionReaders that have expensive synchronous CPU operations
@@ -46,20 +51,51 @@ import org.slf4j.LoggerFactory;
  * * A way of composing underlying readers for increased throughput (e.g. if readers are each IO
  *   bound waiting on separate services).
  *
+ * How far each reader decodes ahead of the consumer is bounded by a byte budget, measured from
+ * the bodies of the decoded record batches, so that off-heap usage does not depend on the width
+ * of the table and narrow tables are prefetched deeper.
+ *
+ * The index of the reader the current batch came from and the readers which ran out of data are
+ * exposed, so callers can keep track of every underlying stream.
  */
 public class ParallelArrowReader implements AutoCloseable {
 	private static final Logger log = LoggerFactory.getLogger(ParallelArrowReader.class);
 	private static final Object DONE_SENTINEL = new Object();
+	private static final Object WAKE_UP = new Object();
+	// The byte budget bounds the read ahead, the ring only bounds the number of small batches.
+	private static final int RING_SLOTS_PER_READER = 16;
+
+	/** The order in which batches of the different readers are returned. */
+	public enum DeliveryOrder {
+		/** Readers take turns, each one has at most one batch being decoded. */
+		ROUND_ROBIN,
+		/** Batches are returned in the order they were decoded, whichever reader they come from. */
+		COMPLETION
+	}
 
-	// Visible for testing.
+	private final DeliveryOrder order;
+	// Round robin hand-off.
 	private final BlockingQueue<Object> queue;
-	private final Semaphore queueSemaphore;
+	// Completion order hand-off.
+	private final BoundedMpscQueue<Object> ring;
+	private int finishedReaderCount;
 	private final List<ArrowReader> readers;
 	private final ExecutorService executor;
+	private final boolean ownsExecutor;
 	private final VectorLoader loader;
 	private final BigQueryStorageReadRowsTracer rootTracer;
 	private final BigQueryStorageReadRowsTracer tracers[];
 	private final AtomicInteger readersReady;
+	private final ReadAheadBudget[] budgets;
+	private final Queue<Integer> finishedReaders = new ConcurrentLinkedQueue<>();
+	private int currentReaderIndex = -1;
+	private boolean finished;
+
+	// Threads draining a reader in completion order, so that close can stop them
+	// without shutting down a shared executor. Guarded by itself.
+	private final Thread[] drainThreads;
+	private final CountDownLatch drainTasksDone;
+	private boolean closed;
 
 	// Background thread for reading from delegates.
 	private Thread readerThread;
@@ -72,13 +108,64 @@ public class ParallelArrowReader implements AutoCloseable {
 	 */
 	public ParallelArrowReader(List<ArrowReader> readers, ExecutorService executor, VectorLoader loader,
 			BigQueryStorageReadRowsTracer tracer) {
+		this(readers, executor, loader, tracer, DeliveryOrder.ROUND_ROBIN);
+	}
+
+	/**
+	 * @param order The order in which batches of the readers are returned. The
+	 *              executor needs a thread per reader in
+	 *              {@link DeliveryOrder#COMPLETION} order.
+	 */
+	public ParallelArrowReader(List<ArrowReader> readers, ExecutorService executor, VectorLoader loader,
+			BigQueryStorageReadRowsTracer tracer, DeliveryOrder order) {
+		this(readers, executor, loader, tracer, order, FlinkBigQueryConfig.DEFAULT_READ_AHEAD_BYTES_PER_STREAM, 1);
+	}
+
+	/**
+	 * @param readAheadBytesPerReader The bytes of decoded batches each reader may
+	 *                                buffer ahead of the consumer.
+	 * @param minBatchesPerReader     The batches each reader may buffer
+	 *                                regardless of their size.
+	 */
+	public ParallelArrowReader(List<ArrowReader> readers, ExecutorService executor, VectorLoader loader,
+			BigQueryStorageReadRowsTracer tracer, DeliveryOrder order, long readAheadBytesPerReader,
+			int minBatchesPerReader) {
+		this(readers, executor, loader, tracer, order, readAheadBytesPerReader, minBatchesPerReader, true);
+	}
+
+	/**
+	 * @param ownsExecutor Whether the executor is shut down on close. An executor
+	 *                     which outlives the reader is only supported in
+	 *                     {@link DeliveryOrder#COMPLETION} order, its tasks are
+	 *                     interrupted and awaited on close instead.
+	 */
+	public ParallelArrowReader(List<ArrowReader> readers, ExecutorService executor, VectorLoader loader,
+			BigQueryStorageReadRowsTracer tracer, DeliveryOrder order, long readAheadBytesPerReader,
+			int minBatchesPerReader, boolean ownsExecutor) {
+		Preconditions.checkArgument(ownsExecutor || order == DeliveryOrder.COMPLETION,
+				"A shared executor needs completion order");
 		this.readers = readers;
-		// Reserve extra space for sentinel and one extra element processing.
-		queue = new ArrayBlockingQueue<>(readers.size() + 2);
+		this.order = order;
+		this.budgets = new ReadAheadBudget[readers.size()];
+		for (int x = 0; x < readers.size(); x++) {
+			budgets[x] = new ReadAheadBudget(readAheadBytesPerReader, minBatchesPerReader);
+		}
+		if (order == DeliveryOrder.ROUND_ROBIN) {
+			// Bounded by the budgets, plus a marker per reader, an error and the sentinel.
+			queue = new LinkedBlockingQueue<>();
+			ring = null;
+		} else {
+			queue = null;
+			// Batches, the end of stream marker per reader, a possible error and a wake up.
+			ring = new BoundedMpscQueue<>(
+					readers.size() * (Math.max(minBatchesPerReader, RING_SLOTS_PER_READER) + 1) + 2);
+		}
 		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.drainThreads = new Thread[readers.size()];
+		this.drainTasksDone = new CountDownLatch(order == DeliveryOrder.COMPLETION ? readers.size() : 0);
 		this.loader = loader;
 		this.rootTracer = tracer;
-		this.queueSemaphore = new Semaphore(readers.size());
 		this.readersReady = new AtomicInteger(readers.size());
 		tracers = new BigQueryStorageReadRowsTracer[readers.size()];
 		for (int x = 0; x < readers.size(); x++) {
@@ -87,14 +174,32 @@ public class ParallelArrowReader implements AutoCloseable {
 		start();
 	}
 
+	/**
+	 * Loads the next batch, returns false once all readers are read or when
+	 * woken up by {@link #wakeUp()}. {@link #isFinished()} tells both apart.
+	 */
 	public boolean next() throws IOException {
 		rootTracer.nextBatchNeeded();
 		rootTracer.readRowsResponseRequested();
 		ArrowRecordBatch resolvedBatch = null;
 		try {
-			Object nextObject = queue.take();
-			queueSemaphore.release();
+			if (finished) {
+				return false;
+			}
+			Object nextObject = take();
+			while (nextObject instanceof ReaderFinished) {
+				finishedReaders.add(((ReaderFinished) nextObject).readerIndex);
+				if (order == DeliveryOrder.COMPLETION && ++finishedReaderCount == readers.size()) {
+					finished = true;
+					return false;
+				}
+				nextObject = take();
+			}
+			if (nextObject == WAKE_UP) {
+				return false;
+			}
 			if (nextObject == DONE_SENTINEL) {
+				finished = true;
 				return false;
 			}
 			if (nextObject instanceof Throwable) {
@@ -103,8 +208,15 @@ public class ParallelArrowReader implements AutoCloseable {
 				}
 				throw new IOException((Throwable) nextObject);
 			}
-			Preconditions.checkState(nextObject instanceof ArrowRecordBatch, "Expected future object");
-			resolvedBatch = (ArrowRecordBatch) nextObject;
+			Preconditions.checkState(nextObject instanceof ReaderBatch, "Expected future object");
+			ReaderBatch readerBatch = (ReaderBatch) nextObject;
+			currentReaderIndex = readerBatch.readerIndex;
+			resolvedBatch = readerBatch.batch;
+			budgets[currentReaderIndex].release(readerBatch.bytes);
+			if (readerThread != null) {
+				// Let the round robin loop submit a reader which ran out of budget.
+				LockSupport.unpark(readerThread);
+			}
 		} catch (InterruptedException e) {
 			log.error("Interrupted when waiting for next batch");			
 			return false;
@@ -123,17 +235,129 @@ public class ParallelArrowReader implements AutoCloseable {
 		return false;
 	}
 
+	private Object take() throws InterruptedException {
+		if (order == DeliveryOrder.COMPLETION) {
+			return ring.take();
+		}
+		return queue.take();
+	}
+
+	/**
+	 * Makes a {@link #next()} waiting for a batch return without one, or the next
+	 * call if none is waiting. May be called from any thread.
+	 */
+	public void wakeUp() {
+		if (order == DeliveryOrder.COMPLETION) {
+			// a full ring does not block the consumer anyway
+			ring.offer(WAKE_UP);
+		} else {
+			queue.offer(WAKE_UP);
+		}
+	}
+
+	/** Whether all batches of all readers were returned. */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/** Index of the reader the batch loaded by the last {@link #next()} came from. */
+	public int getCurrentReaderIndex() {
+		return currentReaderIndex;
+	}
+
+	/**
+	 * Returns the index of a reader whose batches were all returned by
+	 * {@link #next()}, or null if there is none.
+	 */
+	public Integer pollFinishedReader() {
+		return finishedReaders.poll();
+	}
+
 	private void start() {
-		readerThread = new Thread(this::consumeReaders);
-		readerThread.setDaemon(true);
-		readerThread.start();
+		if (order == DeliveryOrder.COMPLETION) {
+			for (int x = 0; x < readers.size(); x++) {
+				final int idx = x;
+				executor.submit(() -> drainReader(idx));
+			}
+		} else {
+			readerThread = new Thread(this::consumeReaders);
+			readerThread.setDaemon(true);
+			readerThread.start();
+		}
 		rootTracer.startStream();
 	}
 
+	/** Reads all batches of one reader into the ring, in completion order. */
+	private void drainReader(int idx) {
+		synchronized (drainThreads) {
+			if (closed) {
+				drainTasksDone.countDown();
+				return;
+			}
+			drainThreads[idx] = Thread.currentThread();
+		}
+		try {
+			drainReaderBatches(idx);
+		} finally {
+			synchronized (drainThreads) {
+				drainThreads[idx] = null;
+				// the interrupt of close must not reach the next task of a shared executor
+				Thread.interrupted();
+			}
+			drainTasksDone.countDown();
+		}
+	}
+
+	private void drainReaderBatches(int idx) {
+		ArrowReader reader = readers.get(idx);
+		BigQueryStorageReadRowsTracer tracer = tracers[idx];
+		tracer.startStream();
+		long lastBytesRead = 0;
+		try {
+			VectorSchemaRoot root = reader.getVectorSchemaRoot();
+			VectorUnloader unloader = new VectorUnloader(root, /* includeNullCount= */ true, /* alignBuffers= */ false);
+			while (true) {
+				budgets[idx].awaitRoom();
+				tracer.readRowsResponseRequested();
+				boolean hasData = reader.loadNextBatch();
+				tracer.readRowsResponseObtained(/* bytesReceived= */ reader.bytesRead() - lastBytesRead);
+				lastBytesRead = reader.bytesRead();
+				if (!hasData) {
+					ring.put(new ReaderFinished(idx));
+					return;
+				}
+				// Not quite parsing but re-use it here.
+				tracer.rowsParseStarted();
+				ArrowRecordBatch batch = unloader.getRecordBatch();
+				tracer.rowsParseFinished(root.getRowCount());
+				ReaderBatch readerBatch = new ReaderBatch(idx, batch);
+				budgets[idx].add(readerBatch.bytes);
+				try {
+					ring.put(readerBatch);
+				} catch (InterruptedException e) {
+					batch.close();
+					throw e;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Throwable e) {
+			log.error("Exception caught while consuming reader.", e);
+			try {
+				ring.put(e);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
 	private void consumeReaders() {
 		try {
 			// Tracks which readers have exhausted all of there elements
 			AtomicBoolean[] hasData = new AtomicBoolean[readers.size()];
+			// Readers which have a task submitted, at most one task reads a reader.
+			AtomicBoolean[] inFlight = new AtomicBoolean[readers.size()];
+			Thread consumerThread = Thread.currentThread();
 			long lastBytesRead[] = new long[readers.size()];
 
 			VectorUnloader[] unloader = new VectorUnloader[readers.size()];
@@ -142,6 +366,7 @@ public class ParallelArrowReader implements AutoCloseable {
 			for (int x = 0; x < hasData.length; x++) {
 				hasData[x] = new AtomicBoolean();
 				hasData[x].set(true);
+				inFlight[x] = new AtomicBoolean();
 				lastBytesRead[x] = 0;
 				roots[x] = readers.get(x).getVectorSchemaRoot();
 				unloader[x] = new VectorUnloader(roots[x], /* includeNullCount= */ true, /* alignBuffers= */ false);
@@ -149,60 +374,35 @@ public class ParallelArrowReader implements AutoCloseable {
 			}
 
 			while (readersReady.get() > 0) {
+				boolean submitted = false;
 				for (int readerIdx = 0; readerIdx < readers.size(); readerIdx++) {
 					// Ensure that we don't submit another task for the same reader
 					// until the last one completed. This is necessary when some readers run out of
 					// tasks.
-					if (!hasData[readerIdx].get()) {
+					if (!hasData[readerIdx].get() || inFlight[readerIdx].get() || !budgets[readerIdx].hasRoom()) {
 						continue;
 					}
 					ArrowReader reader = readers.get(readerIdx);
 					final int idx = readerIdx;
-					queueSemaphore.acquire();
+					inFlight[idx].set(true);
+					submitted = true;
 					executor.submit(() -> {
-						synchronized (roots[idx]) {
-							if (!hasData[idx].get()) {
-								return;
-							}
-							try {
-								tracers[idx].readRowsResponseRequested();
-								hasData[idx].set(reader.loadNextBatch());
-								if (!hasData[idx].get()) {
-									queueSemaphore.release();
-								}
-								long incrementalBytesRead = reader.bytesRead() - lastBytesRead[idx];
-								tracers[idx].readRowsResponseObtained(/* bytesReceived= */ incrementalBytesRead);
-								lastBytesRead[idx] = reader.bytesRead();
-							} catch (Throwable e) {
-								log.error("Exception caught while consuming reader.", e);
-								hasData[idx].set(false);
-								readersReady.set(0);
-								Preconditions.checkState(queue.offer(e), "Expected space in queue");
-							}
-							ArrowRecordBatch batch = null;
-							if (!hasData[idx].get()) {
-								readersReady.addAndGet(-1);
-								return;
-							}
-							int rows = 0;
-							try {
-								rows = reader.getVectorSchemaRoot().getRowCount();
-							} catch (IOException e) {
-								queue.offer(e);
-							}
-							// Not quite parsing but re-use it here.
-							tracers[idx].rowsParseStarted();
-							batch = unloader[idx].getRecordBatch();
-							tracers[idx].rowsParseFinished(rows);
-							try {
-								Preconditions.checkState(queue.offer(batch), "Expected space in queue");
-							} catch (Exception e) {
-								batch.close();
-								throw e;
-							}
+						try {
+							readNextBatch(reader, idx, hasData[idx], lastBytesRead, unloader[idx]);
+						} finally {
+							inFlight[idx].set(false);
+							LockSupport.unpark(consumerThread);
 						}
 					});
 				}
+				if (!submitted) {
+					// Every reader with data left is busy or out of budget, wait for a task to
+					// complete or a batch to be consumed.
+					LockSupport.park(this);
+					if (Thread.interrupted()) {
+						throw new InterruptedException();
+					}
+				}
 			}
 		} catch (Throwable e) {
 			log.error("Read ahead caught exceptions", e);
@@ -212,6 +412,47 @@ public class ParallelArrowReader implements AutoCloseable {
 		Preconditions.checkState(queue.offer(DONE_SENTINEL), "Expected available capacity");
 	}
 
+	private void readNextBatch(ArrowReader reader, int idx, AtomicBoolean hasData, long[] lastBytesRead,
+			VectorUnloader unloader) {
+		try {
+			tracers[idx].readRowsResponseRequested();
+			hasData.set(reader.loadNextBatch());
+			if (!hasData.get()) {
+				Preconditions.checkState(queue.offer(new ReaderFinished(idx)), "Expected space in queue");
+			}
+			long incrementalBytesRead = reader.bytesRead() - lastBytesRead[idx];
+			tracers[idx].readRowsResponseObtained(/* bytesReceived= */ incrementalBytesRead);
+			lastBytesRead[idx] = reader.bytesRead();
+		} catch (Throwable e) {
+			log.error("Exception caught while consuming reader.", e);
+			hasData.set(false);
+			readersReady.set(0);
+			Preconditions.checkState(queue.offer(e), "Expected space in queue");
+		}
+		if (!hasData.get()) {
+			readersReady.addAndGet(-1);
+			return;
+		}
+		int rows = 0;
+		try {
+			rows = reader.getVectorSchemaRoot().getRowCount();
+		} catch (IOException e) {
+			queue.offer(e);
+		}
+		// Not quite parsing but re-use it here.
+		tracers[idx].rowsParseStarted();
+		ArrowRecordBatch batch = unloader.getRecordBatch();
+		tracers[idx].rowsParseFinished(rows);
+		ReaderBatch readerBatch = new ReaderBatch(idx, batch);
+		budgets[idx].add(readerBatch.bytes);
+		try {
+			Preconditions.checkState(queue.offer(readerBatch), "Expected space in queue");
+		} catch (Exception e) {
+			batch.close();
+			throw e;
+		}
+	}
+
 	@Override
 	public void close() {
 		rootTracer.finished();
@@ -230,19 +471,31 @@ public class ParallelArrowReader implements AutoCloseable {
 				log.info("Reader thread stopped.  Queue size: {}", queue.size());
 			}
 		}
-		// Stop any queued tasks from processing.
-		executor.shutdownNow();
+		if (ownsExecutor) {
+			// Stop any queued tasks from processing.
+			executor.shutdownNow();
 
-		try {
-			if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
-				log.warn("executor did not terminate after 10 seconds");
+			try {
+				if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+					log.warn("executor did not terminate after 10 seconds");
+				}
+			} catch (InterruptedException e) {
+				log.error("Interrupted when awaiting executor termination");
 			}
-		} catch (InterruptedException e) {
-			log.error("Interrupted when awaiting executor termination");
+		} else {
+			stopDrainTasks();
 		}
 
-		queue.stream().filter(x -> x instanceof ArrowRecordBatch).map(x -> (ArrowRecordBatch) x)
-				.forEach(ArrowRecordBatch::close);
+		if (queue != null) {
+			queue.stream().filter(x -> x instanceof ReaderBatch).map(x -> ((ReaderBatch) x).batch)
+					.forEach(ArrowRecordBatch::close);
+		} else {
+			for (Object next = ring.poll(); next != null; next = ring.poll()) {
+				if (next instanceof ReaderBatch) {
+					((ReaderBatch) next).batch.close();
+				}
+			}
+		}
 
 		for (BigQueryStorageReadRowsTracer tracer : tracers) {
 			tracer.finished();
@@ -258,4 +511,42 @@ public class ParallelArrowReader implements AutoCloseable {
 			}
 		}
 	}
+
+	private void stopDrainTasks() {
+		synchronized (drainThreads) {
+			closed = true;
+			for (Thread drainThread : drainThreads) {
+				if (drainThread != null) {
+					drainThread.interrupt();
+				}
+			}
+		}
+		try {
+			if (!drainTasksDone.await(10, TimeUnit.SECONDS)) {
+				log.warn("drain tasks did not finish after 10 seconds");
+			}
+		} catch (InterruptedException e) {
+			log.error("Interrupted when awaiting the drain tasks");
+		}
+	}
+
+	private static final class ReaderBatch {
+		private final int readerIndex;
+		private final ArrowRecordBatch batch;
+		private final long bytes;
+
+		private ReaderBatch(int readerIndex, ArrowRecordBatch batch) {
+			this.readerIndex = readerIndex;
+			this.batch = batch;
+			this.bytes = batch.computeBodyLength();
+		}
+	}
+
+	private static final class ReaderFinished {
+		private final int readerIndex;
+
+		private ReaderFinished(int readerIndex) {
+			this.readerIndex = readerIndex;
+		}
+	}
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import com.google.api.gax.rpc.HeaderProvider;
+import com.google.cloud.bigquery.connector.common.BigQueryClientFactory;
+import com.google.cloud.bigquery.connector.common.BigQueryConfig;
+import com.google.cloud.bigquery.connector.common.BigQueryCredentialsSupplier;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.flink.bigquery.common.BigQueryClientPool.Lease;
+
+/**
+ * A BigQueryClientFactory which hands out a Storage Read client leased from the
+ * {@link BigQueryClientPool} instead of creating one of its own. It is pooled
+ * itself, so creating a ReadSession neither loads the credentials nor sets up
+ * the gRPC channels again.
+ */
+public final class PooledBigQueryClientFactory extends BigQueryClientFactory {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient Lease<BigQueryReadClient> readClient;
+
+	public PooledBigQueryClientFactory(BigQueryCredentialsSupplier credentialsSupplier, HeaderProvider headerProvider,
+			BigQueryConfig config, Lease<BigQueryReadClient> readClient) {
+		super(credentialsSupplier, headerProvider, config);
+		this.readClient = readClient;
+	}
+
+	@Override
+	public BigQueryReadClient getBigQueryReadClient() {
+		return readClient.get();
+	}
+
+	/** Releases the leased Storage Read client. */
+	void close() {
+		readClient.close();
+	}
+}
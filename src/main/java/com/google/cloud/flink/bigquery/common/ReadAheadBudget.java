@@ -0,0 +1,68 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Limits the decoded batches one reader may buffer ahead of the consumer.
+ * A reader may always buffer the minimum number of batches, beyond that it
+ * may read ahead while the buffered bytes are below the budget. Batches are
+ * sized by the bodies of their {@link org.apache.arrow.vector.ipc.message.ArrowRecordBatch}.
+ */
+final class ReadAheadBudget {
+
+	private final long maxBytes;
+	private final int minBatches;
+	private long bufferedBytes;
+	private int bufferedBatches;
+
+	ReadAheadBudget(long maxBytes, int minBatches) {
+		Preconditions.checkArgument(maxBytes > 0, "Read ahead bytes must be positive, got %s", maxBytes);
+		Preconditions.checkArgument(minBatches > 0, "Read ahead batches must be positive, got %s", minBatches);
+		this.maxBytes = maxBytes;
+		this.minBatches = minBatches;
+	}
+
+	/** Whether the reader may decode another batch. */
+	synchronized boolean hasRoom() {
+		return bufferedBatches < minBatches || bufferedBytes < maxBytes;
+	}
+
+	/** Blocks until the reader may decode another batch. */
+	synchronized void awaitRoom() throws InterruptedException {
+		while (!hasRoom()) {
+			wait();
+		}
+	}
+
+	/** Records a decoded batch which was handed to the consumer. */
+	synchronized void add(long bytes) {
+		bufferedBytes += bytes;
+		bufferedBatches++;
+	}
+
+	/** Records a batch which was taken by the consumer. */
+	synchronized void release(long bytes) {
+		bufferedBytes -= bytes;
+		bufferedBatches--;
+		notifyAll();
+	}
+
+	synchronized long getBufferedBytes() {
+		return bufferedBytes;
+	}
+}
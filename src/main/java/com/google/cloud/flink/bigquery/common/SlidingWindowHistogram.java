@@ -0,0 +1,116 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import java.util.Arrays;
+
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.HistogramStatistics;
+
+/** A {@link Histogram} over the last values it was updated with. */
+final class SlidingWindowHistogram implements Histogram {
+
+	private final long[] window;
+	private long count;
+
+	SlidingWindowHistogram(int windowSize) {
+		this.window = new long[windowSize];
+	}
+
+	@Override
+	public synchronized void update(long value) {
+		window[(int) (count % window.length)] = value;
+		count++;
+	}
+
+	@Override
+	public synchronized long getCount() {
+		return count;
+	}
+
+	@Override
+	public HistogramStatistics getStatistics() {
+		long[] values;
+		synchronized (this) {
+			values = Arrays.copyOf(window, (int) Math.min(count, window.length));
+		}
+		Arrays.sort(values);
+		return new Statistics(values);
+	}
+
+	private static final class Statistics extends HistogramStatistics {
+
+		private final long[] sorted;
+
+		private Statistics(long[] sorted) {
+			this.sorted = sorted;
+		}
+
+		@Override
+		public double getQuantile(double quantile) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(quantile * sorted.length) - 1;
+			return sorted[Math.min(sorted.length - 1, Math.max(0, index))];
+		}
+
+		@Override
+		public long[] getValues() {
+			return sorted.clone();
+		}
+
+		@Override
+		public int size() {
+			return sorted.length;
+		}
+
+		@Override
+		public double getMean() {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			double sum = 0;
+			for (long value : sorted) {
+				sum += value;
+			}
+			return sum / sorted.length;
+		}
+
+		@Override
+		public double getStdDev() {
+			if (sorted.length < 2) {
+				return 0;
+			}
+			double mean = getMean();
+			double sum = 0;
+			for (long value : sorted) {
+				sum += (value - mean) * (value - mean);
+			}
+			return Math.sqrt(sum / (sorted.length - 1));
+		}
+
+		@Override
+		public long getMax() {
+			return sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+		}
+
+		@Override
+		public long getMin() {
+			return sorted.length == 0 ? 0 : sorted[0];
+		}
+	}
+}
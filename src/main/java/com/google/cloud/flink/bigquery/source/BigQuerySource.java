@@ -0,0 +1,173 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.connector.source.Boundedness;
+import org.apache.flink.api.connector.source.Source;
+import org.apache.flink.api.connector.source.SourceReader;
+import org.apache.flink.api.connector.source.SourceReaderContext;
+import org.apache.flink.api.connector.source.SplitEnumerator;
+import org.apache.flink.api.connector.source.SplitEnumeratorContext;
+import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
+import org.apache.flink.core.io.SimpleVersionedSerializer;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.util.UserCodeClassLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.flink.bigquery.ArrowRowDataDeserializationSchema;
+import com.google.cloud.flink.bigquery.BigQueryReadSession;
+import com.google.cloud.flink.bigquery.FlinkBigQueryConfig;
+import com.google.cloud.flink.bigquery.FlinkBigQueryException;
+import com.google.cloud.flink.bigquery.common.BigQueryClientPool.ClientKey;
+import com.google.cloud.flink.bigquery.common.BigQueryTracerFactory;
+import com.google.cloud.flink.bigquery.common.FlinkMetricsTracerFactory;
+import com.google.cloud.flink.bigquery.source.enumerator.BigQuerySourceEnumState;
+import com.google.cloud.flink.bigquery.source.enumerator.BigQuerySourceEnumStateSerializer;
+import com.google.cloud.flink.bigquery.source.enumerator.BigQuerySourceEnumerator;
+import com.google.cloud.flink.bigquery.source.reader.BigQuerySourceReader;
+import com.google.cloud.flink.bigquery.source.reader.BigQuerySplitReader;
+import com.google.cloud.flink.bigquery.source.reader.RowLimit;
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplitSerializer;
+
+/**
+ * Bounded source reading a BigQuery ReadSession. The session is created by
+ * the enumerator when the job starts, and every ReadStream of it becomes a
+ * {@link BigQuerySourceSplit}, so the streams are read in parallel by all
+ * subtasks of the source.
+ *
+ * <p>
+ * Checkpoints record how many rows of every stream were emitted, and a restored
+ * job continues the streams of the original session from there. A session
+ * which expired in the meantime can not be resumed, it is recreated and read
+ * again from the start.
+ *
+ * <p>
+ * A "limit" option caps the number of rows every source reader emits, across
+ * all the splits it reads.
+ */
+public final class BigQuerySource
+		implements Source<RowData, BigQuerySourceSplit, BigQuerySourceEnumState>, ResultTypeQueryable<RowData> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger log = LoggerFactory.getLogger(BigQuerySource.class);
+
+	private final DeserializationSchema<RowData> deserializer;
+	private final HashMap<String, String> configOption;
+
+	public BigQuerySource(DeserializationSchema<RowData> deserializer, Map<String, String> configOption) {
+		this.deserializer = deserializer;
+		this.configOption = new HashMap<>(configOption);
+	}
+
+	@Override
+	public Boundedness getBoundedness() {
+		return Boundedness.BOUNDED;
+	}
+
+	@Override
+	public SourceReader<RowData, BigQuerySourceSplit> createReader(SourceReaderContext readerContext)
+			throws Exception {
+		deserializer.open(new DeserializationSchema.InitializationContext() {
+			@Override
+			public MetricGroup getMetricGroup() {
+				return readerContext.metricGroup();
+			}
+
+			@Override
+			public UserCodeClassLoader getUserCodeClassLoader() {
+				return readerContext.getUserCodeClassLoader();
+			}
+		});
+		Supplier<BigQueryReadClient> clientFactory = () -> {
+			try {
+				return BigQueryReadSession.createReadClient(configOption);
+			} catch (IOException e) {
+				throw new FlinkBigQueryException("Error while creating the BigQueryReadClient", e);
+			}
+		};
+		ClientKey clientKey = BigQueryReadSession.getClientKey(configOption);
+		FlinkBigQueryConfig bqconfig = BigQueryReadSession.getConfig(configOption);
+		int streamsPerReader = getStreamsPerReader(bqconfig);
+		BigQueryTracerFactory tracerFactory = new FlinkMetricsTracerFactory(
+				readerContext.metricGroup().addGroup("bigquery"));
+		RowLimit limit = new RowLimit(Long.parseLong(configOption.getOrDefault("limit", "-1")));
+		return new BigQuerySourceReader(splitHandoff -> new BigQuerySplitReader(clientFactory, clientKey,
+				deserializer, splitHandoff, bqconfig, tracerFactory, streamsPerReader, limit), deserializer,
+				streamsPerReader, limit, readerContext.getConfiguration(), readerContext);
+	}
+
+	/** The streams every reader reads at once, several of them only with the arrow format. */
+	private int getStreamsPerReader(FlinkBigQueryConfig bqconfig) {
+		int streamsPerReader = Math.max(1, bqconfig.getNumStreamsPerPartition());
+		if (streamsPerReader > 1 && !(deserializer instanceof ArrowRowDataDeserializationSchema)) {
+			log.warn("Reading several streams at once needs the arrow format, reading one stream at a time");
+			return 1;
+		}
+		return streamsPerReader;
+	}
+
+	@Override
+	public SplitEnumerator<BigQuerySourceSplit, BigQuerySourceEnumState> createEnumerator(
+			SplitEnumeratorContext<BigQuerySourceSplit> enumContext) {
+		return new BigQuerySourceEnumerator(enumContext, () -> BigQueryReadSession.getReadsession(configOption),
+				isDynamicSplitting());
+	}
+
+	@Override
+	public SplitEnumerator<BigQuerySourceSplit, BigQuerySourceEnumState> restoreEnumerator(
+			SplitEnumeratorContext<BigQuerySourceSplit> enumContext, BigQuerySourceEnumState checkpoint)
+			throws Exception {
+		if (BigQuerySourceSplit.isReadSessionExpiring(checkpoint.getReadSessionExpireTime(),
+				System.currentTimeMillis())) {
+			log.warn("ReadSession of the restored checkpoint expired, recreating it and reading the table again");
+			return createEnumerator(enumContext);
+		}
+		return new BigQuerySourceEnumerator(enumContext, checkpoint.getRemainingSplits(),
+				checkpoint.getReadSessionExpireTime(), isDynamicSplitting());
+	}
+
+	/** Streams are split for idle readers unless the "dynamicSplitting" option is false. */
+	private boolean isDynamicSplitting() {
+		return Boolean.parseBoolean(configOption.getOrDefault("dynamicSplitting", "true"));
+	}
+
+	@Override
+	public SimpleVersionedSerializer<BigQuerySourceSplit> getSplitSerializer() {
+		return BigQuerySourceSplitSerializer.INSTANCE;
+	}
+
+	@Override
+	public SimpleVersionedSerializer<BigQuerySourceEnumState> getEnumeratorCheckpointSerializer() {
+		return BigQuerySourceEnumStateSerializer.INSTANCE;
+	}
+
+	@Override
+	public TypeInformation<RowData> getProducedType() {
+		return deserializer.getProducedType();
+	}
+}
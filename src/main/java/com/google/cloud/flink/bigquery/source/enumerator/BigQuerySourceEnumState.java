@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.enumerator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+
+/**
+ * Checkpointed state of the {@link BigQuerySourceEnumerator}: the splits not yet
+ * assigned and the expire time of the ReadSession they belong to.
+ */
+public class BigQuerySourceEnumState {
+
+	private final List<BigQuerySourceSplit> remainingSplits;
+	private final long readSessionExpireTime;
+
+	public BigQuerySourceEnumState(Collection<BigQuerySourceSplit> remainingSplits, long readSessionExpireTime) {
+		this.remainingSplits = new ArrayList<>(remainingSplits);
+		this.readSessionExpireTime = readSessionExpireTime;
+	}
+
+	public List<BigQuerySourceSplit> getRemainingSplits() {
+		return remainingSplits;
+	}
+
+	public long getReadSessionExpireTime() {
+		return readSessionExpireTime;
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.enumerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.flink.core.io.SimpleVersionedSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplitSerializer;
+
+/** Serializer for {@link BigQuerySourceEnumState}. */
+public class BigQuerySourceEnumStateSerializer implements SimpleVersionedSerializer<BigQuerySourceEnumState> {
+
+	public static final BigQuerySourceEnumStateSerializer INSTANCE = new BigQuerySourceEnumStateSerializer();
+
+	// version 1 did not contain the session expire time
+	private static final int VERSION = 2;
+
+	private BigQuerySourceEnumStateSerializer() {
+	}
+
+	@Override
+	public int getVersion() {
+		return VERSION;
+	}
+
+	@Override
+	public byte[] serialize(BigQuerySourceEnumState state) throws IOException {
+		BigQuerySourceSplitSerializer splitSerializer = BigQuerySourceSplitSerializer.INSTANCE;
+		DataOutputSerializer out = new DataOutputSerializer(256);
+		out.writeInt(splitSerializer.getVersion());
+		out.writeInt(state.getRemainingSplits().size());
+		for (BigQuerySourceSplit split : state.getRemainingSplits()) {
+			byte[] serializedSplit = splitSerializer.serialize(split);
+			out.writeInt(serializedSplit.length);
+			out.write(serializedSplit);
+		}
+		out.writeLong(state.getReadSessionExpireTime());
+		return out.getCopyOfBuffer();
+	}
+
+	@Override
+	public BigQuerySourceEnumState deserialize(int version, byte[] serialized) throws IOException {
+		if (version != 1 && version != VERSION) {
+			throw new IOException("Unknown version of BigQuerySourceEnumState: " + version);
+		}
+		DataInputDeserializer in = new DataInputDeserializer(serialized);
+		int splitVersion = in.readInt();
+		int numSplits = in.readInt();
+		List<BigQuerySourceSplit> splits = new ArrayList<>(numSplits);
+		for (int i = 0; i < numSplits; i++) {
+			byte[] serializedSplit = new byte[in.readInt()];
+			in.readFully(serializedSplit);
+			splits.add(BigQuerySourceSplitSerializer.INSTANCE.deserialize(splitVersion, serializedSplit));
+		}
+		long readSessionExpireTime = version == 1 ? BigQuerySourceSplit.NO_EXPIRE_TIME : in.readLong();
+		return new BigQuerySourceEnumState(splits, readSessionExpireTime);
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.enumerator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.apache.flink.api.connector.source.SourceEvent;
+import org.apache.flink.api.connector.source.SplitEnumerator;
+import org.apache.flink.api.connector.source.SplitEnumeratorContext;
+import org.apache.flink.util.function.SupplierWithException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.cloud.bigquery.storage.v1.ReadSession;
+import com.google.cloud.flink.bigquery.FlinkBigQueryException;
+import com.google.cloud.flink.bigquery.source.event.SplitStreamRequestEvent;
+import com.google.cloud.flink.bigquery.source.event.StreamProgressEvent;
+import com.google.cloud.flink.bigquery.source.event.StreamSplitAckEvent;
+import com.google.cloud.flink.bigquery.source.event.StreamSplitResultEvent;
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+
+/**
+ * Hands out one ReadStream split at a time to the readers that ask for work, so
+ * that the streams of a session are spread over all subtasks.
+ *
+ * <p>
+ * Once all streams are handed out, a reader asking for work is not finished
+ * right away. With dynamic splitting enabled, the reader with the least
+ * progress on its stream is asked to split it, and the remainder is handed to
+ * the idle reader. Readers reading several streams at once never report their
+ * progress, so they are never asked.
+ *
+ * <p>
+ * Splits are never handed out shortly before their ReadSession expires, so a
+ * reader only sees an expired split when it was restored after the session has
+ * been recreated.
+ *
+ * <p>
+ * A new job creates its ReadSession when the enumerator starts, so planning a
+ * query never creates one. The readers learn about the streams of the session
+ * only through the splits they are assigned.
+ */
+public class BigQuerySourceEnumerator implements SplitEnumerator<BigQuerySourceSplit, BigQuerySourceEnumState> {
+
+	private static final Logger log = LoggerFactory.getLogger(BigQuerySourceEnumerator.class);
+
+	// streams which are almost read are not worth splitting anymore
+	private static final double MAX_SPLIT_PROGRESS = 0.9;
+
+	private static final double FINISHED = 1.0;
+
+	private final SplitEnumeratorContext<BigQuerySourceSplit> context;
+	private final Deque<BigQuerySourceSplit> remainingSplits;
+	private final boolean dynamicSplitting;
+	@Nullable
+	private SupplierWithException<ReadSession, IOException> readSessionFactory;
+	private long readSessionExpireTime;
+
+	// progress of the stream each busy reader is reading, only readers reading a
+	// single stream at a time report it, so only their streams can be split
+	private final Map<Integer, Double> readerProgress = new HashMap<>();
+	// idle readers waiting for a remainder, keyed by the reader asked to split
+	private final Map<Integer, Integer> pendingStreamSplits = new HashMap<>();
+
+	public BigQuerySourceEnumerator(SplitEnumeratorContext<BigQuerySourceSplit> context,
+			Collection<BigQuerySourceSplit> splits, long readSessionExpireTime, boolean dynamicSplitting) {
+		this.context = context;
+		this.remainingSplits = new ArrayDeque<>(splits);
+		this.readSessionExpireTime = readSessionExpireTime;
+		this.dynamicSplitting = dynamicSplitting;
+	}
+
+	/** Creates an enumerator which reads the session created by the factory once it starts. */
+	public BigQuerySourceEnumerator(SplitEnumeratorContext<BigQuerySourceSplit> context,
+			SupplierWithException<ReadSession, IOException> readSessionFactory, boolean dynamicSplitting) {
+		this(context, Collections.emptyList(), BigQuerySourceSplit.NO_EXPIRE_TIME, dynamicSplitting);
+		this.readSessionFactory = readSessionFactory;
+	}
+
+	@Override
+	public void start() {
+		if (readSessionFactory != null) {
+			ReadSession readSession;
+			try {
+				readSession = readSessionFactory.get();
+			} catch (IOException e) {
+				throw new FlinkBigQueryException("Error while creating the ReadSession", e);
+			}
+			log.info("Created ReadSession {}", readSession.getName());
+			remainingSplits.addAll(Arrays.asList(BigQuerySourceSplit.fromReadSession(readSession)));
+			readSessionExpireTime = BigQuerySourceSplit.expireTimeOf(readSession);
+			readSessionFactory = null;
+		}
+		log.info("Starting BigQuery split enumerator with {} streams", remainingSplits.size());
+	}
+
+	@Override
+	public void handleSplitRequest(int subtaskId, @Nullable String requesterHostname) {
+		if (!context.registeredReaders().containsKey(subtaskId)) {
+			// reader failed between sending the request and arrival here
+			return;
+		}
+		// the reader only asks for work once it finished its stream
+		readerProgress.remove(subtaskId);
+		assignWork(subtaskId);
+	}
+
+	private void assignWork(int subtaskId) {
+		if (!remainingSplits.isEmpty() && BigQuerySourceSplit.isReadSessionExpiring(readSessionExpireTime, System.currentTimeMillis())) {
+			// the remaining streams can not be read anymore, restoring recreates the session
+			throw new IllegalStateException("ReadSession expires before the remaining " + remainingSplits.size()
+					+ " streams can be read");
+		}
+		BigQuerySourceSplit split = remainingSplits.poll();
+		if (split != null) {
+			assignSplit(split, subtaskId);
+		} else if (!requestStreamSplit(subtaskId)) {
+			log.info("No more splits available for subtask {}", subtaskId);
+			context.signalNoMoreSplits(subtaskId);
+		}
+	}
+
+	private void assignSplit(BigQuerySourceSplit split, int subtaskId) {
+		log.info("Assigning split {} to subtask {}", split, subtaskId);
+		context.assignSplit(split, subtaskId);
+	}
+
+	/**
+	 * Asks the reader with the least progress to split its stream in the middle
+	 * of what it has left to read. Returns false if no stream is worth splitting.
+	 */
+	private boolean requestStreamSplit(int waitingSubtaskId) {
+		if (!dynamicSplitting) {
+			return false;
+		}
+		Integer splittingSubtaskId = null;
+		double minProgress = MAX_SPLIT_PROGRESS;
+		for (Map.Entry<Integer, Double> progress : readerProgress.entrySet()) {
+			if (progress.getValue() < minProgress && !pendingStreamSplits.containsKey(progress.getKey())
+					&& context.registeredReaders().containsKey(progress.getKey())) {
+				splittingSubtaskId = progress.getKey();
+				minProgress = progress.getValue();
+			}
+		}
+		if (splittingSubtaskId == null) {
+			return false;
+		}
+		double fraction = minProgress + (1.0 - minProgress) / 2;
+		log.info("Asking subtask {} to split its stream at {} for subtask {}", splittingSubtaskId, fraction,
+				waitingSubtaskId);
+		pendingStreamSplits.put(splittingSubtaskId, waitingSubtaskId);
+		context.sendEventToSourceReader(splittingSubtaskId, new SplitStreamRequestEvent(fraction));
+		return true;
+	}
+
+	@Override
+	public void handleSourceEvent(int subtaskId, SourceEvent sourceEvent) {
+		if (sourceEvent instanceof StreamProgressEvent) {
+			// a stream which could not be split stays finished until the reader asks for work
+			if (readerProgress.getOrDefault(subtaskId, 0.0) < FINISHED) {
+				readerProgress.put(subtaskId, ((StreamProgressEvent) sourceEvent).getFractionConsumed());
+			}
+		} else if (sourceEvent instanceof StreamSplitResultEvent) {
+			handleStreamSplitResult(subtaskId, ((StreamSplitResultEvent) sourceEvent).getRemainder());
+		} else {
+			log.warn("Ignoring unknown event {} from subtask {}", sourceEvent, subtaskId);
+		}
+	}
+
+	private void handleStreamSplitResult(int subtaskId, @Nullable BigQuerySourceSplit remainder) {
+		Integer waitingSubtaskId = pendingStreamSplits.remove(subtaskId);
+		if (remainder == null) {
+			readerProgress.put(subtaskId, FINISHED);
+		} else {
+			context.sendEventToSourceReader(subtaskId, new StreamSplitAckEvent(remainder.splitId()));
+			if (waitingSubtaskId == null || !context.registeredReaders().containsKey(waitingSubtaskId)) {
+				remainingSplits.add(remainder);
+				return;
+			}
+			assignSplit(remainder, waitingSubtaskId);
+			return;
+		}
+		if (waitingSubtaskId != null && context.registeredReaders().containsKey(waitingSubtaskId)) {
+			assignWork(waitingSubtaskId);
+		}
+	}
+
+	@Override
+	public void addSplitsBack(List<BigQuerySourceSplit> splits, int subtaskId) {
+		log.info("Adding back {} splits of subtask {}", splits.size(), subtaskId);
+		remainingSplits.addAll(splits);
+		readerProgress.remove(subtaskId);
+		// a remainder of the failed reader now lands in the remaining splits
+		pendingStreamSplits.values().remove(subtaskId);
+		Integer waitingSubtaskId = pendingStreamSplits.remove(subtaskId);
+		if (waitingSubtaskId != null && context.registeredReaders().containsKey(waitingSubtaskId)) {
+			assignWork(waitingSubtaskId);
+		}
+	}
+
+	@Override
+	public void addReader(int subtaskId) {
+		// splits are assigned lazily, when the reader requests them
+	}
+
+	@Override
+	public BigQuerySourceEnumState snapshotState(long checkpointId) {
+		return new BigQuerySourceEnumState(remainingSplits, readSessionExpireTime);
+	}
+
+	@Override
+	public void close() {
+		// no resources to release
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.event;
+
+import org.apache.flink.api.connector.source.SourceEvent;
+
+/**
+ * Sent by a source reader to report how far it has read the ReadStream of one
+ * of its splits, as reported by the server.
+ */
+public class StreamProgressEvent implements SourceEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String splitId;
+	private final double fractionConsumed;
+
+	public StreamProgressEvent(String splitId, double fractionConsumed) {
+		this.splitId = splitId;
+		this.fractionConsumed = fractionConsumed;
+	}
+
+	public String getSplitId() {
+		return splitId;
+	}
+
+	public double getFractionConsumed() {
+		return fractionConsumed;
+	}
+
+	@Override
+	public String toString() {
+		return "StreamProgressEvent{splitId='" + splitId + "', fractionConsumed=" + fractionConsumed + "}";
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.event;
+
+import org.apache.flink.api.connector.source.SourceEvent;
+
+/**
+ * Sent by the enumerator once it took over the remainder of a split stream, so
+ * the splitting reader no longer needs to keep it in its checkpoints.
+ */
+public class StreamSplitAckEvent implements SourceEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String remainderSplitId;
+
+	public StreamSplitAckEvent(String remainderSplitId) {
+		this.remainderSplitId = remainderSplitId;
+	}
+
+	public String getRemainderSplitId() {
+		return remainderSplitId;
+	}
+
+	@Override
+	public String toString() {
+		return "StreamSplitAckEvent{remainderSplitId='" + remainderSplitId + "'}";
+	}
+}
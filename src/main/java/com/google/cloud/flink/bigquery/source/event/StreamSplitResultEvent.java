@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.event;
+
+import javax.annotation.Nullable;
+
+import org.apache.flink.api.connector.source.SourceEvent;
+
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+
+/**
+ * Answer of a source reader to a {@link SplitStreamRequestEvent}, carrying the
+ * remainder of the split stream, or nothing when the stream could not be split.
+ */
+public class StreamSplitResultEvent implements SourceEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	@Nullable
+	private final BigQuerySourceSplit remainder;
+
+	public StreamSplitResultEvent(@Nullable BigQuerySourceSplit remainder) {
+		this.remainder = remainder;
+	}
+
+	@Nullable
+	public BigQuerySourceSplit getRemainder() {
+		return remainder;
+	}
+
+	@Override
+	public String toString() {
+		return "StreamSplitResultEvent{remainder=" + remainder + "}";
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.reader;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.api.connector.source.ReaderOutput;
+import org.apache.flink.api.connector.source.SourceEvent;
+import org.apache.flink.api.connector.source.SourceReaderContext;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.connector.base.source.reader.SingleThreadMultiplexSourceReaderBase;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitReader;
+import org.apache.flink.core.io.InputStatus;
+import org.apache.flink.table.data.RowData;
+
+import com.google.cloud.flink.bigquery.ArrowRowDataDeserializationSchema;
+import com.google.cloud.flink.bigquery.source.event.SplitStreamRequestEvent;
+import com.google.cloud.flink.bigquery.source.event.StreamProgressEvent;
+import com.google.cloud.flink.bigquery.source.event.StreamSplitAckEvent;
+import com.google.cloud.flink.bigquery.source.event.StreamSplitResultEvent;
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplitState;
+
+/**
+ * Source reader of the BigQuery source. Requests a new split from the
+ * enumerator whenever it runs out of ReadStreams to read, and checkpoints the
+ * number of rows emitted from every stream it reads.
+ *
+ * <p>
+ * When its stream is split on request of the enumerator, the reader continues
+ * with the primary stream and keeps the remainder in its checkpoints until the
+ * enumerator confirmed it took the remainder over.
+ *
+ * <p>
+ * Once the {@link RowLimit} shared by its split readers is reached, the reader
+ * stops requesting splits and ends as soon as the splits it holds are
+ * finished and every outstanding request was answered.
+ */
+public class BigQuerySourceReader extends
+		SingleThreadMultiplexSourceReaderBase<RowData, RowData, BigQuerySourceSplit, BigQuerySourceSplitState> {
+
+	private final StreamSplitHandoff splitHandoff;
+	private final DeserializationSchema<RowData> deserializer;
+	private final int streamsPerReader;
+	private final RowLimit limit;
+	private final Map<String, BigQuerySourceSplitState> readingSplits = new HashMap<>();
+	private final Map<String, BigQuerySourceSplit> unacknowledgedRemainders = new LinkedHashMap<>();
+	// split requests not yet answered with a split or the end of splits
+	private int pendingSplitRequests;
+
+	/**
+	 * @param deserializer The deserializer shared by the split readers, which is
+	 *                     closed together with this reader.
+	 */
+	public BigQuerySourceReader(
+			Function<StreamSplitHandoff, SplitReader<RowData, BigQuerySourceSplit>> splitReaderFactory,
+			DeserializationSchema<RowData> deserializer, int streamsPerReader, Configuration config,
+			SourceReaderContext context) {
+		this(splitReaderFactory, deserializer, streamsPerReader, RowLimit.unlimited(), config, context);
+	}
+
+	/** Creates a reader whose split readers all count their rows against {@code limit}. */
+	public BigQuerySourceReader(
+			Function<StreamSplitHandoff, SplitReader<RowData, BigQuerySourceSplit>> splitReaderFactory,
+			DeserializationSchema<RowData> deserializer, int streamsPerReader, RowLimit limit, Configuration config,
+			SourceReaderContext context) {
+		this(new StreamSplitHandoff(), splitReaderFactory, deserializer, streamsPerReader, limit, config, context);
+	}
+
+	private BigQuerySourceReader(StreamSplitHandoff splitHandoff,
+			Function<StreamSplitHandoff, SplitReader<RowData, BigQuerySourceSplit>> splitReaderFactory,
+			DeserializationSchema<RowData> deserializer, int streamsPerReader, RowLimit limit, Configuration config,
+			SourceReaderContext context) {
+		super(() -> splitReaderFactory.apply(splitHandoff), new BigQueryRecordEmitter(), config, context);
+		this.splitHandoff = splitHandoff;
+		this.deserializer = deserializer;
+		this.streamsPerReader = streamsPerReader;
+		this.limit = limit;
+	}
+
+	@Override
+	public void start() {
+		requestMissingSplits();
+	}
+
+	/** Asks for as many splits as are needed to read the configured number of streams at once. */
+	private void requestMissingSplits() {
+		if (limit.isReached()) {
+			return;
+		}
+		for (int i = getNumberOfCurrentlyAssignedSplits() + pendingSplitRequests; i < streamsPerReader; i++) {
+			pendingSplitRequests++;
+			context.sendSplitRequest();
+		}
+	}
+
+	@Override
+	public void addSplits(List<BigQuerySourceSplit> splits) {
+		// restored splits are added without a request
+		pendingSplitRequests = Math.max(0, pendingSplitRequests - splits.size());
+		super.addSplits(splits);
+	}
+
+	@Override
+	public void notifyNoMoreSplits() {
+		pendingSplitRequests = 0;
+		super.notifyNoMoreSplits();
+	}
+
+	@Override
+	public InputStatus pollNext(ReaderOutput<RowData> output) throws Exception {
+		forwardSplitOutcomes();
+		InputStatus status = super.pollNext(output);
+		if (status == InputStatus.NOTHING_AVAILABLE && limit.isReached() && pendingSplitRequests == 0
+				&& getNumberOfCurrentlyAssignedSplits() == 0) {
+			return InputStatus.END_OF_INPUT;
+		}
+		return status;
+	}
+
+	@Override
+	public List<BigQuerySourceSplit> snapshotState(long checkpointId) {
+		forwardSplitOutcomes();
+		List<BigQuerySourceSplit> splits = super.snapshotState(checkpointId);
+		splits.addAll(unacknowledgedRemainders.values());
+		return splits;
+	}
+
+	@Override
+	public void handleSourceEvents(SourceEvent sourceEvent) {
+		if (sourceEvent instanceof SplitStreamRequestEvent) {
+			if (readingSplits.isEmpty()) {
+				context.sendSourceEventToCoordinator(new StreamSplitResultEvent(null));
+			} else {
+				splitHandoff.requestSplit(((SplitStreamRequestEvent) sourceEvent).getFraction());
+			}
+		} else if (sourceEvent instanceof StreamSplitAckEvent) {
+			unacknowledgedRemainders.remove(((StreamSplitAckEvent) sourceEvent).getRemainderSplitId());
+		} else {
+			super.handleSourceEvents(sourceEvent);
+		}
+	}
+
+	private void forwardSplitOutcomes() {
+		StreamSplitHandoff.Outcome outcome;
+		while ((outcome = splitHandoff.poll()) != null) {
+			if (outcome.isProgress()) {
+				context.sendSourceEventToCoordinator(new StreamProgressEvent(outcome.splitId, outcome.fractionConsumed));
+			} else if (outcome.remainder != null) {
+				// checkpoints must continue with the primary stream before the enumerator owns the remainder
+				BigQuerySourceSplitState state = readingSplits.get(outcome.splitId);
+				if (state != null) {
+					state.switchToStream(outcome.primaryStreamName);
+				}
+				unacknowledgedRemainders.put(outcome.remainder.splitId(), outcome.remainder);
+				context.sendSourceEventToCoordinator(new StreamSplitResultEvent(outcome.remainder));
+			} else {
+				context.sendSourceEventToCoordinator(new StreamSplitResultEvent(null));
+			}
+		}
+	}
+
+	@Override
+	protected void onSplitFinished(Map<String, BigQuerySourceSplitState> finishedSplitIds) {
+		forwardSplitOutcomes();
+		readingSplits.keySet().removeAll(finishedSplitIds.keySet());
+		if (readingSplits.isEmpty() && splitHandoff.cancelSplitRequest()) {
+			// the fetcher went idle before it saw the request
+			context.sendSourceEventToCoordinator(new StreamSplitResultEvent(null));
+		}
+		requestMissingSplits();
+	}
+
+	@Override
+	public void close() throws Exception {
+		try {
+			super.close();
+		} finally {
+			// every split reader is closed by now, none of them decodes with it anymore
+			if (deserializer instanceof ArrowRowDataDeserializationSchema) {
+				((ArrowRowDataDeserializationSchema) deserializer).close();
+			}
+		}
+	}
+
+	@Override
+	protected BigQuerySourceSplitState initializedState(BigQuerySourceSplit split) {
+		BigQuerySourceSplitState state = new BigQuerySourceSplitState(split);
+		readingSplits.put(split.splitId(), state);
+		return state;
+	}
+
+	@Override
+	protected BigQuerySourceSplit toSplitType(String splitId, BigQuerySourceSplitState splitState) {
+		return splitState.toBigQuerySourceSplit();
+	}
+}
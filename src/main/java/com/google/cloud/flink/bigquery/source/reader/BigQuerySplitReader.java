@@ -0,0 +1,517 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.reader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import org.apache.flink.api.common.functions.util.ListCollector;
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.connector.base.source.reader.RecordsBySplits;
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitReader;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitsAddition;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitsChange;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.vector.VectorizedColumnBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.FailedPreconditionException;
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.bigquery.storage.v1.ReadRowsRequest;
+import com.google.cloud.bigquery.storage.v1.ReadRowsResponse;
+import com.google.cloud.bigquery.storage.v1.SplitReadStreamRequest;
+import com.google.cloud.bigquery.storage.v1.SplitReadStreamResponse;
+import com.google.cloud.flink.bigquery.ArrowDecodeContext;
+import com.google.cloud.flink.bigquery.ArrowRowDataDeserializationSchema;
+import com.google.cloud.flink.bigquery.FlinkBigQueryConfig;
+import com.google.cloud.flink.bigquery.arrow.util.ArrowSchemaConverter;
+import com.google.cloud.flink.bigquery.common.BigQueryClientPool;
+import com.google.cloud.flink.bigquery.common.BigQueryClientPool.ClientKey;
+import com.google.cloud.flink.bigquery.common.BigQueryClientPool.Lease;
+import com.google.cloud.flink.bigquery.common.BigQueryStorageReadRowsTracer;
+import com.google.cloud.flink.bigquery.common.BigQueryTracerFactory;
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+
+/**
+ * Reads the assigned ReadStreams one after the other, starting at the offset
+ * recorded in their split. Every fetch consumes a single ReadRowsResponse and
+ * hands its decoded rows to the source reader.
+ *
+ * <p>
+ * Splits whose ReadSession is about to expire can only come from a checkpoint
+ * taken before the enumerator recreated the session. Their rows are read
+ * again from the new session, so they are finished without reading.
+ *
+ * <p>
+ * On request of the enumerator the current stream is split with
+ * SplitReadStream. Reading continues with the primary stream at the current
+ * offset, and the remainder is handed back through the
+ * {@link StreamSplitHandoff}.
+ *
+ * <p>
+ * With more than one stream per reader, up to that many assigned streams are
+ * read at the same time by a {@link MultiStreamReader}, which decodes them on
+ * background threads. Streams read this way are not split dynamically.
+ *
+ * <p>
+ * When the Arrow format is columnar, the rows are emitted as views over the
+ * loaded batch. Every in-flight batch needs its own {@link ArrowDecodeContext},
+ * so the next batch is decoded into a free context while the previous one is
+ * still being emitted.
+ *
+ * <p>
+ * With a pushed down limit the reader emits rows until the {@link RowLimit}
+ * shared with the other split readers of its source reader is reached. Then
+ * the open streams are cancelled, and all remaining splits are finished
+ * without issuing another ReadRows call.
+ */
+public class BigQuerySplitReader implements SplitReader<RowData, BigQuerySourceSplit> {
+
+	private static final Logger log = LoggerFactory.getLogger(BigQuerySplitReader.class);
+
+	// one batch being emitted by the source reader while the next one is decoded
+	private static final int COLUMNAR_DECODE_CONTEXTS = 2;
+
+	// report the server side progress of a stream in steps of this size
+	private static final double PROGRESS_REPORT_STEP = 0.05;
+
+	// makes a fetch waiting for a free decode context return
+	private static final Object WAKE_UP = new Object();
+
+	private final Supplier<BigQueryReadClient> clientFactory;
+	private final ClientKey clientKey;
+	private final StreamSplitHandoff splitHandoff;
+	private final int streamsPerReader;
+	private final long readAheadBytesPerStream;
+	private final int prebufferResponsesPerStream;
+	private final BigQueryTracerFactory tracerFactory;
+	private final RowLimit limit;
+	private final DeserializationSchema<RowData> deserializer;
+	private final ArrowRowDataDeserializationSchema arrowDeserializer;
+	private final boolean columnar;
+	private final List<ArrowDecodeContext> decodeContexts = new ArrayList<>(COLUMNAR_DECODE_CONTEXTS);
+	// free contexts and at most one wake up
+	private final BlockingQueue<Object> freeDecodeContexts = new ArrayBlockingQueue<>(COLUMNAR_DECODE_CONTEXTS + 1);
+	private final AtomicBoolean decodeWakeUpQueued = new AtomicBoolean();
+	private final Queue<BigQuerySourceSplit> pendingSplits = new ArrayDeque<>();
+	private final List<BigQuerySourceSplit> expiredSplits = new ArrayList<>();
+
+	private Lease<BigQueryReadClient> clientLease;
+	private BigQueryReadClient client;
+	private BigQuerySourceSplit currentSplit;
+	private String currentStreamName;
+	private long currentOffset;
+	private double reportedProgress;
+	private ServerStream<ReadRowsResponse> currentStream;
+	private Iterator<ReadRowsResponse> responses;
+	private BigQueryStorageReadRowsTracer tracer;
+	// the deserializer is shared with the other split readers of the source reader, its decoding state is not
+	private ArrowDecodeContext rowDecodeContext;
+	// a response read from the stream before a wake up, which still needs decoding
+	private ReadRowsResponse wokenUpResponse;
+	private volatile MultiStreamReader streamGroup;
+	private final List<BigQuerySourceSplit> streamGroupSplits = new ArrayList<>();
+	private ExecutorService streamGroupExecutor;
+
+	public BigQuerySplitReader(Supplier<BigQueryReadClient> clientFactory, ClientKey clientKey,
+			DeserializationSchema<RowData> deserializer, StreamSplitHandoff splitHandoff, FlinkBigQueryConfig bqconfig,
+			BigQueryTracerFactory tracerFactory) {
+		this(clientFactory, clientKey, deserializer, splitHandoff, bqconfig, tracerFactory, 1, RowLimit.unlimited());
+	}
+
+	/**
+	 * Creates a reader which reads up to {@code streamsPerReader} streams at once,
+	 * which needs the arrow format, and emits rows only as long as the shared
+	 * {@code limit} is not reached.
+	 */
+	public BigQuerySplitReader(Supplier<BigQueryReadClient> clientFactory, ClientKey clientKey,
+			DeserializationSchema<RowData> deserializer, StreamSplitHandoff splitHandoff, FlinkBigQueryConfig bqconfig,
+			BigQueryTracerFactory tracerFactory, int streamsPerReader, RowLimit limit) {
+		this.clientFactory = clientFactory;
+		this.clientKey = clientKey;
+		this.limit = limit;
+		this.tracerFactory = tracerFactory;
+		this.splitHandoff = splitHandoff;
+		this.readAheadBytesPerStream = bqconfig.getReadAheadBytesPerStream();
+		this.prebufferResponsesPerStream = Math.max(FlinkBigQueryConfig.MIN_BUFFERED_RESPONSES_PER_STREAM,
+				bqconfig.getNumPrebufferReadRowsResponses());
+		this.deserializer = deserializer;
+		this.arrowDeserializer = deserializer instanceof ArrowRowDataDeserializationSchema
+				? (ArrowRowDataDeserializationSchema) deserializer
+				: null;
+		this.columnar = arrowDeserializer != null && arrowDeserializer.isColumnar();
+		if (streamsPerReader > 1 && arrowDeserializer == null) {
+			throw new IllegalArgumentException("Reading several streams at once needs the arrow format");
+		}
+		this.streamsPerReader = streamsPerReader;
+	}
+
+	@Override
+	public RecordsWithSplitIds<RowData> fetch() throws IOException {
+		RecordsBySplits.Builder<RowData> records = new RecordsBySplits.Builder<>();
+		Double splitFraction = splitHandoff.pollSplitRequest();
+		if (splitFraction != null) {
+			splitCurrentStream(splitFraction);
+		}
+		if (!expiredSplits.isEmpty()) {
+			for (BigQuerySourceSplit split : expiredSplits) {
+				records.addFinishedSplit(split.splitId());
+			}
+			expiredSplits.clear();
+			return records.build();
+		}
+		if (limit.isReached()) {
+			return finishRemainingSplits(records);
+		}
+		if (streamsPerReader > 1) {
+			return fetchFromStreamGroup(records);
+		}
+		if (currentSplit == null && !openNextSplit()) {
+			return records.build();
+		}
+		if (wokenUpResponse != null) {
+			ReadRowsResponse response = wokenUpResponse;
+			wokenUpResponse = null;
+			return readColumnar(response, records);
+		}
+		tracer.readRowsResponseRequested();
+		if (!responses.hasNext()) {
+			log.info("Finished reading {}", currentSplit);
+			records.addFinishedSplit(currentSplit.splitId());
+			tracer.finished();
+			tracer = null;
+			currentSplit = null;
+			currentStream = null;
+			responses = null;
+			return records.build();
+		}
+		ReadRowsResponse response = responses.next();
+		tracer.readRowsResponseObtained(response.getSerializedSize());
+		currentOffset += response.getRowCount();
+		reportProgress(response);
+		if (!response.hasArrowRecordBatch()) {
+			return records.build();
+		}
+		if (columnar) {
+			return readColumnar(response, records);
+		}
+		List<RowData> rows = new ArrayList<>((int) response.getRowCount());
+		ByteString serializedBatch = response.getArrowRecordBatch().getSerializedRecordBatch();
+		tracer.rowsParseStarted();
+		if (arrowDeserializer != null) {
+			readRows(serializedBatch, rows);
+		} else {
+			deserializer.deserialize(serializedBatch.toByteArray(), new ListCollector<>(rows));
+		}
+		tracer.rowsParseFinished(rows.size());
+		records.addAll(currentSplit, takeUpToLimit(rows));
+		return records.build();
+	}
+
+	/** Decodes a batch into the row decode context of this reader and copies its rows out. */
+	private void readRows(ByteString serializedBatch, List<RowData> rows) throws IOException {
+		if (rowDecodeContext == null) {
+			rowDecodeContext = arrowDeserializer.createDecodeContext();
+		}
+		try {
+			arrowDeserializer.collectRows(rowDecodeContext.load(serializedBatch), new ListCollector<>(rows));
+		} finally {
+			rowDecodeContext.release();
+		}
+	}
+
+	private RecordsWithSplitIds<RowData> readColumnar(ReadRowsResponse response,
+			RecordsBySplits.Builder<RowData> records) throws IOException {
+		ArrowDecodeContext context = acquireDecodeContext();
+		if (context == null) {
+			wokenUpResponse = response;
+			return records.build();
+		}
+		try {
+			tracer.rowsParseStarted();
+			VectorizedColumnBatch batch = context.loadColumnar(response.getArrowRecordBatch().getSerializedRecordBatch());
+			tracer.rowsParseFinished(batch.getNumRows());
+			batch.setNumRows((int) limit.take(batch.getNumRows()));
+			return new ColumnarBatchRecords(currentSplit.splitId(), batch, () -> {
+				context.release();
+				freeDecodeContexts.add(context);
+			});
+		} catch (IOException | RuntimeException e) {
+			context.release();
+			freeDecodeContexts.add(context);
+			throw e;
+		}
+	}
+
+	/** Returns a free decode context, or null when woken up while waiting for one. */
+	@Nullable
+	private ArrowDecodeContext acquireDecodeContext() throws IOException {
+		Object free = freeDecodeContexts.poll();
+		if (free == null && decodeContexts.size() < COLUMNAR_DECODE_CONTEXTS) {
+			ArrowDecodeContext context = arrowDeserializer.createDecodeContext();
+			decodeContexts.add(context);
+			return context;
+		}
+		try {
+			if (free == null) {
+				// all contexts still back batches which have not been emitted yet
+				free = freeDecodeContexts.take();
+			}
+			if (free == WAKE_UP) {
+				decodeWakeUpQueued.set(false);
+				return null;
+			}
+			return (ArrowDecodeContext) free;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a batch to be emitted");
+		}
+	}
+
+	private RecordsWithSplitIds<RowData> fetchFromStreamGroup(RecordsBySplits.Builder<RowData> records)
+			throws IOException {
+		if (streamGroup == null) {
+			if (pendingSplits.isEmpty()) {
+				return records.build();
+			}
+			List<BigQuerySourceSplit> group = new ArrayList<>(streamsPerReader);
+			while (group.size() < streamsPerReader && !pendingSplits.isEmpty()) {
+				group.add(pendingSplits.poll());
+			}
+			streamGroupSplits.addAll(group);
+			log.info("Start reading {} streams at once: {}", group.size(), group);
+			if (streamGroupExecutor == null) {
+				// every stream of a group is drained by a single task, more threads per stream would idle
+				streamGroupExecutor = Executors.newFixedThreadPool(streamsPerReader,
+						new ThreadFactoryBuilder().setNameFormat("bigquery-stream-reader-%d").setDaemon(true).build());
+			}
+			streamGroup = new MultiStreamReader(getClient(), group,
+					ArrowSchemaConverter.convertToSchema(arrowDeserializer.getRowType()), streamGroupExecutor,
+					readAheadBytesPerStream, prebufferResponsesPerStream,
+					tracerFactory.newReadRowsTracer(group.toString()));
+		}
+		MultiStreamReader streamGroup = this.streamGroup;
+		boolean hasBatch = streamGroup.next();
+		for (BigQuerySourceSplit split : streamGroup.pollFinishedSplits()) {
+			log.info("Finished reading {}", split);
+			records.addFinishedSplit(split.splitId());
+			streamGroupSplits.remove(split);
+		}
+		if (hasBatch) {
+			// the root is reloaded by the next batch, so the rows are copied out of it
+			List<RowData> rows = new ArrayList<>(streamGroup.getRoot().getRowCount());
+			arrowDeserializer.collectRows(streamGroup.getRoot(), new ListCollector<>(rows));
+			records.addAll(streamGroup.getCurrentSplit(), takeUpToLimit(rows));
+		} else if (streamGroup.isFinished()) {
+			streamGroup.close();
+			this.streamGroup = null;
+		}
+		return records.build();
+	}
+
+	private List<RowData> takeUpToLimit(List<RowData> rows) {
+		return rows.subList(0, (int) limit.take(rows.size()));
+	}
+
+	/** Cancels the streams being read and finishes every split the reader still holds. */
+	private RecordsWithSplitIds<RowData> finishRemainingSplits(RecordsBySplits.Builder<RowData> records) {
+		if (currentSplit != null) {
+			log.info("Reached the limit of {} rows, cancelling {}", limit.getLimit(), currentSplit);
+			currentStream.cancel();
+			tracer.finished();
+			records.addFinishedSplit(currentSplit.splitId());
+			wokenUpResponse = null;
+			tracer = null;
+			currentSplit = null;
+			currentStream = null;
+			responses = null;
+		}
+		if (streamGroup != null) {
+			log.info("Reached the limit of {} rows, cancelling {}", limit.getLimit(), streamGroupSplits);
+			streamGroup.close();
+			streamGroup = null;
+			for (BigQuerySourceSplit split : streamGroupSplits) {
+				records.addFinishedSplit(split.splitId());
+			}
+			streamGroupSplits.clear();
+		}
+		for (BigQuerySourceSplit split = pendingSplits.poll(); split != null; split = pendingSplits.poll()) {
+			records.addFinishedSplit(split.splitId());
+		}
+		return records.build();
+	}
+
+	private BigQueryReadClient getClient() {
+		if (client == null) {
+			clientLease = BigQueryClientPool.getInstance().acquireReadClient(clientKey, clientFactory);
+			client = clientLease.get();
+		}
+		return client;
+	}
+
+	private void reportProgress(ReadRowsResponse response) {
+		if (!response.hasStats()) {
+			return;
+		}
+		double progress = response.getStats().getProgress().getAtResponseEnd();
+		if (progress - reportedProgress >= PROGRESS_REPORT_STEP) {
+			splitHandoff.reportProgress(currentSplit.splitId(), progress);
+			reportedProgress = progress;
+		}
+	}
+
+	private void splitCurrentStream(double fraction) {
+		if (currentSplit == null) {
+			splitHandoff.reportSplitRejected();
+			return;
+		}
+		SplitReadStreamResponse split;
+		try {
+			split = client.splitReadStream(
+					SplitReadStreamRequest.newBuilder().setName(currentStreamName).setFraction(fraction).build());
+		} catch (ApiException e) {
+			log.warn("Could not split " + currentSplit, e);
+			splitHandoff.reportSplitRejected();
+			return;
+		}
+		if (!split.hasPrimaryStream() || !split.hasRemainderStream()) {
+			log.info("{} is too small to be split at {}", currentSplit, fraction);
+			splitHandoff.reportSplitRejected();
+			return;
+		}
+		String primaryStreamName = split.getPrimaryStream().getName();
+		ServerStream<ReadRowsResponse> primaryStream = client.readRowsCallable().call(
+				ReadRowsRequest.newBuilder().setReadStream(primaryStreamName).setOffset(currentOffset).build());
+		Iterator<ReadRowsResponse> primaryResponses = primaryStream.iterator();
+		try {
+			primaryResponses.hasNext();
+		} catch (FailedPreconditionException e) {
+			// already read past the split point, the original stream still contains all rows
+			log.info("{} was already read past the split point", currentSplit);
+			primaryStream.cancel();
+			splitHandoff.reportSplitRejected();
+			return;
+		}
+		currentStream.cancel();
+		currentStream = primaryStream;
+		responses = primaryResponses;
+		currentStreamName = primaryStreamName;
+		reportedProgress = 0;
+		BigQuerySourceSplit remainder = new BigQuerySourceSplit(split.getRemainderStream().getName(), 0L,
+				currentSplit.getReadSessionExpireTime());
+		log.info("Split {} into {} and {}", currentSplit, primaryStreamName, remainder);
+		splitHandoff.reportStreamSplit(currentSplit.splitId(), primaryStreamName, remainder);
+	}
+
+	private boolean openNextSplit() {
+		currentSplit = pendingSplits.poll();
+		if (currentSplit == null) {
+			return false;
+		}
+		log.info("Start reading {}", currentSplit);
+		currentStreamName = currentSplit.getStreamName();
+		currentOffset = currentSplit.getOffset();
+		reportedProgress = 0;
+		// makes the stream a candidate for splitting right away
+		splitHandoff.reportProgress(currentSplit.splitId(), 0.0);
+		ReadRowsRequest request = ReadRowsRequest.newBuilder().setReadStream(currentStreamName)
+				.setOffset(currentOffset).build();
+		currentStream = getClient().readRowsCallable().call(request);
+		responses = currentStream.iterator();
+		tracer = tracerFactory.newReadRowsTracer(currentStreamName);
+		tracer.startStream();
+		return true;
+	}
+
+	@Override
+	public void handleSplitsChanges(SplitsChange<BigQuerySourceSplit> splitsChanges) {
+		if (!(splitsChanges instanceof SplitsAddition)) {
+			throw new UnsupportedOperationException(
+					String.format("Unsupported split change %s.", splitsChanges.getClass()));
+		}
+		long now = System.currentTimeMillis();
+		for (BigQuerySourceSplit split : splitsChanges.splits()) {
+			// the same predicate as the enumerator uses to recreate the session on restore
+			if (split.isReadSessionExpiring(now)) {
+				log.warn("Skipping {}, its ReadSession expires and was recreated", split);
+				expiredSplits.add(split);
+			} else {
+				pendingSplits.add(split);
+			}
+		}
+	}
+
+	/**
+	 * Makes a fetch waiting for a batch of a stream group, or for a decode context
+	 * to be released by the source reader, return without records. A fetch
+	 * waiting for the next response of a single stream returns on its own.
+	 */
+	@Override
+	public void wakeUp() {
+		MultiStreamReader streamGroup = this.streamGroup;
+		if (streamGroup != null) {
+			streamGroup.wakeUp();
+		}
+		if (columnar && decodeWakeUpQueued.compareAndSet(false, true)) {
+			freeDecodeContexts.add(WAKE_UP);
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		if (currentStream != null) {
+			currentStream.cancel();
+		}
+		if (tracer != null) {
+			tracer.finished();
+		}
+		if (streamGroup != null) {
+			streamGroup.close();
+		}
+		if (streamGroupExecutor != null) {
+			streamGroupExecutor.shutdownNow();
+		}
+		if (clientLease != null) {
+			// the client is shared with the other readers of this JVM
+			clientLease.close();
+		}
+		if (rowDecodeContext != null) {
+			rowDecodeContext.close();
+		}
+		for (ArrowDecodeContext context : decodeContexts) {
+			context.close();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.reader;
+
+import java.util.Collections;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.table.data.ColumnarRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.vector.VectorizedColumnBatch;
+
+/**
+ * The rows of one Arrow batch, exposed through a single reused
+ * {@link ColumnarRowData} whose row id is moved forward for every record. The
+ * batch must stay loaded until {@link #recycle()} is called.
+ */
+public class ColumnarBatchRecords implements RecordsWithSplitIds<RowData> {
+
+	private final String splitId;
+	private final ColumnarRowData row;
+	private final int numRows;
+	private final Runnable recycler;
+
+	private boolean splitReturned;
+	private int nextRowId;
+
+	public ColumnarBatchRecords(String splitId, VectorizedColumnBatch batch, Runnable recycler) {
+		this.splitId = splitId;
+		this.row = new ColumnarRowData(batch);
+		this.numRows = batch.getNumRows();
+		this.recycler = recycler;
+	}
+
+	@Nullable
+	@Override
+	public String nextSplit() {
+		if (splitReturned) {
+			return null;
+		}
+		splitReturned = true;
+		return splitId;
+	}
+
+	@Nullable
+	@Override
+	public RowData nextRecordFromSplit() {
+		if (nextRowId >= numRows) {
+			return null;
+		}
+		row.setRowId(nextRowId++);
+		return row;
+	}
+
+	@Override
+	public Set<String> finishedSplits() {
+		return Collections.emptySet();
+	}
+
+	@Override
+	public void recycle() {
+		recycler.run();
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.WriteChannel;
+import org.apache.arrow.vector.ipc.message.MessageSerializer;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.bigquery.storage.v1.ReadRowsRequest;
+import com.google.cloud.bigquery.storage.v1.ReadRowsResponse;
+import com.google.cloud.flink.bigquery.ArrowDecodeContext;
+import com.google.cloud.flink.bigquery.common.BigQueryStorageReadRowsTracer;
+import com.google.cloud.flink.bigquery.common.ParallelArrowReader;
+import com.google.cloud.flink.bigquery.common.ParallelArrowReader.DeliveryOrder;
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+
+/**
+ * Reads a group of ReadStreams at the same time through a
+ * {@link ParallelArrowReader}. Every stream is decoded by its own
+ * {@link ArrowStreamReader} on a background executor, and the batches are
+ * loaded into a shared root in the order they were decoded. The executor
+ * belongs to the split reader and is reused by all its groups, it needs a
+ * thread per stream of the largest group.
+ */
+class MultiStreamReader implements AutoCloseable {
+
+	private final List<BigQuerySourceSplit> splits;
+	private final List<ServerStream<ReadRowsResponse>> streams = new ArrayList<>();
+	private final BufferAllocator allocator;
+	private final VectorSchemaRoot root;
+	private final ParallelArrowReader reader;
+
+	MultiStreamReader(BigQueryReadClient client, List<BigQuerySourceSplit> splits, Schema schema,
+			ExecutorService executor, long readAheadBytesPerStream, int prebufferResponsesPerStream,
+			BigQueryStorageReadRowsTracer tracer) throws IOException {
+		this.splits = splits;
+		this.allocator = ArrowDecodeContext.newAllocator("bigquery-multi-stream");
+		this.root = VectorSchemaRoot.create(schema, allocator);
+		byte[] serializedSchema = serialize(schema);
+		List<ArrowReader> readers = new ArrayList<>(splits.size());
+		for (BigQuerySourceSplit split : splits) {
+			ServerStream<ReadRowsResponse> stream = client.readRowsCallable().call(ReadRowsRequest.newBuilder()
+					.setReadStream(split.getStreamName()).setOffset(split.getOffset()).build());
+			streams.add(stream);
+			InputStream batches = new SequenceInputStream(new ResponseInputStreams(serializedSchema,
+					stream.iterator()));
+			readers.add(new ArrowStreamReader(batches, allocator));
+		}
+		// Offsets are tracked per stream, so batches can be returned in any order.
+		this.reader = new ParallelArrowReader(readers, executor, new VectorLoader(root), tracer,
+				DeliveryOrder.COMPLETION, readAheadBytesPerStream, prebufferResponsesPerStream, false);
+	}
+
+	/**
+	 * Loads the next batch of any stream into the root, returns false once all
+	 * streams are read or when woken up.
+	 */
+	boolean next() throws IOException {
+		return reader.next();
+	}
+
+	/** Makes a {@link #next()} waiting for a batch return without one. */
+	void wakeUp() {
+		reader.wakeUp();
+	}
+
+	/** Whether all batches of all streams were returned. */
+	boolean isFinished() {
+		return reader.isFinished();
+	}
+
+	VectorSchemaRoot getRoot() {
+		return root;
+	}
+
+	/** The split the batch loaded by the last {@link #next()} belongs to. */
+	BigQuerySourceSplit getCurrentSplit() {
+		return splits.get(reader.getCurrentReaderIndex());
+	}
+
+	/** Returns the splits of the group whose rows were all returned, in order. */
+	List<BigQuerySourceSplit> pollFinishedSplits() {
+		List<BigQuerySourceSplit> finished = new ArrayList<>();
+		for (Integer index = reader.pollFinishedReader(); index != null; index = reader.pollFinishedReader()) {
+			finished.add(splits.get(index));
+		}
+		return finished;
+	}
+
+	@Override
+	public void close() {
+		// cancelled first, so that no decoding task keeps waiting for a response
+		for (ServerStream<ReadRowsResponse> stream : streams) {
+			stream.cancel();
+		}
+		reader.close();
+		root.close();
+		allocator.close();
+	}
+
+	private static byte[] serialize(Schema schema) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MessageSerializer.serialize(new WriteChannel(Channels.newChannel(out)), schema);
+		return out.toByteArray();
+	}
+
+	/**
+	 * The schema message followed by the record batches of all responses, as
+	 * expected by an {@link ArrowStreamReader}.
+	 */
+	private static final class ResponseInputStreams implements Enumeration<InputStream> {
+
+		private final Iterator<ReadRowsResponse> responses;
+		private InputStream next;
+
+		private ResponseInputStreams(byte[] serializedSchema, Iterator<ReadRowsResponse> responses) {
+			this.responses = responses;
+			this.next = new ByteArrayInputStream(serializedSchema);
+		}
+
+		@Override
+		public boolean hasMoreElements() {
+			while (next == null && responses.hasNext()) {
+				ReadRowsResponse response = responses.next();
+				if (response.hasArrowRecordBatch()) {
+					next = response.getArrowRecordBatch().getSerializedRecordBatch().newInput();
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public InputStream nextElement() {
+			if (!hasMoreElements()) {
+				throw new NoSuchElementException();
+			}
+			InputStream current = next;
+			next = null;
+			return current;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.reader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The number of rows a source reader may emit. The split fetcher manager
+ * creates a new split reader whenever a fetcher went idle, so the count is
+ * kept here and shared by all split readers of a source reader.
+ */
+public final class RowLimit {
+
+	private final long limit;
+	private final AtomicLong emittedRows = new AtomicLong();
+
+	/** Creates a limit of {@code limit} rows, or no limit if it is negative. */
+	public RowLimit(long limit) {
+		this.limit = limit;
+	}
+
+	public static RowLimit unlimited() {
+		return new RowLimit(-1);
+	}
+
+	public long getLimit() {
+		return limit;
+	}
+
+	public boolean isReached() {
+		return limit >= 0 && emittedRows.get() >= limit;
+	}
+
+	/** Counts the rows as emitted, returns how many of them are still within the limit. */
+	long take(long numRows) {
+		if (limit < 0) {
+			return numRows;
+		}
+		long emitted;
+		long taken;
+		do {
+			emitted = emittedRows.get();
+			taken = Math.max(0, Math.min(numRows, limit - emitted));
+		} while (!emittedRows.compareAndSet(emitted, emitted + taken));
+		return taken;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.reader;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+
+/**
+ * Passes dynamic split requests from the {@link BigQuerySourceReader} to the
+ * fetcher thread running the {@link BigQuerySplitReader}, and the stream
+ * progress and split outcomes back. Only the source reader talks to the
+ * enumerator.
+ */
+public class StreamSplitHandoff {
+
+	private final AtomicReference<Double> requestedFraction = new AtomicReference<>();
+	private final Queue<Outcome> outcomes = new ConcurrentLinkedQueue<>();
+
+	/** Called by the source reader when the enumerator asks for a split. */
+	void requestSplit(double fraction) {
+		requestedFraction.set(fraction);
+	}
+
+	/**
+	 * Withdraws a request the fetcher did not pick up yet. Returns true if the
+	 * caller has to answer the request itself.
+	 */
+	boolean cancelSplitRequest() {
+		return requestedFraction.getAndSet(null) != null;
+	}
+
+	/** Called by the fetcher, returns the requested fraction or null. */
+	@Nullable
+	Double pollSplitRequest() {
+		return requestedFraction.getAndSet(null);
+	}
+
+	void reportProgress(String splitId, double fractionConsumed) {
+		outcomes.add(new Outcome(splitId, fractionConsumed, null, null));
+	}
+
+	void reportStreamSplit(String splitId, String primaryStreamName, BigQuerySourceSplit remainder) {
+		outcomes.add(new Outcome(splitId, Double.NaN, primaryStreamName, remainder));
+	}
+
+	void reportSplitRejected() {
+		outcomes.add(new Outcome(null, Double.NaN, null, null));
+	}
+
+	@Nullable
+	Outcome poll() {
+		return outcomes.poll();
+	}
+
+	/**
+	 * Either a progress report, a split stream with its primary and remainder, or
+	 * a rejected split request.
+	 */
+	static final class Outcome {
+		@Nullable
+		final String splitId;
+		final double fractionConsumed;
+		@Nullable
+		final String primaryStreamName;
+		@Nullable
+		final BigQuerySourceSplit remainder;
+
+		private Outcome(@Nullable String splitId, double fractionConsumed, @Nullable String primaryStreamName,
+				@Nullable BigQuerySourceSplit remainder) {
+			this.splitId = splitId;
+			this.fractionConsumed = fractionConsumed;
+			this.primaryStreamName = primaryStreamName;
+			this.remainder = remainder;
+		}
+
+		boolean isProgress() {
+			return !Double.isNaN(fractionConsumed);
+		}
+	}
+}
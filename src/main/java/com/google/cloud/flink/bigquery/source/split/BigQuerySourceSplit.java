@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.split;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.flink.api.connector.source.SourceSplit;
+import org.apache.flink.util.Preconditions;
+
+import com.google.cloud.bigquery.storage.v1.ReadSession;
+
+/**
+ * A {@link SourceSplit} for a single ReadStream of a BigQuery ReadSession,
+ * together with the number of rows of the stream that were already emitted.
+ */
+public class BigQuerySourceSplit implements SourceSplit, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Expire time of splits whose ReadSession is not known to expire. */
+	public static final long NO_EXPIRE_TIME = Long.MAX_VALUE;
+
+	private static final long READ_SESSION_EXPIRY_MARGIN = TimeUnit.HOURS.toMillis(1);
+
+	private final String streamName;
+	private final long offset;
+	private final long readSessionExpireTime;
+
+	public BigQuerySourceSplit(String streamName) {
+		this(streamName, 0L, NO_EXPIRE_TIME);
+	}
+
+	public BigQuerySourceSplit(String streamName, long offset, long readSessionExpireTime) {
+		Preconditions.checkArgument(offset >= 0, "Offset must not be negative.");
+		this.streamName = Preconditions.checkNotNull(streamName, "Stream name must not be null.");
+		this.offset = offset;
+		this.readSessionExpireTime = readSessionExpireTime;
+	}
+
+	/** Creates one split per ReadStream of the session. */
+	public static BigQuerySourceSplit[] fromReadSession(ReadSession readSession) {
+		long expireTime = expireTimeOf(readSession);
+		return readSession.getStreamsList().stream()
+				.map(stream -> new BigQuerySourceSplit(stream.getName(), 0L, expireTime))
+				.toArray(BigQuerySourceSplit[]::new);
+	}
+
+	/** Returns the expire time of the session in epoch milliseconds. */
+	public static long expireTimeOf(ReadSession readSession) {
+		if (!readSession.hasExpireTime()) {
+			return NO_EXPIRE_TIME;
+		}
+		return readSession.getExpireTime().getSeconds() * 1000L + readSession.getExpireTime().getNanos() / 1_000_000;
+	}
+
+	@Override
+	public String splitId() {
+		return streamName;
+	}
+
+	public String getStreamName() {
+		return streamName;
+	}
+
+	/** Number of rows of the stream that were already emitted, reading resumes from here. */
+	public long getOffset() {
+		return offset;
+	}
+
+	/** Expire time of the ReadSession of the stream in epoch milliseconds. */
+	public long getReadSessionExpireTime() {
+		return readSessionExpireTime;
+	}
+
+	public boolean isReadSessionExpired(long now) {
+		return now >= readSessionExpireTime;
+	}
+
+	/**
+	 * Whether a session expiring at the given time is too close to its expiry to
+	 * start or resume reading its streams. The enumerator recreates such a
+	 * session on restore, and the readers drop the splits they restore from it.
+	 */
+	public static boolean isReadSessionExpiring(long readSessionExpireTime, long now) {
+		return readSessionExpireTime != NO_EXPIRE_TIME && now >= readSessionExpireTime - READ_SESSION_EXPIRY_MARGIN;
+	}
+
+	public boolean isReadSessionExpiring(long now) {
+		return isReadSessionExpiring(readSessionExpireTime, now);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		BigQuerySourceSplit that = (BigQuerySourceSplit) o;
+		return offset == that.offset && readSessionExpireTime == that.readSessionExpireTime
+				&& streamName.equals(that.streamName);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(streamName, offset, readSessionExpireTime);
+	}
+
+	@Override
+	public String toString() {
+		return "BigQuerySourceSplit{streamName='" + streamName + "', offset=" + offset + "}";
+	}
+}
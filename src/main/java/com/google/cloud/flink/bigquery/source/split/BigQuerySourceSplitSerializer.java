@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.split;
+
+import java.io.IOException;
+
+import org.apache.flink.core.io.SimpleVersionedSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+
+/** Serializer for {@link BigQuerySourceSplit}. */
+public class BigQuerySourceSplitSerializer implements SimpleVersionedSerializer<BigQuerySourceSplit> {
+
+	public static final BigQuerySourceSplitSerializer INSTANCE = new BigQuerySourceSplitSerializer();
+
+	// version 1 only contained the stream name
+	private static final int VERSION = 2;
+
+	private BigQuerySourceSplitSerializer() {
+	}
+
+	@Override
+	public int getVersion() {
+		return VERSION;
+	}
+
+	@Override
+	public byte[] serialize(BigQuerySourceSplit split) throws IOException {
+		DataOutputSerializer out = new DataOutputSerializer(64);
+		out.writeUTF(split.getStreamName());
+		out.writeLong(split.getOffset());
+		out.writeLong(split.getReadSessionExpireTime());
+		return out.getCopyOfBuffer();
+	}
+
+	@Override
+	public BigQuerySourceSplit deserialize(int version, byte[] serialized) throws IOException {
+		DataInputDeserializer in = new DataInputDeserializer(serialized);
+		switch (version) {
+		case 1:
+			return new BigQuerySourceSplit(in.readUTF());
+		case VERSION:
+			return new BigQuerySourceSplit(in.readUTF(), in.readLong(), in.readLong());
+		default:
+			throw new IOException("Unknown version of BigQuerySourceSplit: " + version);
+		}
+	}
+}
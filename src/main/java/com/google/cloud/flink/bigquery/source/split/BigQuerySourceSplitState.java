@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.split;
+
+/**
+ * Mutable state of a {@link BigQuerySourceSplit} while it is read, tracking the
+ * rows emitted so far and the stream they are read from.
+ */
+public class BigQuerySourceSplitState {
+
+	private final BigQuerySourceSplit split;
+	private String streamName;
+	private long offset;
+
+	public BigQuerySourceSplitState(BigQuerySourceSplit split) {
+		this.split = split;
+		this.streamName = split.getStreamName();
+		this.offset = split.getOffset();
+	}
+
+	/**
+	 * Continues with the primary stream of a split stream. The primary stream
+	 * starts with the same rows as the original one, so the offset stays valid.
+	 */
+	public void switchToStream(String primaryStreamName) {
+		this.streamName = primaryStreamName;
+	}
+
+	public void incrementOffset() {
+		offset++;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	/** Returns the split to checkpoint, resuming after the rows emitted so far. */
+	public BigQuerySourceSplit toBigQuerySourceSplit() {
+		return new BigQuerySourceSplit(streamName, offset, split.getReadSessionExpireTime());
+	}
+}
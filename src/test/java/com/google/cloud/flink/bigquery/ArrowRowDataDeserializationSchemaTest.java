@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.WriteChannel;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.ipc.message.MessageSerializer;
+import org.apache.flink.api.common.functions.util.ListCollector;
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.data.ColumnarRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.vector.VectorizedColumnBatch;
+import org.apache.flink.table.runtime.typeutils.InternalTypeInfo;
+import org.apache.flink.table.types.logical.RowType;
+import org.junit.Test;
+
+import com.google.cloud.flink.bigquery.arrow.util.ArrowSchemaConverter;
+import com.google.protobuf.ByteString;
+
+public class ArrowRowDataDeserializationSchemaTest {
+
+	private static final RowType ROW_TYPE = (RowType) DataTypes
+			.ROW(DataTypes.FIELD("word", DataTypes.STRING()), DataTypes.FIELD("word_count", DataTypes.BIGINT()))
+			.getLogicalType();
+
+	@Test
+	public void testColumnarModeExposesBatchAsRowViews() throws IOException {
+		byte[] message = serializedBatch(new String[] { "speedy", "brave" }, new long[] { 7L, 42L });
+
+		ArrowRowDataDeserializationSchema columnarSchema = new ArrowRowDataDeserializationSchema(ROW_TYPE,
+				InternalTypeInfo.of(ROW_TYPE), true);
+		assertThat(columnarSchema.isColumnar()).isTrue();
+		try (ArrowDecodeContext context = columnarSchema.createDecodeContext()) {
+			VectorizedColumnBatch batch = context.loadColumnar(message);
+			assertThat(batch.getNumRows()).isEqualTo(2);
+
+			ColumnarRowData view = new ColumnarRowData(batch);
+			view.setRowId(0);
+			assertThat(view.getString(0).toString()).isEqualTo("speedy");
+			assertThat(view.getLong(1)).isEqualTo(7L);
+			view.setRowId(1);
+			assertThat(view.getString(0).toString()).isEqualTo("brave");
+			assertThat(view.getLong(1)).isEqualTo(42L);
+			context.release();
+		}
+	}
+
+	@Test
+	public void testDecodeContextsDoNotShareVectors() throws IOException {
+		ArrowRowDataDeserializationSchema columnarSchema = new ArrowRowDataDeserializationSchema(ROW_TYPE,
+				InternalTypeInfo.of(ROW_TYPE), true);
+		try (ArrowDecodeContext first = columnarSchema.createDecodeContext();
+				ArrowDecodeContext second = columnarSchema.createDecodeContext()) {
+			ColumnarRowData firstView = new ColumnarRowData(
+					first.loadColumnar(serializedBatch(new String[] { "first" }, new long[] { 1L })));
+			ColumnarRowData secondView = new ColumnarRowData(
+					second.loadColumnar(serializedBatch(new String[] { "second", "batch" }, new long[] { 2L, 3L })));
+
+			assertThat(firstView.getString(0).toString()).isEqualTo("first");
+			assertThat(firstView.getLong(1)).isEqualTo(1L);
+			assertThat(secondView.getString(0).toString()).isEqualTo("second");
+			assertThat(secondView.getLong(1)).isEqualTo(2L);
+
+			// a released context is reused for the following batch
+			first.release();
+			first.loadColumnar(serializedBatch(new String[] { "again" }, new long[] { 4L }));
+			assertThat(firstView.getString(0).toString()).isEqualTo("again");
+			assertThat(secondView.getString(0).toString()).isEqualTo("second");
+			first.release();
+			second.release();
+		}
+	}
+
+	@Test
+	public void testRowModeCopiesRowsOutOfTheBatch() throws IOException {
+		ArrowRowDataDeserializationSchema rowSchema = new ArrowRowDataDeserializationSchema(ROW_TYPE,
+				InternalTypeInfo.of(ROW_TYPE));
+		List<RowData> rows = new ArrayList<>();
+		rowSchema.deserialize(serializedBatch(new String[] { "speedy" }, new long[] { 7L }), new ListCollector<>(rows));
+		rowSchema.deserialize(serializedBatch(new String[] { "brave" }, new long[] { 42L }), new ListCollector<>(rows));
+		rowSchema.close();
+
+		assertThat(rows).hasSize(2);
+		assertThat(rows.get(0).getString(0).toString()).isEqualTo("speedy");
+		assertThat(rows.get(1).getLong(1)).isEqualTo(42L);
+	}
+
+	@Test
+	public void testDecodesBatchSplitAcrossByteStringChunks() throws IOException {
+		byte[] message = serializedBatch(new String[] { "speedy", "brave" }, new long[] { 7L, 42L });
+		int middle = message.length / 2;
+		ByteString chunked = ByteString.copyFrom(message, 0, middle)
+				.concat(ByteString.copyFrom(message, middle, message.length - middle));
+		assertThat(chunked.asReadOnlyByteBufferList().size()).isGreaterThan(1);
+
+		ArrowRowDataDeserializationSchema rowSchema = new ArrowRowDataDeserializationSchema(ROW_TYPE,
+				InternalTypeInfo.of(ROW_TYPE));
+		List<RowData> rows = new ArrayList<>();
+		rowSchema.deserialize(chunked, new ListCollector<>(rows));
+		rowSchema.close();
+
+		assertThat(rows).hasSize(2);
+		assertThat(rows.get(0).getString(0).toString()).isEqualTo("speedy");
+		assertThat(rows.get(1).getString(0).toString()).isEqualTo("brave");
+		assertThat(rows.get(1).getLong(1)).isEqualTo(42L);
+	}
+
+	@Test
+	public void testProjectionPicksFieldsOutOfTheBatch() throws IOException {
+		RowType producedType = (RowType) DataTypes
+				.ROW(DataTypes.FIELD("word_count", DataTypes.BIGINT()), DataTypes.FIELD("word", DataTypes.STRING()))
+				.getLogicalType();
+		ArrowRowDataDeserializationSchema rowSchema = new ArrowRowDataDeserializationSchema(ROW_TYPE,
+				new int[][] { { 1 }, { 0 } }, InternalTypeInfo.of(producedType), false);
+		List<RowData> rows = new ArrayList<>();
+		rowSchema.deserialize(serializedBatch(new String[] { "speedy" }, new long[] { 7L }), new ListCollector<>(rows));
+		rowSchema.close();
+
+		assertThat(rows).hasSize(1);
+		assertThat(rows.get(0).getLong(0)).isEqualTo(7L);
+		assertThat(rows.get(0).getString(1).toString()).isEqualTo("speedy");
+	}
+
+	static byte[] serializedBatch(String[] words, long[] counts) throws IOException {
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VectorSchemaRoot root = VectorSchemaRoot.create(ArrowSchemaConverter.convertToSchema(ROW_TYPE),
+						allocator)) {
+			VarCharVector wordVector = (VarCharVector) root.getVector(0);
+			BigIntVector countVector = (BigIntVector) root.getVector(1);
+			for (int i = 0; i < words.length; i++) {
+				wordVector.setSafe(i, words[i].getBytes(StandardCharsets.UTF_8));
+				countVector.setSafe(i, counts[i]);
+			}
+			root.setRowCount(words.length);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (ArrowRecordBatch batch = new VectorUnloader(root).getRecordBatch()) {
+				MessageSerializer.serialize(new WriteChannel(Channels.newChannel(out)), batch);
+			}
+			return out.toByteArray();
+		}
+	}
+}
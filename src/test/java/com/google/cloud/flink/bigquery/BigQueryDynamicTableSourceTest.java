@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.connector.source.abilities.SupportsFilterPushDown.Result;
+import org.apache.flink.table.connector.source.abilities.SupportsPartitionPushDown;
+import org.apache.flink.table.expressions.CallExpression;
+import org.apache.flink.table.expressions.FieldReferenceExpression;
+import org.apache.flink.table.expressions.ResolvedExpression;
+import org.apache.flink.table.expressions.ValueLiteralExpression;
+import org.apache.flink.table.functions.BuiltInFunctionDefinitions;
+import org.apache.flink.table.types.DataType;
+import org.junit.Test;
+
+public class BigQueryDynamicTableSourceTest {
+
+	private static final DataType PHYSICAL_TYPE = DataTypes.ROW(DataTypes.FIELD("id", DataTypes.BIGINT()),
+			DataTypes.FIELD("name", DataTypes.STRING()));
+
+	private static final ResolvedExpression ID_GREATER_THAN_10 = new CallExpression(
+			BuiltInFunctionDefinitions.GREATER_THAN,
+			Arrays.asList(new FieldReferenceExpression("id", DataTypes.BIGINT(), 0, 0), new ValueLiteralExpression(10L)),
+			DataTypes.BOOLEAN());
+
+	@Test
+	public void testPushAllFiltersKeepsNoCompiledFilter() {
+		Result result = createSource(options()).applyFilters(Collections.singletonList(ID_GREATER_THAN_10));
+
+		assertThat(result.getAcceptedFilters()).containsExactly(ID_GREATER_THAN_10);
+		assertThat(result.getRemainingFilters()).isEmpty();
+	}
+
+	@Test
+	public void testFiltersRemainWhenTheFilterOptionReplacesThem() {
+		Map<String, String> options = options();
+		options.put("filter", "name = 'a'");
+		options.put("pushAllFilters", "true");
+		options.put("combinePushedDownFilters", "false");
+
+		Result result = createSource(options).applyFilters(Collections.singletonList(ID_GREATER_THAN_10));
+
+		assertThat(result.getRemainingFilters()).containsExactly(ID_GREATER_THAN_10);
+	}
+
+	@Test
+	public void testRemainingPartitionsRestrictTheFilterOption() {
+		Map<String, String> options = options();
+		options.put("filter", "name = 'a'");
+		options.put("combinePushedDownFilters", "false");
+		PartitionedBigQueryDynamicTableSource source = createPartitionedSource(options);
+		source.applyFilters(Collections.singletonList(ID_GREATER_THAN_10));
+		source.applyPartitions(Collections.singletonList(Collections.singletonMap("day", "2022-03-01")));
+
+		assertThat(source.getRowRestriction(BigQueryReadSession.getConfig(options)).get())
+				.isEqualTo("(name = 'a') AND (`day` IN (DATE '2022-03-01'))");
+	}
+
+	@Test
+	public void testOnlyTheListedPartitionsCanBePruned() {
+		assertThat(createSource(options()).copy()).isNotInstanceOf(SupportsPartitionPushDown.class);
+
+		PartitionedBigQueryDynamicTableSource source = createPartitionedSource(options());
+		source.applyPartitions(Collections.emptyList());
+		BigQueryDynamicTableSource copy = (BigQueryDynamicTableSource) source.copy();
+
+		assertThat(copy).isInstanceOf(PartitionedBigQueryDynamicTableSource.class);
+		assertThat(copy.getRowRestriction(BigQueryReadSession.getConfig(options())).get()).isEqualTo("(FALSE)");
+	}
+
+	private static BigQueryDynamicTableSource createSource(Map<String, String> options) {
+		return new BigQueryDynamicTableSource(new ArrowDecodingFormat(false), PHYSICAL_TYPE, options);
+	}
+
+	private static PartitionedBigQueryDynamicTableSource createPartitionedSource(Map<String, String> options) {
+		return new PartitionedBigQueryDynamicTableSource(new ArrowDecodingFormat(false), PHYSICAL_TYPE, options,
+				Arrays.asList(Collections.singletonMap("day", "2022-03-01"),
+						Collections.singletonMap("day", "2022-03-02")));
+	}
+
+	private static Map<String, String> options() {
+		Map<String, String> options = new HashMap<>();
+		options.put("projectId", "project");
+		options.put("parentProject", "project");
+		options.put("dataset", "dataset");
+		options.put("table", "table");
+		options.put("defaultParallelism", "1");
+		options.put("flinkVersion", "1.13.1");
+		return options;
+	}
+}
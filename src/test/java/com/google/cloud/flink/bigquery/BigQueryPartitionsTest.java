@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class BigQueryPartitionsTest {
+
+	@Test
+	public void testPartitionIdsBecomeDatesAndNull() {
+		List<Map<String, String>> partitions = BigQueryPartitions
+				.toPartitions("day", Arrays.asList("20220301", "20220302", "__NULL__")).get();
+
+		assertThat(partitions).containsExactly(Collections.singletonMap("day", "2022-03-01"),
+				Collections.singletonMap("day", "2022-03-02"), Collections.singletonMap("day", null)).inOrder();
+	}
+
+	@Test
+	public void testUnpartitionedRowsLeaveNoPartitionsToPrune() {
+		// dates out of the range of daily partitions have no single partition value
+		assertThat(BigQueryPartitions.toPartitions("day", Arrays.asList("20220301", "__UNPARTITIONED__"))
+				.isPresent()).isFalse();
+	}
+
+	@Test
+	public void testRemainingPartitionsBecomeARowRestriction() {
+		assertThat(BigQueryPartitions.toRowRestriction(Arrays.asList(Collections.singletonMap("day", "2022-03-01"),
+				Collections.singletonMap("day", "2022-03-02")))).isEqualTo("`day` IN (DATE '2022-03-01', DATE '2022-03-02')");
+		assertThat(BigQueryPartitions.toRowRestriction(Arrays.asList(Collections.singletonMap("day", "2022-03-01"),
+				Collections.singletonMap("day", null)))).isEqualTo("`day` IN (DATE '2022-03-01') OR `day` IS NULL");
+	}
+
+	@Test
+	public void testNoRemainingPartitionsSelectNoRows() {
+		assertThat(BigQueryPartitions.toRowRestriction(Collections.emptyList())).isEqualTo("FALSE");
+	}
+}
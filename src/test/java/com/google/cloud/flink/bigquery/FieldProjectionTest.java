@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.types.logical.RowType;
+import org.junit.Test;
+
+public class FieldProjectionTest {
+
+	private static final RowType TABLE = (RowType) DataTypes.ROW(DataTypes.FIELD("id", DataTypes.BIGINT()),
+			DataTypes.FIELD("address",
+					DataTypes.ROW(DataTypes.FIELD("street", DataTypes.STRING()),
+							DataTypes.FIELD("city", DataTypes.STRING()), DataTypes.FIELD("zip", DataTypes.STRING()))),
+			DataTypes.FIELD("name", DataTypes.STRING())).getLogicalType();
+
+	@Test
+	public void testTopLevelFieldsAreReadInTableOrder() {
+		FieldProjection projection = FieldProjection.of(TABLE, new int[][] { { 2 }, { 0 } });
+
+		assertThat(projection.getSelectedFields()).containsExactly("id", "name").inOrder();
+		assertThat(projection.getReadType().getFieldNames()).containsExactly("id", "name").inOrder();
+		assertThat(projection.getReadPaths()).isEqualTo(new int[][] { { 1 }, { 0 } });
+		assertThat(projection.isIdentity()).isFalse();
+	}
+
+	@Test
+	public void testNestedFieldsPruneTheirParent() {
+		FieldProjection projection = FieldProjection.of(TABLE, new int[][] { { 1, 2 }, { 0 }, { 1, 1 } });
+
+		assertThat(projection.getSelectedFields()).containsExactly("id", "address.city", "address.zip").inOrder();
+		RowType address = (RowType) projection.getReadType().getTypeAt(1);
+		assertThat(address.getFieldNames()).containsExactly("city", "zip").inOrder();
+		assertThat(projection.getReadPaths()).isEqualTo(new int[][] { { 1, 1 }, { 0 }, { 1, 0 } });
+	}
+
+	@Test
+	public void testWholeFieldCoversItsNestedFields() {
+		FieldProjection projection = FieldProjection.of(TABLE, new int[][] { { 1, 0 }, { 1 } });
+
+		assertThat(projection.getSelectedFields()).containsExactly("address");
+		assertThat(projection.getReadType().getTypeAt(0)).isEqualTo(TABLE.getTypeAt(1));
+		assertThat(projection.getReadPaths()).isEqualTo(new int[][] { { 0, 0 }, { 0 } });
+	}
+
+	@Test
+	public void testAllFieldsInOrderIsTheIdentity() {
+		FieldProjection projection = FieldProjection.of(TABLE, new int[][] { { 0 }, { 1 }, { 2 } });
+
+		assertThat(projection.isIdentity()).isTrue();
+		assertThat(projection.getReadType()).isEqualTo(TABLE);
+	}
+
+	@Test
+	public void testEmptyProjectionStillSelectsOneField() {
+		FieldProjection projection = FieldProjection.of(TABLE, new int[0][]);
+
+		assertThat(projection.getSelectedFields()).containsExactly("id");
+		assertThat(projection.getReadPaths()).isEmpty();
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.net.URI;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
+import com.google.common.collect.ImmutableMap;
+
+public class FlinkBigQueryGrpcConfigTest {
+
+	@Test
+	public void testOptionsAreParsed() {
+		FlinkBigQueryGrpcConfig config = FlinkBigQueryGrpcConfig.from(ImmutableMap.of("bqchannelpoolsize", "8",
+				"bqflowcontrolwindow", "16777216", "bqkeepalivetimems", "30000", "bqstoragereadplaintext", "true"),
+				ImmutableMap.of());
+
+		assertThat(config.getChannelPoolSize()).isEqualTo(8);
+		assertThat(config.getMaxInboundMessageSize()).isEqualTo(FlinkBigQueryGrpcConfig.DEFAULT_MAX_INBOUND_MESSAGE_SIZE);
+		assertThat(config.getFlowControlWindow()).isEqualTo(Optional.of(16777216));
+		assertThat(config.getKeepAliveTimeMs()).isEqualTo(Optional.of(30000L));
+		assertThat(config.getKeepAliveTimeoutMs()).isEqualTo(Optional.empty());
+		assertThat(config.isPlaintext()).isTrue();
+		assertThat(config).isNotEqualTo(FlinkBigQueryGrpcConfig.from(ImmutableMap.of(), ImmutableMap.of()));
+	}
+
+	@Test
+	public void testChannelPoolSizeMustBePositive() {
+		assertThrows(IllegalArgumentException.class,
+				() -> FlinkBigQueryGrpcConfig.from(ImmutableMap.of("bqchannelpoolsize", "0"), ImmutableMap.of()));
+	}
+
+	@Test
+	public void testChannelProviderUsesTheEndpoint() {
+		FlinkBigQueryGrpcConfig config = FlinkBigQueryGrpcConfig.from(ImmutableMap.of(), ImmutableMap.of());
+
+		InstantiatingGrpcChannelProvider provider = config.createChannelProvider(Optional.of("localhost:8443"),
+				new FlinkBigQueryProxyAndHttpConfig() {
+					@Override
+					public Optional<URI> getProxyUri() {
+						return Optional.empty();
+					}
+				});
+
+		assertThat(provider.getEndpoint()).isEqualTo("localhost:8443");
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.expressions.CallExpression;
+import org.apache.flink.table.expressions.FieldReferenceExpression;
+import org.apache.flink.table.expressions.ResolvedExpression;
+import org.apache.flink.table.expressions.ValueLiteralExpression;
+import org.apache.flink.table.functions.BuiltInFunctionDefinitions;
+import org.apache.flink.table.functions.FunctionDefinition;
+import org.junit.Test;
+
+public class FlinkFilterUtilsTest {
+
+	private static final FieldReferenceExpression ID = new FieldReferenceExpression("id", DataTypes.BIGINT(), 0, 0);
+	private static final FieldReferenceExpression NAME = new FieldReferenceExpression("name", DataTypes.STRING(), 0,
+			1);
+
+	@Test
+	public void testComparisonsCompileWithTheFieldOnEitherSide() {
+		assertThat(compile(call(BuiltInFunctionDefinitions.GREATER_THAN, ID, literal(10L))))
+				.isEqualTo("`id` > 10");
+		assertThat(compile(call(BuiltInFunctionDefinitions.EQUALS, literal("O'Brien"), NAME)))
+				.isEqualTo("'O\\'Brien' = `name`");
+		assertThat(compile(call(BuiltInFunctionDefinitions.LESS_THAN_OR_EQUAL,
+				new FieldReferenceExpression("day", DataTypes.DATE(), 0, 2), literal(LocalDate.of(2022, 3, 1)))))
+						.isEqualTo("`day` <= DATE '2022-03-01'");
+		assertThat(compile(call(BuiltInFunctionDefinitions.NOT_EQUALS,
+				new FieldReferenceExpression("price", DataTypes.DECIMAL(10, 2), 0, 3),
+				literal(new BigDecimal("1.50"))))).isEqualTo("`price` != NUMERIC '1.50'");
+	}
+
+	@Test
+	public void testInBetweenAndNullChecksCompile() {
+		assertThat(compile(call(BuiltInFunctionDefinitions.IN, ID, literal(1L), literal(2L))))
+				.isEqualTo("`id` IN (1, 2)");
+		assertThat(compile(call(BuiltInFunctionDefinitions.BETWEEN, ID, literal(1L), literal(5L))))
+				.isEqualTo("`id` BETWEEN 1 AND 5");
+		assertThat(compile(call(BuiltInFunctionDefinitions.IS_NOT_NULL, NAME)))
+				.isEqualTo("`name` IS NOT NULL");
+	}
+
+	@Test
+	public void testOnlyPrefixPatternsOfLikeCompile() {
+		assertThat(compile(call(BuiltInFunctionDefinitions.LIKE, NAME, literal("ab%"))))
+				.isEqualTo("STARTS_WITH(`name`, 'ab')");
+		assertThat(compile(call(BuiltInFunctionDefinitions.LIKE, NAME, literal("ab"))))
+				.isEqualTo("`name` = 'ab'");
+		assertThat(compile(call(BuiltInFunctionDefinitions.LIKE, NAME, literal("%ab"))))
+				.isNull();
+		assertThat(compile(call(BuiltInFunctionDefinitions.LIKE, NAME, literal("a_b%"))))
+				.isNull();
+	}
+
+	@Test
+	public void testBooleanCombinationsCompileOnlyWhenEveryOperandDoes() {
+		ResolvedExpression greater = call(BuiltInFunctionDefinitions.GREATER_THAN, ID, literal(10L));
+		ResolvedExpression isNull = call(BuiltInFunctionDefinitions.IS_NULL, NAME);
+		ResolvedExpression upper = call(BuiltInFunctionDefinitions.EQUALS,
+				call(BuiltInFunctionDefinitions.UPPER, NAME), literal("AB"));
+
+		assertThat(compile(call(BuiltInFunctionDefinitions.OR, greater, isNull)))
+				.isEqualTo("(`id` > 10) OR (`name` IS NULL)");
+		assertThat(compile(call(BuiltInFunctionDefinitions.NOT, greater)))
+				.isEqualTo("NOT (`id` > 10)");
+		assertThat(compile(call(BuiltInFunctionDefinitions.AND, greater, upper))).isNull();
+	}
+
+	@Test
+	public void testPushedFiltersAreCombinedWithTheConfiguredFilter() {
+		assertThat(combine(true, Optional.of("a = 1"), Arrays.asList("`id` > 10")))
+				.isEqualTo("(a = 1) AND (`id` > 10)");
+		assertThat(combine(false, Optional.of("a = 1"), Arrays.asList("`id` > 10")))
+				.isEqualTo("a = 1");
+		assertThat(combine(true, Optional.empty(), Collections.emptyList())).isNull();
+	}
+
+	private static String compile(ResolvedExpression expression) {
+		return FlinkFilterUtils.compile(expression).orElse(null);
+	}
+
+	private static String combine(boolean combine, Optional<String> configFilter, List<String> pushedFilters) {
+		return FlinkFilterUtils.getCompiledFilter(combine, configFilter, pushedFilters).orElse(null);
+	}
+
+	private static ResolvedExpression call(FunctionDefinition function, ResolvedExpression... args) {
+		return new CallExpression(function, Arrays.asList(args), DataTypes.BOOLEAN());
+	}
+
+	private static ValueLiteralExpression literal(Object value) {
+		return new ValueLiteralExpression(value);
+	}
+}
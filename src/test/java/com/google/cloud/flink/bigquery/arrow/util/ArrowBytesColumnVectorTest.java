@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.arrow.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.flink.table.data.vector.BytesColumnVector.Bytes;
+import org.junit.Test;
+
+public class ArrowBytesColumnVectorTest {
+
+	@Test
+	public void testSlicesValuesOutOfTheDataBuffer() {
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VarCharVector vector = new VarCharVector("word", allocator)) {
+			fill(vector, "hello", "", "w\u00f6rld");
+			ArrowVarCharColumnVector column = new ArrowVarCharColumnVector(vector);
+
+			Bytes first = column.getBytes(0);
+			Bytes third = column.getBytes(2);
+			assertThat(third.data).isSameInstanceAs(first.data);
+			assertThat(new String(third.data, third.offset, third.len, StandardCharsets.UTF_8)).isEqualTo("w\u00f6rld");
+			assertThat(column.getBytes(1).len).isEqualTo(0);
+
+			assertThat(column.getString(0).toString()).isEqualTo("hello");
+			assertThat(column.getString(1).toString()).isEmpty();
+			assertThat(column.getString(2).toString()).isEqualTo("w\u00f6rld");
+			assertThat(column.isNullAt(3)).isTrue();
+		}
+	}
+
+	@Test
+	public void testBytesStayValidWhenTheVectorIsRefilled() {
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VarBinaryVector vector = new VarBinaryVector("payload", allocator)) {
+			fill(vector, "first");
+			ArrowVarBinaryColumnVector column = new ArrowVarBinaryColumnVector(vector);
+			Bytes before = column.getBytes(0);
+
+			vector.clear();
+			fill(vector, "second");
+
+			assertThat(before.getBytes()).isEqualTo("first".getBytes(StandardCharsets.UTF_8));
+			assertThat(column.getBytes(0).getBytes()).isEqualTo("second".getBytes(StandardCharsets.UTF_8));
+			assertThat(column.getString(0).toBytes()).isEqualTo("second".getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private static void fill(VarCharVector vector, String... values) {
+		vector.allocateNew();
+		for (int i = 0; i < values.length; i++) {
+			vector.setSafe(i, values[i].getBytes(StandardCharsets.UTF_8));
+		}
+		vector.setNull(values.length);
+		vector.setValueCount(values.length + 1);
+	}
+
+	private static void fill(VarBinaryVector vector, String... values) {
+		vector.allocateNew();
+		for (int i = 0; i < values.length; i++) {
+			vector.setSafe(i, values[i].getBytes(StandardCharsets.UTF_8));
+		}
+		vector.setValueCount(values.length);
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.arrow.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigDecimal;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.flink.table.data.DecimalData;
+import org.junit.Test;
+
+public class ArrowDecimalColumnVectorTest {
+
+	@Test
+	public void testReadsCompactDecimalsFromTheBuffer() {
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				DecimalVector vector = new DecimalVector("amount", allocator, 18, 2)) {
+			fill(vector, "12.34", "-0.05", "9999999999999999.99", "-9999999999999999.99");
+			ArrowDecimalColumnVector column = new ArrowDecimalColumnVector(vector);
+
+			DecimalData first = column.getDecimal(0, 18, 2);
+			assertThat(first.isCompact()).isTrue();
+			assertThat(first.toUnscaledLong()).isEqualTo(1234L);
+			assertThat(column.getDecimal(1, 18, 2).toBigDecimal()).isEqualTo(new BigDecimal("-0.05"));
+			assertThat(column.getDecimal(2, 18, 2).toBigDecimal()).isEqualTo(new BigDecimal("9999999999999999.99"));
+			assertThat(column.getDecimal(3, 18, 2).toBigDecimal()).isEqualTo(new BigDecimal("-9999999999999999.99"));
+			// like fromBigDecimal, values which exceed the requested precision are null
+			assertThat(column.getDecimal(0, 3, 2)).isNull();
+			assertThat(column.getDecimal(1, 3, 2).toBigDecimal()).isEqualTo(new BigDecimal("-0.05"));
+		}
+	}
+
+	@Test
+	public void testFallsBackForWideValuesAndOtherScales() {
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				DecimalVector vector = new DecimalVector("amount", allocator, 38, 9)) {
+			fill(vector, "12345678901234567890.123456789", "-1.500000000");
+			ArrowDecimalColumnVector column = new ArrowDecimalColumnVector(vector);
+
+			assertThat(column.getDecimal(0, 38, 9).toBigDecimal())
+					.isEqualTo(new BigDecimal("12345678901234567890.123456789"));
+			assertThat(column.getDecimal(0, 18, 9)).isNull();
+			assertThat(column.getDecimal(1, 18, 9).toBigDecimal()).isEqualTo(new BigDecimal("-1.500000000"));
+			assertThat(column.getDecimal(1, 10, 2).toBigDecimal()).isEqualTo(new BigDecimal("-1.50"));
+		}
+	}
+
+	private static void fill(DecimalVector vector, String... values) {
+		vector.allocateNew();
+		for (int i = 0; i < values.length; i++) {
+			vector.setSafe(i, new BigDecimal(values[i]));
+		}
+		vector.setValueCount(values.length);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.arrow.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.data.MapData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.runtime.typeutils.InternalTypeInfo;
+import org.apache.flink.table.types.logical.RowType;
+import org.junit.Test;
+
+import com.google.cloud.flink.bigquery.ArrowRowDataDeserializationSchema;
+
+public class ArrowMapColumnVectorTest {
+
+	private static final RowType ROW_TYPE = (RowType) DataTypes
+			.ROW(DataTypes.FIELD("labels", DataTypes.MAP(DataTypes.STRING(), DataTypes.BIGINT()))).getLogicalType();
+
+	@Test
+	public void testReadsMapsFromKeyValueStructs() {
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VectorSchemaRoot root = createBatch(allocator)) {
+			MapColumnVector column = (MapColumnVector) ArrowSchemaConverter.createColumnVector(root.getVector(0),
+					ROW_TYPE.getTypeAt(0));
+
+			MapData first = column.getMap(0);
+			assertThat(first.size()).isEqualTo(2);
+			assertThat(first.keyArray().getString(1).toString()).isEqualTo("env");
+			assertThat(first.valueArray().getLong(0)).isEqualTo(1L);
+			assertThat(first.valueArray().isNullAt(1)).isTrue();
+			assertThat(column.getMap(1).size()).isEqualTo(0);
+			assertThat(column.isNullAt(2)).isTrue();
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testConvertsMapsIntoRows() {
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VectorSchemaRoot root = createBatch(allocator)) {
+			List<RowData> rows = (List<RowData>) ArrowToRowDataConverter.createRowConverter(ROW_TYPE).convert(root);
+
+			MapData first = rows.get(0).getMap(0);
+			assertThat(first.size()).isEqualTo(2);
+			assertThat(first.keyArray().getString(0).toString()).isEqualTo("team");
+			assertThat(first.keyArray().getString(1).toString()).isEqualTo("env");
+			assertThat(first.valueArray().getLong(0)).isEqualTo(1L);
+			assertThat(first.valueArray().isNullAt(1)).isTrue();
+			assertThat(rows.get(1).getMap(0).size()).isEqualTo(0);
+			assertThat(rows.get(2).isNullAt(0)).isTrue();
+		}
+	}
+
+	@Test
+	public void testColumnarRowsCannotReadMaps() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new ArrowRowDataDeserializationSchema(ROW_TYPE, InternalTypeInfo.of(ROW_TYPE), true));
+	}
+
+	private static VectorSchemaRoot createBatch(BufferAllocator allocator) {
+		VectorSchemaRoot root = VectorSchemaRoot.create(ArrowSchemaConverter.convertToSchema(ROW_TYPE), allocator);
+		root.allocateNew();
+		ListVector labels = (ListVector) root.getVector(0);
+		StructVector entries = (StructVector) labels.getDataVector();
+		VarCharVector keys = (VarCharVector) entries.getVectorById(0);
+		BigIntVector values = (BigIntVector) entries.getVectorById(1);
+		labels.startNewValue(0);
+		keys.setSafe(0, "team".getBytes(StandardCharsets.UTF_8));
+		values.setSafe(0, 1L);
+		entries.setIndexDefined(0);
+		keys.setSafe(1, "env".getBytes(StandardCharsets.UTF_8));
+		values.setNull(1);
+		entries.setIndexDefined(1);
+		labels.endValue(0, 2);
+		labels.startNewValue(1);
+		labels.endValue(1, 0);
+		labels.setNull(2);
+		root.setRowCount(3);
+		return root;
+	}
+}
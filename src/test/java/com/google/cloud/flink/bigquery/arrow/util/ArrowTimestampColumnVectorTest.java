@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.arrow.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeSecVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.TimeStampNanoVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.LocalZonedTimestampType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.TimeType;
+import org.apache.flink.table.types.logical.TimestampType;
+import org.junit.Test;
+
+public class ArrowTimestampColumnVectorTest {
+
+	@Test
+	public void testReadsZonedAndLocalTimestamps() {
+		RowType rowType = RowType.of(new LogicalType[] { new LocalZonedTimestampType(6), new TimestampType(9) },
+				new String[] { "event_time", "created_at" });
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VectorSchemaRoot root = VectorSchemaRoot.create(ArrowSchemaConverter.convertToSchema(rowType),
+						allocator)) {
+			root.allocateNew();
+			TimeStampMicroTZVector eventTimes = (TimeStampMicroTZVector) root.getVector(0);
+			eventTimes.setSafe(0, 1_600_000_000_123_456L);
+			// before the epoch, the nanos of the millisecond must stay positive
+			eventTimes.setSafe(1, -1L);
+			TimeStampNanoVector createdAt = (TimeStampNanoVector) root.getVector(1);
+			createdAt.setSafe(0, 1_600_000_000_123_456_789L);
+			createdAt.setNull(1);
+			root.setRowCount(2);
+
+			ArrowTimestampColumnVector zoned = (ArrowTimestampColumnVector) ArrowSchemaConverter
+					.createColumnVector(eventTimes, rowType.getTypeAt(0));
+			assertThat(zoned.getTimestamp(0, 6).toInstant())
+					.isEqualTo(Instant.ofEpochSecond(1_600_000_000L, 123_456_000L));
+			assertThat(zoned.getTimestamp(1, 6).toInstant()).isEqualTo(Instant.ofEpochSecond(0, -1_000L));
+
+			@SuppressWarnings("unchecked")
+			List<RowData> rows = (List<RowData>) ArrowToRowDataConverter.createRowConverter(rowType).convert(root);
+			assertThat(rows.get(0).getTimestamp(0, 6).toInstant())
+					.isEqualTo(Instant.ofEpochSecond(1_600_000_000L, 123_456_000L));
+			assertThat(rows.get(0).getTimestamp(1, 9).toLocalDateTime())
+					.isEqualTo(LocalDateTime.of(2020, 9, 13, 12, 26, 40, 123_456_789));
+			assertThat(rows.get(1).isNullAt(1)).isTrue();
+		}
+	}
+
+	@Test
+	public void testReadsTimesAsMillisOfTheDay() {
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				TimeSecVector seconds = new TimeSecVector("seconds", allocator);
+				TimeMicroVector micros = new TimeMicroVector("micros", allocator)) {
+			seconds.allocateNew();
+			seconds.setSafe(0, 3_723);
+			seconds.setValueCount(1);
+			micros.allocateNew();
+			micros.setSafe(0, 3_723_456_789L);
+			micros.setValueCount(1);
+
+			assertThat(ArrowSchemaConverter.createColumnVector(seconds, new TimeType(0)))
+					.isInstanceOf(ArrowTimeColumnVector.class);
+			assertThat(ArrowTimeColumnVector.create(seconds).getInt(0)).isEqualTo(3_723_000);
+			assertThat(ArrowTimeColumnVector.create(micros).getInt(0)).isEqualTo(3_723_456);
+		}
+	}
+}
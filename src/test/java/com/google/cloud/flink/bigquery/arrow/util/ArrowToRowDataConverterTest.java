@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.arrow.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.binary.BinaryRowData;
+import org.apache.flink.table.types.logical.RowType;
+import org.junit.Test;
+
+public class ArrowToRowDataConverterTest {
+
+	private static final RowType ROW_TYPE = (RowType) DataTypes.ROW(DataTypes.FIELD("id", DataTypes.BIGINT()),
+			DataTypes.FIELD("count", DataTypes.INT()), DataTypes.FIELD("flag", DataTypes.TINYINT()),
+			DataTypes.FIELD("amount", DataTypes.DECIMAL(10, 2)), DataTypes.FIELD("day", DataTypes.DATE()),
+			DataTypes.FIELD("name", DataTypes.STRING()), DataTypes.FIELD("tags", DataTypes.ARRAY(DataTypes.BIGINT())),
+			DataTypes.FIELD("point", DataTypes.ROW(DataTypes.FIELD("x", DataTypes.INT())))).getLogicalType();
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testConvertsTypedValuesAndNulls() {
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VectorSchemaRoot root = createBatch(allocator)) {
+			List<RowData> rows = (List<RowData>) ArrowToRowDataConverter.createRowConverter(ROW_TYPE).convert(root);
+
+			assertThat(rows).hasSize(2);
+			RowData first = rows.get(0);
+			assertThat(first).isInstanceOf(BinaryRowData.class);
+			assertThat(first.getLong(0)).isEqualTo(7L);
+			assertThat(first.getInt(1)).isEqualTo(3);
+			assertThat(first.getByte(2)).isEqualTo((byte) 1);
+			assertThat(first.getDecimal(3, 10, 2).toBigDecimal()).isEqualTo(new BigDecimal("12.34"));
+			assertThat(first.getInt(4)).isEqualTo(19000);
+			assertThat(first.getString(5).toString()).isEqualTo("speedy");
+			assertThat(first.getArray(6).getLong(1)).isEqualTo(20L);
+			assertThat(first.getRow(7, 1).getInt(0)).isEqualTo(5);
+
+			RowData second = rows.get(1);
+			assertThat(second.getLong(0)).isEqualTo(8L);
+			assertThat(second.isNullAt(1)).isTrue();
+			assertThat(second.isNullAt(5)).isTrue();
+			assertThat(second.getArray(6).size()).isEqualTo(0);
+			assertThat(second.isNullAt(7)).isTrue();
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testProjectedNestedFieldIsNullWithItsParent() {
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VectorSchemaRoot root = createBatch(allocator)) {
+			List<RowData> rows = (List<RowData>) ArrowToRowDataConverter
+					.createProjectedRowConverter(ROW_TYPE, new int[][] { { 7, 0 }, { 0 } }).convert(root);
+
+			assertThat(rows.get(0).getInt(0)).isEqualTo(5);
+			assertThat(rows.get(0).getLong(1)).isEqualTo(7L);
+			// the child vector still holds a value for the null parent
+			assertThat(rows.get(1).isNullAt(0)).isTrue();
+			assertThat(rows.get(1).getLong(1)).isEqualTo(8L);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testWritesNestedArraysAndRows() {
+		RowType rowType = (RowType) DataTypes.ROW(DataTypes.FIELD("scores", DataTypes.ARRAY(DataTypes.INT())),
+				DataTypes.FIELD("events", DataTypes.ARRAY(DataTypes.ROW(DataTypes.FIELD("x", DataTypes.INT()),
+						DataTypes.FIELD("label", DataTypes.STRING())))))
+				.getLogicalType();
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VectorSchemaRoot root = VectorSchemaRoot.create(ArrowSchemaConverter.convertToSchema(rowType),
+						allocator)) {
+			root.allocateNew();
+			// both rows hold two scores, so the array writer is reused for the second one
+			ListVector scores = (ListVector) root.getVector(0);
+			IntVector scoreValues = (IntVector) scores.getDataVector();
+			scores.startNewValue(0);
+			scoreValues.setSafe(0, 1);
+			scoreValues.setNull(1);
+			scores.endValue(0, 2);
+			scores.startNewValue(1);
+			scoreValues.setSafe(2, 3);
+			scoreValues.setSafe(3, 4);
+			scores.endValue(1, 2);
+			ListVector events = (ListVector) root.getVector(1);
+			StructVector eventValues = (StructVector) events.getDataVector();
+			IntVector xs = (IntVector) eventValues.getChild("x");
+			VarCharVector labels = (VarCharVector) eventValues.getChild("label");
+			events.startNewValue(0);
+			xs.setSafe(0, 5);
+			labels.setSafe(0, "click".getBytes(StandardCharsets.UTF_8));
+			eventValues.setIndexDefined(0);
+			eventValues.setNull(1);
+			xs.setSafe(2, 6);
+			labels.setNull(2);
+			eventValues.setIndexDefined(2);
+			events.endValue(0, 3);
+			events.setNull(1);
+			root.setRowCount(2);
+
+			List<RowData> rows = (List<RowData>) ArrowToRowDataConverter.createRowConverter(rowType).convert(root);
+
+			RowData first = rows.get(0);
+			assertThat(first.getArray(0).getInt(0)).isEqualTo(1);
+			assertThat(first.getArray(0).isNullAt(1)).isTrue();
+			RowData second = rows.get(1);
+			assertThat(second.getArray(0).isNullAt(1)).isFalse();
+			assertThat(second.getArray(0).toIntArray()).isEqualTo(new int[] { 3, 4 });
+
+			assertThat(first.getArray(1).size()).isEqualTo(3);
+			RowData click = first.getArray(1).getRow(0, 2);
+			assertThat(click.getInt(0)).isEqualTo(5);
+			assertThat(click.getString(1).toString()).isEqualTo("click");
+			assertThat(first.getArray(1).isNullAt(1)).isTrue();
+			assertThat(first.getArray(1).getRow(2, 2).getInt(0)).isEqualTo(6);
+			assertThat(first.getArray(1).getRow(2, 2).isNullAt(1)).isTrue();
+			assertThat(second.isNullAt(1)).isTrue();
+		}
+	}
+
+	private static VectorSchemaRoot createBatch(BufferAllocator allocator) {
+		VectorSchemaRoot root = VectorSchemaRoot.create(ArrowSchemaConverter.convertToSchema(ROW_TYPE), allocator);
+		root.allocateNew();
+		BigIntVector ids = (BigIntVector) root.getVector(0);
+		ids.setSafe(0, 7L);
+		ids.setSafe(1, 8L);
+		IntVector counts = (IntVector) root.getVector(1);
+		counts.setSafe(0, 3);
+		counts.setNull(1);
+		TinyIntVector flags = (TinyIntVector) root.getVector(2);
+		flags.setSafe(0, 1);
+		flags.setSafe(1, 0);
+		DecimalVector amounts = (DecimalVector) root.getVector(3);
+		amounts.setSafe(0, new BigDecimal("12.34"));
+		amounts.setSafe(1, new BigDecimal("-0.50"));
+		DateDayVector days = (DateDayVector) root.getVector(4);
+		days.setSafe(0, 19000);
+		days.setSafe(1, 19001);
+		VarCharVector names = (VarCharVector) root.getVector(5);
+		names.setSafe(0, "speedy".getBytes(StandardCharsets.UTF_8));
+		names.setNull(1);
+		ListVector tags = (ListVector) root.getVector(6);
+		BigIntVector tagValues = (BigIntVector) tags.getDataVector();
+		tags.startNewValue(0);
+		tagValues.setSafe(0, 10L);
+		tagValues.setSafe(1, 20L);
+		tags.endValue(0, 2);
+		tags.startNewValue(1);
+		tags.endValue(1, 0);
+		StructVector points = (StructVector) root.getVector(7);
+		IntVector xs = (IntVector) points.getChild("x");
+		xs.setSafe(0, 5);
+		points.setIndexDefined(0);
+		xs.setSafe(1, 6);
+		points.setNull(1);
+		root.setRowCount(2);
+		return root;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.flink.bigquery.common.BigQueryClientPool.ClientKey;
+import com.google.cloud.flink.bigquery.common.BigQueryClientPool.Lease;
+
+public class BigQueryClientPoolTest {
+
+	private final List<String> closed = new ArrayList<>();
+
+	@Test
+	public void testClientsAreSharedByEqualCredentials() {
+		BigQueryClientPool pool = new BigQueryClientPool(0);
+		ClientKey key = key("token", Optional.empty());
+		ClientKey sameCredentials = key("token", Optional.empty());
+
+		Lease<String> first = pool.acquire(String.class, key, () -> "first", closed::add);
+		Lease<String> second = pool.acquire(String.class, sameCredentials, () -> "second", closed::add);
+		Lease<String> otherEndpoint = pool.acquire(String.class, key("token", Optional.of("localhost:443")),
+				() -> "other", closed::add);
+
+		assertThat(second.get()).isEqualTo("first");
+		assertThat(otherEndpoint.get()).isEqualTo("other");
+		assertThat(pool.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void testClientIsClosedWithItsLastLease() {
+		BigQueryClientPool pool = new BigQueryClientPool(0);
+		ClientKey key = key("token", Optional.empty());
+		Lease<String> first = pool.acquire(String.class, key, () -> "client", closed::add);
+		Lease<String> second = pool.acquire(String.class, key, () -> "client", closed::add);
+
+		first.close();
+		first.close();
+		assertThat(closed).isEmpty();
+		second.close();
+
+		assertThat(closed).containsExactly("client");
+		assertThat(pool.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testIdleClientIsReusedBeforeItsTimeout() throws Exception {
+		BigQueryClientPool pool = new BigQueryClientPool(200);
+		ClientKey key = key("token", Optional.empty());
+		pool.acquire(String.class, key, () -> "client", closed::add).close();
+
+		Lease<String> lease = pool.acquire(String.class, key, () -> "new client", closed::add);
+		Thread.sleep(400);
+		assertThat(lease.get()).isEqualTo("client");
+		assertThat(closed).isEmpty();
+
+		lease.close();
+		for (int i = 0; i < 100 && pool.size() > 0; i++) {
+			Thread.sleep(20);
+		}
+		assertThat(pool.size()).isEqualTo(0);
+		assertThat(closed).containsExactly("client");
+	}
+
+	private static ClientKey key(String token, Optional<String> endpoint) {
+		return new ClientKey(GoogleCredentials.create(new AccessToken(token, null)), endpoint, null, null);
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BoundedMpscQueueTest {
+
+	@Test
+	public void testOfferFailsWhenFull() {
+		BoundedMpscQueue<Integer> queue = new BoundedMpscQueue<>(3);
+		for (int i = 0; i < 4; i++) {
+			assertThat(queue.offer(i)).isTrue();
+		}
+		assertThat(queue.offer(4)).isFalse();
+		assertThat(queue.poll()).isEqualTo(0);
+		assertThat(queue.offer(4)).isTrue();
+		assertThat(queue.size()).isEqualTo(4);
+	}
+
+	@Test
+	public void testConcurrentProducersKeepTheirOrder() throws Exception {
+		int producers = 4;
+		int elementsPerProducer = 20_000;
+		BoundedMpscQueue<int[]> queue = new BoundedMpscQueue<>(8);
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			Thread thread = new Thread(() -> {
+				try {
+					for (int i = 0; i < elementsPerProducer; i++) {
+						queue.put(new int[] { producer, i });
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+
+		int[] nextExpected = new int[producers];
+		for (int i = 0; i < producers * elementsPerProducer; i++) {
+			int[] element = queue.take();
+			assertThat(element[1]).isEqualTo(nextExpected[element[0]]++);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertThat(queue.poll()).isNull();
+	}
+}
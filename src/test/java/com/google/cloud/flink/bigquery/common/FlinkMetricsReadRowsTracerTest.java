@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.Meter;
+import org.apache.flink.metrics.Metric;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.SimpleCounter;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.junit.Test;
+
+public class FlinkMetricsReadRowsTracerTest {
+
+	@Test
+	public void testTracersOfAGroupShareItsMetrics() {
+		RecordingMetricGroup group = new RecordingMetricGroup();
+		BigQueryTracerFactory factory = new FlinkMetricsTracerFactory(group);
+
+		for (String stream : new String[] { "stream-1", "stream-2" }) {
+			BigQueryStorageReadRowsTracer tracer = factory.newReadRowsTracer(stream);
+			tracer.startStream();
+			tracer.readRowsResponseRequested();
+			tracer.readRowsResponseObtained(100);
+			tracer.rowsParseStarted();
+			tracer.rowsParseFinished(10);
+			tracer.finished();
+		}
+
+		assertThat(((Counter) group.metrics.get("bytesReceived")).getCount()).isEqualTo(200);
+		assertThat(((Counter) group.metrics.get("rowsParsed")).getCount()).isEqualTo(20);
+		Histogram batchBytes = (Histogram) group.metrics.get("batchBytes");
+		assertThat(batchBytes.getCount()).isEqualTo(2);
+		assertThat(batchBytes.getStatistics().getMax()).isEqualTo(100);
+		assertThat(((Histogram) group.metrics.get("serverWaitMicros")).getCount()).isEqualTo(2);
+		assertThat(group.metrics.get("bytesReceivedPerSecond")).isInstanceOf(Meter.class);
+	}
+
+	@Test
+	public void testForksRecordIntoOneSubGroupPerId() {
+		RecordingMetricGroup group = new RecordingMetricGroup();
+		BigQueryStorageReadRowsTracer root = new FlinkMetricsTracerFactory(group).newReadRowsTracer("streams");
+
+		root.forkWithPrefix("reader-thread-0").readRowsResponseObtained(5);
+		root.forkWithPrefix("reader-thread-0").readRowsResponseObtained(7);
+		root.forkWithPrefix("reader-thread-1").readRowsResponseObtained(11);
+
+		assertThat(group.children.keySet()).containsExactly("reader-thread-0", "reader-thread-1");
+		assertThat(((Counter) group.children.get("reader-thread-0").metrics.get("bytesReceived")).getCount())
+				.isEqualTo(12);
+		assertThat(((Counter) group.metrics.get("bytesReceived")).getCount()).isEqualTo(0);
+	}
+
+	/** Keeps the metrics and sub groups registered with it. */
+	private static final class RecordingMetricGroup extends UnregisteredMetricsGroup {
+
+		private final Map<String, Metric> metrics = new HashMap<>();
+		private final Map<String, RecordingMetricGroup> children = new HashMap<>();
+
+		@Override
+		public Counter counter(String name) {
+			return counter(name, new SimpleCounter());
+		}
+
+		@Override
+		public <C extends Counter> C counter(String name, C counter) {
+			return register(name, counter);
+		}
+
+		@Override
+		public <M extends Meter> M meter(String name, M meter) {
+			return register(name, meter);
+		}
+
+		@Override
+		public <H extends Histogram> H histogram(String name, H histogram) {
+			return register(name, histogram);
+		}
+
+		@Override
+		public MetricGroup addGroup(String name) {
+			assertThat(children).doesNotContainKey(name);
+			RecordingMetricGroup child = new RecordingMetricGroup();
+			children.put(name, child);
+			return child;
+		}
+
+		private <M extends Metric> M register(String name, M metric) {
+			assertThat(metrics).doesNotContainKey(name);
+			metrics.put(name, metric);
+			return metric;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.Test;
+
+import com.google.cloud.flink.bigquery.FlinkBigQueryConfig;
+import com.google.cloud.flink.bigquery.common.ParallelArrowReader.DeliveryOrder;
+
+public class ParallelArrowReaderTest {
+
+	private static final Schema SCHEMA = new Schema(
+			Collections.singletonList(Field.nullable("value", new ArrowType.Int(64, true))));
+
+	@Test
+	public void testBatchesAreAttributedToTheirReader() throws Exception {
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator)) {
+			List<ArrowReader> readers = Arrays.asList(
+					new ArrowStreamReader(new ByteArrayInputStream(stream(allocator, 1, 2, 3)), allocator),
+					new ArrowStreamReader(new ByteArrayInputStream(stream(allocator, 10)), allocator));
+			Map<Integer, List<Long>> valuesByReader = new HashMap<>();
+			List<Integer> finishedReaders = new ArrayList<>();
+
+			try (ParallelArrowReader reader = new ParallelArrowReader(readers, Executors.newFixedThreadPool(2),
+					new VectorLoader(root), NoOpBigQueryStorageReadRowsTracer.INSTANCE)) {
+				while (reader.next()) {
+					BigIntVector vector = (BigIntVector) root.getVector(0);
+					valuesByReader.computeIfAbsent(reader.getCurrentReaderIndex(), index -> new ArrayList<>())
+							.add(vector.get(0));
+					for (Integer index = reader.pollFinishedReader(); index != null; index = reader
+							.pollFinishedReader()) {
+						finishedReaders.add(index);
+					}
+				}
+				for (Integer index = reader.pollFinishedReader(); index != null; index = reader.pollFinishedReader()) {
+					finishedReaders.add(index);
+				}
+			}
+
+			assertThat(valuesByReader.get(0)).containsExactly(1L, 2L, 3L).inOrder();
+			assertThat(valuesByReader.get(1)).containsExactly(10L);
+			assertThat(finishedReaders).containsExactly(0, 1);
+			root.clear();
+		}
+	}
+
+	@Test
+	public void testCompletionOrderIsNotStalledBySlowReader() throws Exception {
+		CountDownLatch slowReaderReleased = new CountDownLatch(1);
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator)) {
+			List<ArrowReader> readers = Arrays.asList(
+					new ArrowStreamReader(new BlockingInputStream(stream(allocator, 1), slowReaderReleased),
+							allocator),
+					new ArrowStreamReader(new ByteArrayInputStream(stream(allocator, 10, 11, 12)), allocator));
+			List<Long> values = new ArrayList<>();
+
+			try (ParallelArrowReader reader = new ParallelArrowReader(readers, Executors.newFixedThreadPool(2),
+					new VectorLoader(root), NoOpBigQueryStorageReadRowsTracer.INSTANCE, DeliveryOrder.COMPLETION)) {
+				for (int i = 0; i < 3; i++) {
+					assertThat(reader.next()).isTrue();
+					assertThat(reader.getCurrentReaderIndex()).isEqualTo(1);
+					values.add(((BigIntVector) root.getVector(0)).get(0));
+				}
+				slowReaderReleased.countDown();
+				while (reader.next()) {
+					values.add(((BigIntVector) root.getVector(0)).get(0));
+				}
+				assertThat(Arrays.asList(reader.pollFinishedReader(), reader.pollFinishedReader())).containsExactly(0, 1);
+			}
+
+			assertThat(values).containsExactly(10L, 11L, 12L, 1L).inOrder();
+			root.clear();
+		}
+	}
+
+	@Test
+	public void testReadersBeyondTheirByteBudgetStillMakeProgress() throws Exception {
+		for (DeliveryOrder order : DeliveryOrder.values()) {
+			try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+					VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator)) {
+				List<ArrowReader> readers = Arrays.asList(
+						new ArrowStreamReader(new ByteArrayInputStream(stream(allocator, 1, 2, 3)), allocator),
+						new ArrowStreamReader(new ByteArrayInputStream(stream(allocator, 10, 11)), allocator));
+				List<Long> values = new ArrayList<>();
+
+				try (ParallelArrowReader reader = new ParallelArrowReader(readers, Executors.newFixedThreadPool(2),
+						new VectorLoader(root), NoOpBigQueryStorageReadRowsTracer.INSTANCE, order,
+						/* readAheadBytesPerReader= */ 1, /* minBatchesPerReader= */ 1)) {
+					while (reader.next()) {
+						values.add(((BigIntVector) root.getVector(0)).get(0));
+					}
+				}
+
+				assertThat(values).containsExactly(1L, 2L, 3L, 10L, 11L);
+				root.clear();
+			}
+		}
+	}
+
+	@Test
+	public void testSharedExecutorIsReusedAfterWakeUpAndClose() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+				VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator)) {
+			List<ArrowReader> blockedReaders = Arrays.asList(
+					new ArrowStreamReader(new BlockingInputStream(stream(allocator, 1), new CountDownLatch(1)),
+							allocator),
+					new ArrowStreamReader(new ByteArrayInputStream(stream(allocator, 10)), allocator));
+			try (ParallelArrowReader reader = new ParallelArrowReader(blockedReaders, executor,
+					new VectorLoader(root), NoOpBigQueryStorageReadRowsTracer.INSTANCE, DeliveryOrder.COMPLETION,
+					FlinkBigQueryConfig.DEFAULT_READ_AHEAD_BYTES_PER_STREAM, 1, false)) {
+				assertThat(reader.next()).isTrue();
+				reader.wakeUp();
+				// the first reader still blocks, so the call returns without a batch
+				assertThat(reader.next()).isFalse();
+				assertThat(reader.isFinished()).isFalse();
+			}
+			assertThat(executor.isShutdown()).isFalse();
+
+			List<ArrowReader> readers = Arrays.asList(
+					new ArrowStreamReader(new ByteArrayInputStream(stream(allocator, 1, 2)), allocator),
+					new ArrowStreamReader(new ByteArrayInputStream(stream(allocator, 10)), allocator));
+			List<Long> values = new ArrayList<>();
+			try (ParallelArrowReader reader = new ParallelArrowReader(readers, executor, new VectorLoader(root),
+					NoOpBigQueryStorageReadRowsTracer.INSTANCE, DeliveryOrder.COMPLETION,
+					FlinkBigQueryConfig.DEFAULT_READ_AHEAD_BYTES_PER_STREAM, 1, false)) {
+				while (reader.next()) {
+					values.add(((BigIntVector) root.getVector(0)).get(0));
+				}
+				assertThat(reader.isFinished()).isTrue();
+			}
+			assertThat(values).containsExactly(1L, 2L, 10L);
+			root.clear();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** An input stream which blocks until the latch is released. */
+	private static final class BlockingInputStream extends FilterInputStream {
+
+		private final CountDownLatch latch;
+
+		private BlockingInputStream(byte[] bytes, CountDownLatch latch) {
+			super(new ByteArrayInputStream(bytes));
+			this.latch = latch;
+		}
+
+		@Override
+		public int read() throws IOException {
+			await();
+			return super.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			await();
+			return super.read(b, off, len);
+		}
+
+		private void await() throws IOException {
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+	/** Writes one single row batch per value. */
+	private static byte[] stream(BufferAllocator allocator, long... values) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator);
+				ArrowStreamWriter writer = new ArrowStreamWriter(root, null, out)) {
+			writer.start();
+			BigIntVector vector = (BigIntVector) root.getVector(0);
+			for (long value : values) {
+				vector.setSafe(0, value);
+				root.setRowCount(1);
+				writer.writeBatch();
+			}
+			writer.end();
+		}
+		return out.toByteArray();
+	}
+}
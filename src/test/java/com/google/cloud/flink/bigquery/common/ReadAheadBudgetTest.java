@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+public class ReadAheadBudgetTest {
+
+	@Test
+	public void testMinimumBatchesAreAlwaysAllowed() {
+		ReadAheadBudget budget = new ReadAheadBudget(100, 2);
+		budget.add(1000);
+		assertThat(budget.hasRoom()).isTrue();
+		budget.add(1000);
+		assertThat(budget.hasRoom()).isFalse();
+	}
+
+	@Test
+	public void testSmallBatchesAreBufferedUpToTheBudget() {
+		ReadAheadBudget budget = new ReadAheadBudget(100, 1);
+		for (int i = 0; i < 9; i++) {
+			budget.add(10);
+		}
+		assertThat(budget.hasRoom()).isTrue();
+		budget.add(10);
+		assertThat(budget.hasRoom()).isFalse();
+		budget.release(10);
+		assertThat(budget.hasRoom()).isTrue();
+		assertThat(budget.getBufferedBytes()).isEqualTo(90);
+	}
+
+	@Test
+	public void testAwaitRoomBlocksUntilRelease() throws Exception {
+		ReadAheadBudget budget = new ReadAheadBudget(100, 1);
+		budget.add(200);
+		CompletableFuture<Void> waiter = CompletableFuture.runAsync(() -> {
+			try {
+				budget.awaitRoom();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		try {
+			waiter.get(100, TimeUnit.MILLISECONDS);
+			throw new AssertionError("Expected the reader to wait for room");
+		} catch (TimeoutException expected) {
+		}
+		budget.release(200);
+		waiter.get(10, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.fake;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.arrow.vector.ipc.WriteChannel;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.ipc.message.MessageSerializer;
+import org.apache.flink.table.types.logical.ArrayType;
+import org.apache.flink.table.types.logical.DecimalType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.RowType;
+
+import com.google.cloud.flink.bigquery.ArrowDecodeContext;
+import com.google.cloud.flink.bigquery.arrow.util.ArrowSchemaConverter;
+
+/**
+ * Generates serialized Arrow record batches of random, non-null values, in the
+ * same IPC format as the {@code ArrowRecordBatch} of a {@code ReadRowsResponse}.
+ */
+public final class ArrowBatches {
+
+	private static final int MAX_LIST_LENGTH = 4;
+	private static final int MAX_STRING_LENGTH = 64;
+
+	private ArrowBatches() {
+	}
+
+	/** Returns a record batch of the given number of rows, the same for the same seed. */
+	public static byte[] serializedBatch(RowType rowType, int rows, long seed) throws IOException {
+		Random random = new Random(seed);
+		try (BufferAllocator allocator = ArrowDecodeContext.newAllocator("benchmark-batch");
+				VectorSchemaRoot root = VectorSchemaRoot.create(ArrowSchemaConverter.convertToSchema(rowType),
+						allocator)) {
+			root.allocateNew();
+			for (int col = 0; col < rowType.getFieldCount(); col++) {
+				FieldVector vector = root.getVector(col);
+				for (int row = 0; row < rows; row++) {
+					setValue(vector, rowType.getTypeAt(col), row, random);
+				}
+			}
+			root.setRowCount(rows);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (ArrowRecordBatch batch = new VectorUnloader(root).getRecordBatch()) {
+				MessageSerializer.serialize(new WriteChannel(Channels.newChannel(out)), batch);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	/** Returns the Arrow IPC schema message of the given row type. */
+	public static byte[] serializedSchema(RowType rowType) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MessageSerializer.serialize(new WriteChannel(Channels.newChannel(out)),
+				ArrowSchemaConverter.convertToSchema(rowType));
+		return out.toByteArray();
+	}
+
+	private static void setValue(FieldVector vector, LogicalType type, int index, Random random) {
+		if (vector instanceof BigIntVector) {
+			((BigIntVector) vector).setSafe(index, random.nextLong());
+		} else if (vector instanceof IntVector) {
+			((IntVector) vector).setSafe(index, random.nextInt());
+		} else if (vector instanceof Float8Vector) {
+			((Float8Vector) vector).setSafe(index, random.nextDouble());
+		} else if (vector instanceof BitVector) {
+			((BitVector) vector).setSafe(index, random.nextBoolean() ? 1 : 0);
+		} else if (vector instanceof VarCharVector) {
+			((VarCharVector) vector).setSafe(index, randomString(random));
+		} else if (vector instanceof DecimalVector) {
+			((DecimalVector) vector).setSafe(index, randomDecimal((DecimalType) type, random));
+		} else if (vector instanceof DateDayVector) {
+			((DateDayVector) vector).setSafe(index, random.nextInt(50_000));
+		} else if (vector instanceof TimeMicroVector) {
+			((TimeMicroVector) vector).setSafe(index, Math.floorMod(random.nextLong(), 86_400_000_000L));
+		} else if (vector instanceof TimeStampVector) {
+			// microseconds between 1970 and 2100
+			((TimeStampVector) vector).setSafe(index, Math.floorMod(random.nextLong(), 4_102_444_800_000_000L));
+		} else if (vector instanceof ListVector) {
+			ListVector listVector = (ListVector) vector;
+			int offset = listVector.startNewValue(index);
+			int length = 1 + random.nextInt(MAX_LIST_LENGTH);
+			for (int i = 0; i < length; i++) {
+				setValue((FieldVector) listVector.getDataVector(), ((ArrayType) type).getElementType(), offset + i,
+						random);
+			}
+			listVector.endValue(index, length);
+		} else if (vector instanceof StructVector) {
+			StructVector structVector = (StructVector) vector;
+			RowType rowType = (RowType) type;
+			for (int i = 0; i < rowType.getFieldCount(); i++) {
+				setValue((FieldVector) structVector.getVectorById(i), rowType.getTypeAt(i), index, random);
+			}
+			structVector.setIndexDefined(index);
+		} else {
+			throw new UnsupportedOperationException("Unsupported benchmark type: " + type);
+		}
+	}
+
+	private static byte[] randomString(Random random) {
+		char[] chars = new char[1 + random.nextInt(MAX_STRING_LENGTH)];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(chars).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static BigDecimal randomDecimal(DecimalType type, Random random) {
+		long bound = BigInteger.TEN.pow(Math.min(type.getPrecision(), 18)).longValue();
+		return new BigDecimal(BigInteger.valueOf(Math.floorMod(random.nextLong(), bound)), type.getScale());
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.fake;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.flink.table.types.logical.RowType;
+
+import com.google.cloud.bigquery.storage.v1.ArrowRecordBatch;
+import com.google.cloud.bigquery.storage.v1.ArrowSchema;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadGrpc;
+import com.google.cloud.bigquery.storage.v1.CreateReadSessionRequest;
+import com.google.cloud.bigquery.storage.v1.DataFormat;
+import com.google.cloud.bigquery.storage.v1.ReadRowsRequest;
+import com.google.cloud.bigquery.storage.v1.ReadRowsResponse;
+import com.google.cloud.bigquery.storage.v1.ReadSession;
+import com.google.cloud.bigquery.storage.v1.ReadStream;
+import com.google.cloud.bigquery.storage.v1.SplitReadStreamRequest;
+import com.google.cloud.bigquery.storage.v1.SplitReadStreamResponse;
+import com.google.cloud.bigquery.storage.v1.StreamStats;
+import com.google.cloud.flink.bigquery.fake.FakeBigQueryStorageServer.FakeTable;
+import com.google.cloud.flink.bigquery.fake.FakeBigQueryStorageServer.InjectedError;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * The Storage Read API of the {@link FakeBigQueryStorageServer}. Streams are
+ * ranges of rows of a table, a split stream only keeps the rows before the
+ * split point.
+ */
+class FakeBigQueryReadService extends BigQueryReadGrpc.BigQueryReadImplBase {
+
+	private static final long SESSION_LIFETIME_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+	private final FakeBigQueryStorageServer server;
+	private final Map<String, FakeReadStream> streams = new ConcurrentHashMap<>();
+	private final AtomicInteger sessionIds = new AtomicInteger();
+	private final AtomicInteger streamIds = new AtomicInteger();
+
+	FakeBigQueryReadService(FakeBigQueryStorageServer server) {
+		this.server = server;
+	}
+
+	@Override
+	public void createReadSession(CreateReadSessionRequest request, StreamObserver<ReadSession> responseObserver) {
+		InjectedError error = server.startCall(BigQueryReadGrpc.getCreateReadSessionMethod());
+		if (error != null) {
+			responseObserver.onError(error.status.asRuntimeException());
+			return;
+		}
+		ReadSession requested = request.getReadSession();
+		FakeTable table = server.getTable(requested.getTable());
+		if (table == null) {
+			responseObserver.onError(
+					Status.NOT_FOUND.withDescription("Not found: Table " + requested.getTable()).asRuntimeException());
+			return;
+		}
+		if (requested.getDataFormat() == DataFormat.AVRO) {
+			responseObserver.onError(
+					Status.INVALID_ARGUMENT.withDescription("Only the Arrow format is served").asRuntimeException());
+			return;
+		}
+		RowType rowType;
+		ByteString schema;
+		try {
+			rowType = project(table.rowType, requested.getReadOptions().getSelectedFieldsList());
+			schema = ByteString.copyFrom(ArrowBatches.serializedSchema(rowType));
+		} catch (IllegalArgumentException | IOException e) {
+			responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+			return;
+		}
+
+		String sessionName = request.getParent() + "/locations/us/sessions/session-" + sessionIds.incrementAndGet();
+		int maxStreams = request.getMaxStreamCount() > 0
+				? Math.min(request.getMaxStreamCount(), server.getMaxStreams())
+				: server.getMaxStreams();
+		int numStreams = (int) Math.min(maxStreams, table.rows);
+		long expireTimeMillis = System.currentTimeMillis() + SESSION_LIFETIME_MILLIS;
+		ReadSession.Builder session = requested.toBuilder().setName(sessionName).setDataFormat(DataFormat.ARROW)
+				.setArrowSchema(ArrowSchema.newBuilder().setSerializedSchema(schema))
+				.setExpireTime(Timestamp.newBuilder().setSeconds(expireTimeMillis / 1000));
+		for (long rows : server.getStreamRows(table.rows, numStreams)) {
+			session.addStreams(ReadStream.newBuilder().setName(newStream(sessionName, table, rowType, rows, false)));
+		}
+		responseObserver.onNext(session.build());
+		responseObserver.onCompleted();
+	}
+
+	@Override
+	public void readRows(ReadRowsRequest request, StreamObserver<ReadRowsResponse> responseObserver) {
+		InjectedError error = server.startCall(BigQueryReadGrpc.getReadRowsMethod());
+		FakeReadStream stream = streams.get(request.getReadStream());
+		if (stream == null) {
+			responseObserver.onError(Status.NOT_FOUND.withDescription("Not found: Stream " + request.getReadStream())
+					.asRuntimeException());
+			return;
+		}
+		long offset = request.getOffset();
+		if (offset < 0 || offset > stream.rows) {
+			// reading a split stream past the split point fails like in the Storage Read API
+			Status status = stream.split ? Status.FAILED_PRECONDITION : Status.OUT_OF_RANGE;
+			responseObserver.onError(status.withDescription("Offset " + offset + " is out of range of "
+					+ request.getReadStream()).asRuntimeException());
+			return;
+		}
+		ServerCallStreamObserver<ReadRowsResponse> call = (ServerCallStreamObserver<ReadRowsResponse>) responseObserver;
+		long sentRows = 0;
+		try {
+			// a split truncates the stream while it is being read
+			while (offset < stream.rows) {
+				if (error != null && sentRows >= error.afterRows) {
+					call.onError(error.status.asRuntimeException());
+					return;
+				}
+				server.delayResponse();
+				if (!awaitReady(call)) {
+					return;
+				}
+				int numRows = (int) Math.min(server.getRowsPerResponse(), stream.rows - offset);
+				ByteString batch = stream.table.getBatch(stream.rowType, numRows);
+				call.onNext(ReadRowsResponse.newBuilder().setRowCount(numRows)
+						.setArrowRecordBatch(
+								ArrowRecordBatch.newBuilder().setSerializedRecordBatch(batch).setRowCount(numRows))
+						.setStats(StreamStats.newBuilder()
+								.setProgress(StreamStats.Progress.newBuilder()
+										.setAtResponseStart((double) offset / stream.rows)
+										.setAtResponseEnd((double) (offset + numRows) / stream.rows)))
+						.build());
+				offset += numRows;
+				sentRows += numRows;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			call.onError(Status.CANCELLED.withCause(e).asRuntimeException());
+			return;
+		}
+		if (error != null) {
+			call.onError(error.status.asRuntimeException());
+			return;
+		}
+		call.onCompleted();
+	}
+
+	@Override
+	public void splitReadStream(SplitReadStreamRequest request,
+			StreamObserver<SplitReadStreamResponse> responseObserver) {
+		InjectedError error = server.startCall(BigQueryReadGrpc.getSplitReadStreamMethod());
+		if (error != null) {
+			responseObserver.onError(error.status.asRuntimeException());
+			return;
+		}
+		FakeReadStream stream = streams.get(request.getName());
+		if (stream == null) {
+			responseObserver.onError(
+					Status.NOT_FOUND.withDescription("Not found: Stream " + request.getName()).asRuntimeException());
+			return;
+		}
+		if (request.getFraction() <= 0 || request.getFraction() >= 1) {
+			responseObserver.onError(Status.INVALID_ARGUMENT
+					.withDescription("Fraction must be between 0 and 1: " + request.getFraction()).asRuntimeException());
+			return;
+		}
+		SplitReadStreamResponse.Builder response = SplitReadStreamResponse.newBuilder();
+		synchronized (stream) {
+			long splitPoint = (long) (stream.rows * request.getFraction());
+			if (splitPoint > 0 && splitPoint < stream.rows) {
+				String sessionName = request.getName().substring(0, request.getName().indexOf("/streams/"));
+				long remainderRows = stream.rows - splitPoint;
+				stream.rows = splitPoint;
+				stream.split = true;
+				response.setPrimaryStream(ReadStream.newBuilder()
+						.setName(newStream(sessionName, stream.table, stream.rowType, splitPoint, true)));
+				response.setRemainderStream(ReadStream.newBuilder()
+						.setName(newStream(sessionName, stream.table, stream.rowType, remainderRows, false)));
+			}
+		}
+		responseObserver.onNext(response.build());
+		responseObserver.onCompleted();
+	}
+
+	private String newStream(String sessionName, FakeTable table, RowType rowType, long rows, boolean split) {
+		String name = sessionName + "/streams/stream-" + streamIds.incrementAndGet();
+		FakeReadStream stream = new FakeReadStream(table, rowType, rows);
+		stream.split = split;
+		streams.put(name, stream);
+		return name;
+	}
+
+	/** Waits until the client can take another response, returns false if it cancelled the call. */
+	private static boolean awaitReady(ServerCallStreamObserver<?> call) throws InterruptedException {
+		// the onReady callback is not delivered while this call blocks, so poll
+		while (!call.isReady()) {
+			if (call.isCancelled()) {
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return !call.isCancelled();
+	}
+
+	/** The top level fields of the table which are selected, in the order of the table. */
+	private static RowType project(RowType rowType, List<String> selectedFields) {
+		if (selectedFields.isEmpty()) {
+			return rowType;
+		}
+		Set<String> names = new LinkedHashSet<>();
+		for (String field : selectedFields) {
+			// nested fields select their top level field
+			String name = field.contains(".") ? field.substring(0, field.indexOf('.')) : field;
+			if (!rowType.getFieldNames().contains(name)) {
+				throw new IllegalArgumentException("Field " + field + " is not in the table");
+			}
+			names.add(name);
+		}
+		List<RowType.RowField> fields = new ArrayList<>(names.size());
+		for (RowType.RowField field : rowType.getFields()) {
+			if (names.contains(field.getName())) {
+				fields.add(field);
+			}
+		}
+		return new RowType(fields);
+	}
+
+	private static final class FakeReadStream {
+		final FakeTable table;
+		final RowType rowType;
+		volatile long rows;
+		volatile boolean split;
+
+		FakeReadStream(FakeTable table, RowType rowType, long rows) {
+			this.table = table;
+			this.rowType = rowType;
+			this.rows = rows;
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.fake;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.flink.table.types.logical.RowType;
+
+import com.google.cloud.bigquery.storage.v1.TableName;
+import com.google.cloud.flink.bigquery.FlinkBigQueryGrpcConfig;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+
+/**
+ * A local stand-in for the BigQuery Storage Read and Write APIs, serving
+ * tables of generated Arrow data on a plaintext localhost port. A connector
+ * reads from it with the options
+ *
+ * <pre>
+ * bqStorageReadEndpoint = server.getEndpoint()
+ * bqStorageReadPlaintext = true
+ * </pre>
+ *
+ * <p>
+ * The latency of every response, the skew of the row counts of the streams of
+ * a session and errors of the next calls can be configured, so scaling and
+ * failure recovery can be measured reproducibly. Row restrictions are ignored,
+ * and written rows are only counted.
+ */
+public class FakeBigQueryStorageServer implements AutoCloseable {
+
+	private final Map<String, FakeTable> tables = new ConcurrentHashMap<>();
+	private final Map<String, Deque<InjectedError>> injectedErrors = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> callCounts = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> writtenRows = new ConcurrentHashMap<>();
+
+	private volatile int maxStreams = 16;
+	private volatile int rowsPerResponse = 1024;
+	private volatile double streamSkew = 1;
+	private volatile long responseLatencyMillis;
+
+	private Server server;
+
+	/** Adds a table of the given number of rows of generated values. */
+	public FakeBigQueryStorageServer addTable(String project, String dataset, String table, RowType rowType,
+			long rows) {
+		tables.put(TableName.of(project, dataset, table).toString(), new FakeTable(rowType, rows));
+		return this;
+	}
+
+	/** The most streams of a session, even if the client asks for more. */
+	public FakeBigQueryStorageServer setMaxStreams(int maxStreams) {
+		this.maxStreams = maxStreams;
+		return this;
+	}
+
+	/** The rows of every ReadRows response but the last one of a stream. */
+	public FakeBigQueryStorageServer setRowsPerResponse(int rowsPerResponse) {
+		this.rowsPerResponse = rowsPerResponse;
+		return this;
+	}
+
+	/**
+	 * The ratio of the rows of the first to the rows of the last stream of a
+	 * session, the row counts of the streams in between decrease linearly. 1 means
+	 * all streams have the same number of rows.
+	 */
+	public FakeBigQueryStorageServer setStreamSkew(double streamSkew) {
+		this.streamSkew = streamSkew;
+		return this;
+	}
+
+	/** Delays every ReadRows and AppendRows response. */
+	public FakeBigQueryStorageServer setResponseLatencyMillis(long responseLatencyMillis) {
+		this.responseLatencyMillis = responseLatencyMillis;
+		return this;
+	}
+
+	/** Fails the next {@code times} calls of the method with the status. */
+	public FakeBigQueryStorageServer injectErrors(MethodDescriptor<?, ?> method, Status status, int times) {
+		return injectErrors(method, status, times, 0);
+	}
+
+	/**
+	 * Fails the next {@code times} calls of a streaming method with the status,
+	 * after each of them sent {@code afterRows} rows.
+	 */
+	public FakeBigQueryStorageServer injectErrors(MethodDescriptor<?, ?> method, Status status, int times,
+			long afterRows) {
+		Deque<InjectedError> errors = injectedErrors.computeIfAbsent(method.getFullMethodName(),
+				name -> new ArrayDeque<>());
+		synchronized (errors) {
+			for (int i = 0; i < times; i++) {
+				errors.add(new InjectedError(status, afterRows));
+			}
+		}
+		return this;
+	}
+
+	/** Starts serving on a free port. */
+	public FakeBigQueryStorageServer start() throws IOException {
+		server = NettyServerBuilder.forAddress(new InetSocketAddress("localhost", 0))
+				.addService(new FakeBigQueryReadService(this)).addService(new FakeBigQueryWriteService(this)).build()
+				.start();
+		return this;
+	}
+
+	/** The value of the {@code bqStorageReadEndpoint} option. */
+	public String getEndpoint() {
+		return "localhost:" + server.getPort();
+	}
+
+	/** The options of a source reading the table from this server. */
+	public Map<String, String> getSourceOptions(String project, String dataset, String table) {
+		Map<String, String> options = new HashMap<>();
+		options.put("projectId", project);
+		options.put("parentProject", project);
+		options.put("dataset", dataset);
+		options.put("table", table);
+		options.put("defaultParallelism", "1");
+		options.put("flinkVersion", "1.13.1");
+		options.put("bqStorageReadEndpoint", getEndpoint());
+		options.put(FlinkBigQueryGrpcConfig.PLAINTEXT_OPTION, "true");
+		return options;
+	}
+
+	/** How many times the method was called, including the failed calls. */
+	public long getCallCount(MethodDescriptor<?, ?> method) {
+		AtomicLong count = callCounts.get(method.getFullMethodName());
+		return count == null ? 0 : count.get();
+	}
+
+	/** The rows written to the table which are committed. */
+	public long getWrittenRows(String project, String dataset, String table) {
+		AtomicLong rows = writtenRows.get(TableName.of(project, dataset, table).toString());
+		return rows == null ? 0 : rows.get();
+	}
+
+	@Override
+	public void close() throws InterruptedException {
+		if (server != null) {
+			server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
+	FakeTable getTable(String tablePath) {
+		return tables.get(tablePath);
+	}
+
+	int getMaxStreams() {
+		return maxStreams;
+	}
+
+	int getRowsPerResponse() {
+		return rowsPerResponse;
+	}
+
+	long getResponseLatencyMillis() {
+		return responseLatencyMillis;
+	}
+
+	/** Counts the call and returns the error it has to fail with, or null. */
+	InjectedError startCall(MethodDescriptor<?, ?> method) {
+		callCounts.computeIfAbsent(method.getFullMethodName(), name -> new AtomicLong()).incrementAndGet();
+		Deque<InjectedError> errors = injectedErrors.get(method.getFullMethodName());
+		if (errors == null) {
+			return null;
+		}
+		synchronized (errors) {
+			return errors.poll();
+		}
+	}
+
+	void addWrittenRows(String tablePath, long rows) {
+		writtenRows.computeIfAbsent(tablePath, path -> new AtomicLong()).addAndGet(rows);
+	}
+
+	/** Splits the rows of the table over the streams of a session, according to the skew. */
+	List<Long> getStreamRows(long rows, int streams) {
+		List<Long> streamRows = new ArrayList<>(streams);
+		double[] weights = new double[streams];
+		double totalWeight = 0;
+		for (int i = 0; i < streams; i++) {
+			weights[i] = streams == 1 ? 1 : streamSkew + (1 - streamSkew) * i / (streams - 1);
+			totalWeight += weights[i];
+		}
+		long assigned = 0;
+		for (int i = 0; i < streams; i++) {
+			long count = (long) (rows * weights[i] / totalWeight);
+			streamRows.add(count);
+			assigned += count;
+		}
+		// rounding leftovers go to the first streams
+		for (int i = 0; assigned < rows; i = (i + 1) % streams) {
+			streamRows.set(i, streamRows.get(i) + 1);
+			assigned++;
+		}
+		return streamRows;
+	}
+
+	/** Waits for the configured response latency. */
+	void delayResponse() throws InterruptedException {
+		long latency = responseLatencyMillis;
+		if (latency > 0) {
+			Thread.sleep(latency);
+		}
+	}
+
+	static final class InjectedError {
+		final Status status;
+		final long afterRows;
+
+		InjectedError(Status status, long afterRows) {
+			this.status = status;
+			this.afterRows = afterRows;
+		}
+	}
+
+	/**
+	 * A table of generated rows. Batches are generated once per schema and size
+	 * and served over and over, so the server hardly costs any CPU.
+	 */
+	static final class FakeTable {
+		final RowType rowType;
+		final long rows;
+		private final Map<String, ByteString> batches = new ConcurrentHashMap<>();
+
+		FakeTable(RowType rowType, long rows) {
+			this.rowType = rowType;
+			this.rows = rows;
+		}
+
+		ByteString getBatch(RowType projectedType, int numRows) {
+			return batches.computeIfAbsent(projectedType.asSerializableString() + "/" + numRows, key -> {
+				try {
+					return UnsafeByteOperations
+							.unsafeWrap(ArrowBatches.serializedBatch(projectedType, numRows, numRows));
+				} catch (IOException e) {
+					throw new IllegalStateException("Could not generate a record batch of " + projectedType, e);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.fake;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.flink.api.common.functions.util.ListCollector;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.runtime.typeutils.InternalTypeInfo;
+import org.apache.flink.table.types.logical.BigIntType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.VarCharType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
+import com.google.api.gax.rpc.BidiStream;
+import com.google.api.gax.rpc.FailedPreconditionException;
+import com.google.cloud.bigquery.storage.v1.AppendRowsRequest;
+import com.google.cloud.bigquery.storage.v1.AppendRowsResponse;
+import com.google.cloud.bigquery.storage.v1.BatchCommitWriteStreamsRequest;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadGrpc;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteClient;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteSettings;
+import com.google.cloud.bigquery.storage.v1.CreateReadSessionRequest;
+import com.google.cloud.bigquery.storage.v1.DataFormat;
+import com.google.cloud.bigquery.storage.v1.ProtoRows;
+import com.google.cloud.bigquery.storage.v1.ReadRowsRequest;
+import com.google.cloud.bigquery.storage.v1.ReadRowsResponse;
+import com.google.cloud.bigquery.storage.v1.ReadSession;
+import com.google.cloud.bigquery.storage.v1.SplitReadStreamRequest;
+import com.google.cloud.bigquery.storage.v1.SplitReadStreamResponse;
+import com.google.cloud.bigquery.storage.v1.TableName;
+import com.google.cloud.bigquery.storage.v1.WriteStream;
+import com.google.cloud.flink.bigquery.ArrowRowDataDeserializationSchema;
+import com.google.cloud.flink.bigquery.BigQueryReadSession;
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+
+public class FakeBigQueryStorageServerTest {
+
+	private static final RowType ROW_TYPE = RowType.of(
+			new LogicalType[] { new BigIntType(), new VarCharType(VarCharType.MAX_LENGTH) },
+			new String[] { "id", "name" });
+	private static final String TABLE = TableName.of("project", "dataset", "table").toString();
+
+	private FakeBigQueryStorageServer server;
+	private BigQueryReadClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new FakeBigQueryStorageServer().addTable("project", "dataset", "table", ROW_TYPE, 10_000)
+				.setMaxStreams(4).setRowsPerResponse(1000).start();
+		client = BigQueryReadSession.createReadClient(server.getSourceOptions("project", "dataset", "table"));
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void testSessionStreamsAreSkewed() throws IOException {
+		server.addTable("project", "dataset", "skewed", ROW_TYPE, 12_000).setStreamSkew(3);
+		ReadSession session = createReadSession(TableName.of("project", "dataset", "skewed").toString(), 10);
+
+		assertThat(session.getStreamsCount()).isEqualTo(4);
+		List<Long> streamRows = new ArrayList<>();
+		for (int i = 0; i < session.getStreamsCount(); i++) {
+			streamRows.add(readRows(session.getStreams(i).getName(), 0));
+		}
+		assertThat(streamRows).containsExactly(4500L, 3500L, 2500L, 1500L).inOrder();
+	}
+
+	@Test
+	public void testReadRowsResumesAfterAnInjectedError() throws IOException {
+		ReadSession session = createReadSession(TABLE, 1);
+		server.injectErrors(BigQueryReadGrpc.getReadRowsMethod(), Status.UNAVAILABLE, 1, 3000);
+
+		assertThat(readRows(session.getStreams(0).getName(), 0)).isEqualTo(10_000);
+		assertThat(server.getCallCount(BigQueryReadGrpc.getReadRowsMethod())).isEqualTo(2);
+	}
+
+	@Test
+	public void testSplitStreamKeepsTheRowsBeforeTheSplitPoint() throws IOException {
+		String streamName = createReadSession(TABLE, 1).getStreams(0).getName();
+		SplitReadStreamResponse split = client
+				.splitReadStream(SplitReadStreamRequest.newBuilder().setName(streamName).setFraction(0.3).build());
+
+		assertThat(readRows(split.getPrimaryStream().getName(), 0)).isEqualTo(3000);
+		assertThat(readRows(split.getRemainderStream().getName(), 0)).isEqualTo(7000);
+		assertThrows(FailedPreconditionException.class, () -> readRows(split.getPrimaryStream().getName(), 5000));
+	}
+
+	@Test
+	public void testPendingStreamRowsAreWrittenOnCommit() throws IOException {
+		BigQueryWriteSettings settings = BigQueryWriteSettings.newBuilder()
+				.setCredentialsProvider(NoCredentialsProvider.create())
+				.setTransportChannelProvider(InstantiatingGrpcChannelProvider.newBuilder()
+						.setEndpoint(server.getEndpoint()).setChannelConfigurator(ManagedChannelBuilder::usePlaintext)
+						.build())
+				.build();
+		try (BigQueryWriteClient writeClient = BigQueryWriteClient.create(settings)) {
+			WriteStream stream = writeClient.createWriteStream(TABLE,
+					WriteStream.newBuilder().setType(WriteStream.Type.PENDING).build());
+			ProtoRows rows = ProtoRows.newBuilder().addSerializedRows(ByteString.copyFromUtf8("first"))
+					.addSerializedRows(ByteString.copyFromUtf8("second")).build();
+			BidiStream<AppendRowsRequest, AppendRowsResponse> append = writeClient.appendRowsCallable().call();
+			for (int i = 0; i < 3; i++) {
+				append.send(AppendRowsRequest.newBuilder().setWriteStream(stream.getName())
+						.setProtoRows(AppendRowsRequest.ProtoData.newBuilder().setRows(rows)).build());
+			}
+			append.closeSend();
+			List<Long> offsets = new ArrayList<>();
+			for (AppendRowsResponse response : append) {
+				offsets.add(response.getAppendResult().getOffset().getValue());
+			}
+			assertThat(offsets).containsExactly(0L, 2L, 4L).inOrder();
+
+			assertThat(writeClient.finalizeWriteStream(stream.getName()).getRowCount()).isEqualTo(6);
+			assertThat(server.getWrittenRows("project", "dataset", "table")).isEqualTo(0);
+			writeClient.batchCommitWriteStreams(BatchCommitWriteStreamsRequest.newBuilder().setParent(TABLE)
+					.addWriteStreams(stream.getName()).build());
+			assertThat(server.getWrittenRows("project", "dataset", "table")).isEqualTo(6);
+		}
+	}
+
+	private ReadSession createReadSession(String table, int maxStreams) {
+		return client.createReadSession(CreateReadSessionRequest.newBuilder().setParent("projects/project")
+				.setReadSession(ReadSession.newBuilder().setTable(table).setDataFormat(DataFormat.ARROW))
+				.setMaxStreamCount(maxStreams).build());
+	}
+
+	/** Reads and decodes the stream from the offset, returns the number of rows. */
+	private long readRows(String streamName, long offset) throws IOException {
+		ArrowRowDataDeserializationSchema deserializer = new ArrowRowDataDeserializationSchema(ROW_TYPE,
+				InternalTypeInfo.of(ROW_TYPE));
+		List<RowData> rows = new ArrayList<>();
+		for (ReadRowsResponse response : client.readRowsCallable()
+				.call(ReadRowsRequest.newBuilder().setReadStream(streamName).setOffset(offset).build())) {
+			deserializer.deserialize(response.getArrowRecordBatch().getSerializedRecordBatch(),
+					new ListCollector<>(rows));
+		}
+		deserializer.close();
+		return rows.size();
+	}
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.fake;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.cloud.bigquery.storage.v1.AppendRowsRequest;
+import com.google.cloud.bigquery.storage.v1.AppendRowsResponse;
+import com.google.cloud.bigquery.storage.v1.BatchCommitWriteStreamsRequest;
+import com.google.cloud.bigquery.storage.v1.BatchCommitWriteStreamsResponse;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteGrpc;
+import com.google.cloud.bigquery.storage.v1.CreateWriteStreamRequest;
+import com.google.cloud.bigquery.storage.v1.FinalizeWriteStreamRequest;
+import com.google.cloud.bigquery.storage.v1.FinalizeWriteStreamResponse;
+import com.google.cloud.bigquery.storage.v1.FlushRowsRequest;
+import com.google.cloud.bigquery.storage.v1.FlushRowsResponse;
+import com.google.cloud.bigquery.storage.v1.GetWriteStreamRequest;
+import com.google.cloud.bigquery.storage.v1.WriteStream;
+import com.google.cloud.flink.bigquery.fake.FakeBigQueryStorageServer.InjectedError;
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.Timestamp;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * The Storage Write API of the {@link FakeBigQueryStorageServer}. Appended
+ * rows are only counted, and become written rows of the table when a COMMITTED
+ * stream receives them, a PENDING stream is committed or a BUFFERED stream is
+ * flushed. Every table has a "_default" stream, which is a COMMITTED stream.
+ */
+class FakeBigQueryWriteService extends BigQueryWriteGrpc.BigQueryWriteImplBase {
+
+	private static final String DEFAULT_STREAM = "/streams/_default";
+
+	private final FakeBigQueryStorageServer server;
+	private final Map<String, FakeWriteStream> streams = new ConcurrentHashMap<>();
+	private final AtomicInteger streamIds = new AtomicInteger();
+
+	FakeBigQueryWriteService(FakeBigQueryStorageServer server) {
+		this.server = server;
+	}
+
+	@Override
+	public void createWriteStream(CreateWriteStreamRequest request, StreamObserver<WriteStream> responseObserver) {
+		InjectedError error = server.startCall(BigQueryWriteGrpc.getCreateWriteStreamMethod());
+		if (error != null) {
+			responseObserver.onError(error.status.asRuntimeException());
+			return;
+		}
+		if (server.getTable(request.getParent()) == null) {
+			responseObserver.onError(
+					Status.NOT_FOUND.withDescription("Not found: Table " + request.getParent()).asRuntimeException());
+			return;
+		}
+		WriteStream.Type type = request.getWriteStream().getType();
+		if (type != WriteStream.Type.COMMITTED && type != WriteStream.Type.PENDING
+				&& type != WriteStream.Type.BUFFERED) {
+			responseObserver.onError(
+					Status.INVALID_ARGUMENT.withDescription("Unsupported stream type " + type).asRuntimeException());
+			return;
+		}
+		String name = request.getParent() + "/streams/stream-" + streamIds.incrementAndGet();
+		FakeWriteStream stream = new FakeWriteStream(request.getParent(), request.getWriteStream().toBuilder()
+				.setName(name).setCreateTime(now()).build());
+		streams.put(name, stream);
+		responseObserver.onNext(stream.writeStream);
+		responseObserver.onCompleted();
+	}
+
+	@Override
+	public StreamObserver<AppendRowsRequest> appendRows(StreamObserver<AppendRowsResponse> responseObserver) {
+		InjectedError error = server.startCall(BigQueryWriteGrpc.getAppendRowsMethod());
+		return new StreamObserver<AppendRowsRequest>() {
+
+			private String streamName;
+			private long appendedRows;
+			private boolean failed;
+
+			@Override
+			public void onNext(AppendRowsRequest request) {
+				if (failed) {
+					return;
+				}
+				if (!request.getWriteStream().isEmpty()) {
+					streamName = request.getWriteStream();
+				}
+				try {
+					if (error != null && appendedRows >= error.afterRows) {
+						throw error.status.asRuntimeException();
+					}
+					server.delayResponse();
+					long rows = request.getProtoRows().getRows().getSerializedRowsCount();
+					long offset = getStream(streamName).append(request, rows);
+					appendedRows += rows;
+					responseObserver.onNext(AppendRowsResponse.newBuilder()
+							.setAppendResult(AppendRowsResponse.AppendResult.newBuilder()
+									.setOffset(Int64Value.of(offset)))
+							.build());
+				} catch (StatusRuntimeException e) {
+					failed = true;
+					responseObserver.onError(e);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					failed = true;
+					responseObserver.onError(Status.CANCELLED.withCause(e).asRuntimeException());
+				}
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				failed = true;
+			}
+
+			@Override
+			public void onCompleted() {
+				if (!failed) {
+					responseObserver.onCompleted();
+				}
+			}
+		};
+	}
+
+	@Override
+	public void getWriteStream(GetWriteStreamRequest request, StreamObserver<WriteStream> responseObserver) {
+		InjectedError error = server.startCall(BigQueryWriteGrpc.getGetWriteStreamMethod());
+		try {
+			if (error != null) {
+				throw error.status.asRuntimeException();
+			}
+			responseObserver.onNext(getStream(request.getName()).writeStream);
+			responseObserver.onCompleted();
+		} catch (StatusRuntimeException e) {
+			responseObserver.onError(e);
+		}
+	}
+
+	@Override
+	public void finalizeWriteStream(FinalizeWriteStreamRequest request,
+			StreamObserver<FinalizeWriteStreamResponse> responseObserver) {
+		InjectedError error = server.startCall(BigQueryWriteGrpc.getFinalizeWriteStreamMethod());
+		try {
+			if (error != null) {
+				throw error.status.asRuntimeException();
+			}
+			FakeWriteStream stream = getStream(request.getName());
+			if (request.getName().endsWith(DEFAULT_STREAM)) {
+				throw Status.INVALID_ARGUMENT.withDescription("The default stream can not be finalized")
+						.asRuntimeException();
+			}
+			responseObserver.onNext(FinalizeWriteStreamResponse.newBuilder().setRowCount(stream.finalizeStream())
+					.build());
+			responseObserver.onCompleted();
+		} catch (StatusRuntimeException e) {
+			responseObserver.onError(e);
+		}
+	}
+
+	@Override
+	public void batchCommitWriteStreams(BatchCommitWriteStreamsRequest request,
+			StreamObserver<BatchCommitWriteStreamsResponse> responseObserver) {
+		InjectedError error = server.startCall(BigQueryWriteGrpc.getBatchCommitWriteStreamsMethod());
+		try {
+			if (error != null) {
+				throw error.status.asRuntimeException();
+			}
+			for (String name : request.getWriteStreamsList()) {
+				getStream(name).checkCommittable(request.getParent());
+			}
+			for (String name : request.getWriteStreamsList()) {
+				FakeWriteStream stream = getStream(name);
+				server.addWrittenRows(stream.tablePath, stream.commit());
+			}
+			responseObserver.onNext(BatchCommitWriteStreamsResponse.newBuilder().setCommitTime(now()).build());
+			responseObserver.onCompleted();
+		} catch (StatusRuntimeException e) {
+			responseObserver.onError(e);
+		}
+	}
+
+	@Override
+	public void flushRows(FlushRowsRequest request, StreamObserver<FlushRowsResponse> responseObserver) {
+		InjectedError error = server.startCall(BigQueryWriteGrpc.getFlushRowsMethod());
+		try {
+			if (error != null) {
+				throw error.status.asRuntimeException();
+			}
+			FakeWriteStream stream = getStream(request.getWriteStream());
+			long offset = request.getOffset().getValue();
+			server.addWrittenRows(stream.tablePath, stream.flush(offset));
+			responseObserver.onNext(FlushRowsResponse.newBuilder().setOffset(offset).build());
+			responseObserver.onCompleted();
+		} catch (StatusRuntimeException e) {
+			responseObserver.onError(e);
+		}
+	}
+
+	private FakeWriteStream getStream(String name) {
+		if (name != null && name.endsWith(DEFAULT_STREAM)) {
+			String tablePath = name.substring(0, name.length() - DEFAULT_STREAM.length());
+			if (server.getTable(tablePath) != null) {
+				return streams.computeIfAbsent(name, defaultStream -> new FakeWriteStream(tablePath, WriteStream
+						.newBuilder().setName(defaultStream).setType(WriteStream.Type.COMMITTED).build()));
+			}
+		}
+		FakeWriteStream stream = name == null ? null : streams.get(name);
+		if (stream == null) {
+			throw Status.NOT_FOUND.withDescription("Not found: Stream " + name).asRuntimeException();
+		}
+		return stream;
+	}
+
+	private static Timestamp now() {
+		long millis = System.currentTimeMillis();
+		return Timestamp.newBuilder().setSeconds(millis / 1000).setNanos((int) (millis % 1000) * 1_000_000).build();
+	}
+
+	private final class FakeWriteStream {
+		final String tablePath;
+		final WriteStream writeStream;
+		private long rows;
+		private long flushedRows;
+		private boolean finalized;
+		private boolean committed;
+
+		FakeWriteStream(String tablePath, WriteStream writeStream) {
+			this.tablePath = tablePath;
+			this.writeStream = writeStream;
+		}
+
+		/** Appends the rows at the offset of the request, returns the offset they were appended at. */
+		synchronized long append(AppendRowsRequest request, long numRows) {
+			if (finalized) {
+				throw Status.FAILED_PRECONDITION.withDescription(writeStream.getName() + " is finalized")
+						.asRuntimeException();
+			}
+			if (request.hasOffset() && request.getOffset().getValue() != rows) {
+				Status status = request.getOffset().getValue() < rows ? Status.ALREADY_EXISTS : Status.OUT_OF_RANGE;
+				throw status.withDescription("Offset " + request.getOffset().getValue() + " of "
+						+ writeStream.getName() + " is not its end " + rows).asRuntimeException();
+			}
+			long offset = rows;
+			rows += numRows;
+			if (writeStream.getType() == WriteStream.Type.COMMITTED) {
+				server.addWrittenRows(tablePath, numRows);
+			}
+			return offset;
+		}
+
+		synchronized long finalizeStream() {
+			finalized = true;
+			return rows;
+		}
+
+		synchronized void checkCommittable(String tablePath) {
+			if (!this.tablePath.equals(tablePath) || writeStream.getType() != WriteStream.Type.PENDING) {
+				throw Status.INVALID_ARGUMENT
+						.withDescription(writeStream.getName() + " is not a PENDING stream of " + tablePath)
+						.asRuntimeException();
+			}
+			if (!finalized || committed) {
+				throw Status.FAILED_PRECONDITION
+						.withDescription(writeStream.getName() + " is not finalized or already committed")
+						.asRuntimeException();
+			}
+		}
+
+		/** Returns the rows which are committed. */
+		synchronized long commit() {
+			committed = true;
+			return rows;
+		}
+
+		/** Flushes the rows up to the offset, returns how many of them were not flushed before. */
+		synchronized long flush(long offset) {
+			if (writeStream.getType() != WriteStream.Type.BUFFERED) {
+				throw Status.INVALID_ARGUMENT.withDescription(writeStream.getName() + " is not a BUFFERED stream")
+						.asRuntimeException();
+			}
+			if (offset >= rows) {
+				throw Status.OUT_OF_RANGE.withDescription("Offset " + offset + " of " + writeStream.getName()
+						+ " was not appended yet").asRuntimeException();
+			}
+			long newlyFlushed = Math.max(0, offset + 1 - flushedRows);
+			flushedRows = Math.max(flushedRows, offset + 1);
+			return newlyFlushed;
+		}
+	}
+}
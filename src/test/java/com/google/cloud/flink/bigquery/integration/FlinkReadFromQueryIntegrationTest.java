@@ -43,7 +43,6 @@ public class FlinkReadFromQueryIntegrationTest extends FlinkBigQueryIntegrationT
 
 		this.bq = BigQueryOptions.getDefaultInstance().getService();
 		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
-		env.setParallelism(1); // source only supports parallelism of 1
 		flinkTableEnv = StreamTableEnvironment.create(env);
 	}
 
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.apache.flink.api.connector.source.ReaderInfo;
+import org.apache.flink.api.connector.source.SourceEvent;
+import org.apache.flink.api.connector.source.SourceReader;
+import org.apache.flink.api.connector.source.SplitEnumerator;
+import org.apache.flink.api.connector.source.SplitEnumeratorContext;
+import org.apache.flink.api.connector.source.SplitsAssignment;
+import org.apache.flink.core.io.InputStatus;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.runtime.typeutils.InternalTypeInfo;
+import org.apache.flink.table.types.logical.BigIntType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.VarCharType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.cloud.bigquery.storage.v1.BigQueryReadGrpc;
+import com.google.cloud.flink.bigquery.ArrowRowDataDeserializationSchema;
+import com.google.cloud.flink.bigquery.fake.FakeBigQueryStorageServer;
+import com.google.cloud.flink.bigquery.source.enumerator.BigQuerySourceEnumState;
+import com.google.cloud.flink.bigquery.source.reader.CountingReaderOutput;
+import com.google.cloud.flink.bigquery.source.reader.TestingReaderContext;
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+
+/**
+ * Runs the enumerator and the readers of a {@link BigQuerySource} against a
+ * {@link FakeBigQueryStorageServer}, passing their requests and events in the
+ * test thread like the mailboxes of a Flink job do.
+ */
+public class BigQuerySourceTest {
+
+	private static final RowType ROW_TYPE = RowType.of(
+			new LogicalType[] { new BigIntType(), new VarCharType(VarCharType.MAX_LENGTH) },
+			new String[] { "id", "name" });
+	private static final int PARALLELISM = 2;
+
+	private FakeBigQueryStorageServer server;
+	private Map<String, String> options;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new FakeBigQueryStorageServer().addTable("project", "dataset", "table", ROW_TYPE, 10_000)
+				.setMaxStreams(4).setStreamSkew(2).setRowsPerResponse(500).start();
+		options = server.getSourceOptions("project", "dataset", "table");
+		options.put("maxParallelism", "4");
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		server.close();
+	}
+
+	@Test
+	public void testReadersReadAllStreamsOfTheEnumeratorsSession() throws Exception {
+		BigQuerySource source = new BigQuerySource(
+				new ArrowRowDataDeserializationSchema(ROW_TYPE, InternalTypeInfo.of(ROW_TYPE)), options);
+		TestingEnumeratorContext enumContext = new TestingEnumeratorContext();
+		SplitEnumerator<BigQuerySourceSplit, BigQuerySourceEnumState> enumerator = source
+				.createEnumerator(enumContext);
+		List<TestingReaderContext> readerContexts = new ArrayList<>();
+		List<CountingReaderOutput> outputs = new ArrayList<>();
+		try {
+			enumerator.start();
+			for (int subtaskId = 0; subtaskId < PARALLELISM; subtaskId++) {
+				TestingReaderContext readerContext = new TestingReaderContext(subtaskId);
+				readerContexts.add(readerContext);
+				outputs.add(new CountingReaderOutput());
+				enumContext.readers.add(source.createReader(readerContext));
+				enumContext.registeredReaders.put(subtaskId, new ReaderInfo(subtaskId, "localhost"));
+				enumerator.addReader(subtaskId);
+				enumContext.readers.get(subtaskId).start();
+			}
+			runUntilEndOfInput(enumerator, enumContext, readerContexts, outputs);
+		} finally {
+			for (SourceReader<RowData, BigQuerySourceSplit> reader : enumContext.readers) {
+				reader.close();
+			}
+			enumerator.close();
+		}
+		long rows = 0;
+		for (CountingReaderOutput output : outputs) {
+			// both readers got a stream of the session
+			assertThat(output.getRows()).isGreaterThan(0L);
+			rows += output.getRows();
+		}
+		assertThat(rows).isEqualTo(10_000);
+		assertThat(server.getCallCount(BigQueryReadGrpc.getCreateReadSessionMethod())).isEqualTo(1);
+	}
+
+	/** Polls the readers and passes messages between them and the enumerator until all readers are done. */
+	private static void runUntilEndOfInput(SplitEnumerator<BigQuerySourceSplit, BigQuerySourceEnumState> enumerator,
+			TestingEnumeratorContext enumContext, List<TestingReaderContext> readerContexts,
+			List<CountingReaderOutput> outputs) throws Exception {
+		boolean[] finished = new boolean[PARALLELISM];
+		int finishedReaders = 0;
+		while (finishedReaders < PARALLELISM) {
+			boolean progressed = false;
+			for (int subtaskId = 0; subtaskId < PARALLELISM; subtaskId++) {
+				TestingReaderContext readerContext = readerContexts.get(subtaskId);
+				for (int requests = readerContext.takeSplitRequests(); requests > 0; requests--) {
+					enumerator.handleSplitRequest(subtaskId, "localhost");
+					progressed = true;
+				}
+				for (SourceEvent event : readerContext.takeSentEvents()) {
+					enumerator.handleSourceEvent(subtaskId, event);
+					progressed = true;
+				}
+			}
+			progressed |= enumContext.deliverMessages();
+			List<CompletableFuture<?>> available = new ArrayList<>();
+			for (int subtaskId = 0; subtaskId < PARALLELISM; subtaskId++) {
+				if (finished[subtaskId]) {
+					continue;
+				}
+				SourceReader<RowData, BigQuerySourceSplit> reader = enumContext.readers.get(subtaskId);
+				InputStatus status = reader.pollNext(outputs.get(subtaskId));
+				if (status == InputStatus.END_OF_INPUT) {
+					finished[subtaskId] = true;
+					finishedReaders++;
+					progressed = true;
+				} else if (status == InputStatus.MORE_AVAILABLE) {
+					progressed = true;
+				} else {
+					available.add(reader.isAvailable());
+				}
+			}
+			if (!progressed && !available.isEmpty()) {
+				CompletableFuture.anyOf(available.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+			}
+		}
+	}
+
+	/** Queues the messages of the enumerator until the test delivers them to the readers. */
+	private static class TestingEnumeratorContext implements SplitEnumeratorContext<BigQuerySourceSplit> {
+
+		private final List<SourceReader<RowData, BigQuerySourceSplit>> readers = new ArrayList<>();
+		private final Map<Integer, ReaderInfo> registeredReaders = new HashMap<>();
+		private final Queue<Runnable> messages = new ArrayDeque<>();
+
+		/** Delivers the queued messages, returns false if there were none. */
+		boolean deliverMessages() {
+			boolean delivered = !messages.isEmpty();
+			Runnable message;
+			while ((message = messages.poll()) != null) {
+				message.run();
+			}
+			return delivered;
+		}
+
+		@Override
+		public MetricGroup metricGroup() {
+			return new UnregisteredMetricsGroup();
+		}
+
+		@Override
+		public void sendEventToSourceReader(int subtaskId, SourceEvent event) {
+			messages.add(() -> readers.get(subtaskId).handleSourceEvents(event));
+		}
+
+		@Override
+		public int currentParallelism() {
+			return PARALLELISM;
+		}
+
+		@Override
+		public Map<Integer, ReaderInfo> registeredReaders() {
+			return registeredReaders;
+		}
+
+		@Override
+		public void assignSplits(SplitsAssignment<BigQuerySourceSplit> newSplitAssignments) {
+			newSplitAssignments.assignment()
+					.forEach((subtaskId, splits) -> messages.add(() -> readers.get(subtaskId).addSplits(splits)));
+		}
+
+		@Override
+		public void signalNoMoreSplits(int subtaskId) {
+			messages.add(() -> readers.get(subtaskId).notifyNoMoreSplits());
+		}
+
+		@Override
+		public <T> void callAsync(Callable<T> callable, BiConsumer<T, Throwable> handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <T> void callAsync(Callable<T> callable, BiConsumer<T, Throwable> handler, long initialDelay,
+				long period) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void runInCoordinatorThread(Runnable runnable) {
+			messages.add(runnable);
+		}
+	}
+}
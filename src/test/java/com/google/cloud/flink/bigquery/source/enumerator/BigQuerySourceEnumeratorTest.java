@@ -0,0 +1,178 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.enumerator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.flink.api.connector.source.ReaderInfo;
+import org.apache.flink.api.connector.source.mocks.MockSplitEnumeratorContext;
+import org.junit.Test;
+
+import com.google.cloud.bigquery.storage.v1.ReadSession;
+import com.google.cloud.bigquery.storage.v1.ReadStream;
+import com.google.cloud.flink.bigquery.source.event.SplitStreamRequestEvent;
+import com.google.cloud.flink.bigquery.source.event.StreamProgressEvent;
+import com.google.cloud.flink.bigquery.source.event.StreamSplitAckEvent;
+import com.google.cloud.flink.bigquery.source.event.StreamSplitResultEvent;
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+
+public class BigQuerySourceEnumeratorTest {
+
+	private static final BigQuerySourceSplit STREAM_0 = new BigQuerySourceSplit("session/streams/0");
+	private static final BigQuerySourceSplit STREAM_1 = new BigQuerySourceSplit("session/streams/1");
+
+	@Test
+	public void testSplitsAreSpreadOverRequestingReaders() {
+		MockSplitEnumeratorContext<BigQuerySourceSplit> context = new MockSplitEnumeratorContext<>(2);
+		context.registerReader(new ReaderInfo(0, "localhost"));
+		context.registerReader(new ReaderInfo(1, "localhost"));
+		BigQuerySourceEnumerator enumerator = new BigQuerySourceEnumerator(context, Arrays.asList(STREAM_0, STREAM_1),
+				BigQuerySourceSplit.NO_EXPIRE_TIME, false);
+
+		enumerator.handleSplitRequest(0, "localhost");
+		enumerator.handleSplitRequest(1, "localhost");
+
+		assertThat(context.getSplitsAssignmentSequence()).hasSize(2);
+		assertThat(context.getSplitsAssignmentSequence().get(0).assignment())
+				.containsExactly(0, Collections.singletonList(STREAM_0));
+		assertThat(context.getSplitsAssignmentSequence().get(1).assignment())
+				.containsExactly(1, Collections.singletonList(STREAM_1));
+		assertThat(enumerator.snapshotState(1L).getRemainingSplits()).isEmpty();
+	}
+
+	@Test
+	public void testSplitsAddedBackAreReassigned() throws Exception {
+		MockSplitEnumeratorContext<BigQuerySourceSplit> context = new MockSplitEnumeratorContext<>(1);
+		context.registerReader(new ReaderInfo(0, "localhost"));
+		BigQuerySourceEnumerator enumerator = new BigQuerySourceEnumerator(context, Collections.emptyList(),
+				BigQuerySourceSplit.NO_EXPIRE_TIME, false);
+
+		enumerator.addSplitsBack(Collections.singletonList(STREAM_1), 0);
+		BigQuerySourceEnumState state = enumerator.snapshotState(1L);
+		BigQuerySourceEnumStateSerializer serializer = BigQuerySourceEnumStateSerializer.INSTANCE;
+		BigQuerySourceEnumState restored = serializer.deserialize(serializer.getVersion(), serializer.serialize(state));
+
+		assertThat(restored.getRemainingSplits()).containsExactly(STREAM_1);
+		assertThat(restored.getReadSessionExpireTime()).isEqualTo(BigQuerySourceSplit.NO_EXPIRE_TIME);
+	}
+
+	@Test
+	public void testStreamsOfExpiringSessionAreNotAssigned() {
+		MockSplitEnumeratorContext<BigQuerySourceSplit> context = new MockSplitEnumeratorContext<>(1);
+		context.registerReader(new ReaderInfo(0, "localhost"));
+		long expireTime = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(5);
+		BigQuerySourceEnumerator enumerator = new BigQuerySourceEnumerator(context,
+				Collections.singletonList(STREAM_0), expireTime, false);
+
+		assertThat(BigQuerySourceSplit.isReadSessionExpiring(expireTime, System.currentTimeMillis())).isTrue();
+		assertThrows(IllegalStateException.class, () -> enumerator.handleSplitRequest(0, "localhost"));
+		assertThat(context.getSplitsAssignmentSequence()).isEmpty();
+		assertThat(BigQuerySourceSplit.isReadSessionExpiring(BigQuerySourceSplit.NO_EXPIRE_TIME,
+				System.currentTimeMillis())).isFalse();
+	}
+
+	@Test
+	public void testIdleReaderGetsRemainderOfSlowestStream() throws Exception {
+		MockSplitEnumeratorContext<BigQuerySourceSplit> context = new MockSplitEnumeratorContext<>(3);
+		for (int subtask = 0; subtask < 3; subtask++) {
+			context.registerReader(new ReaderInfo(subtask, "localhost"));
+		}
+		BigQuerySourceEnumerator enumerator = new BigQuerySourceEnumerator(context, Arrays.asList(STREAM_0, STREAM_1),
+				BigQuerySourceSplit.NO_EXPIRE_TIME, true);
+		enumerator.handleSplitRequest(0, "localhost");
+		enumerator.handleSplitRequest(1, "localhost");
+		enumerator.handleSourceEvent(0, new StreamProgressEvent(STREAM_0.splitId(), 0.5));
+		enumerator.handleSourceEvent(1, new StreamProgressEvent(STREAM_1.splitId(), 0.2));
+
+		enumerator.handleSplitRequest(2, "localhost");
+
+		assertThat(context.getSplitsAssignmentSequence()).hasSize(2);
+		assertThat(context.getSentSourceEvent()).containsKey(1);
+		SplitStreamRequestEvent request = (SplitStreamRequestEvent) context.getSentSourceEvent().get(1).get(0);
+		assertThat(request.getFraction()).isWithin(1e-9).of(0.6);
+
+		BigQuerySourceSplit remainder = new BigQuerySourceSplit("session/streams/1-remainder");
+		enumerator.handleSourceEvent(1, new StreamSplitResultEvent(remainder));
+
+		assertThat(context.getSplitsAssignmentSequence()).hasSize(3);
+		assertThat(context.getSplitsAssignmentSequence().get(2).assignment())
+				.containsExactly(2, Collections.singletonList(remainder));
+		assertThat(context.getSentSourceEvent().get(1).get(1)).isInstanceOf(StreamSplitAckEvent.class);
+	}
+
+	@Test
+	public void testIdleReaderFinishesWhenNoStreamCanBeSplit() throws Exception {
+		MockSplitEnumeratorContext<BigQuerySourceSplit> context = new MockSplitEnumeratorContext<>(2);
+		context.registerReader(new ReaderInfo(0, "localhost"));
+		context.registerReader(new ReaderInfo(1, "localhost"));
+		BigQuerySourceEnumerator enumerator = new BigQuerySourceEnumerator(context,
+				Collections.singletonList(STREAM_0), BigQuerySourceSplit.NO_EXPIRE_TIME, true);
+		enumerator.handleSplitRequest(0, "localhost");
+		enumerator.handleSourceEvent(0, new StreamProgressEvent(STREAM_0.splitId(), 0.0));
+
+		enumerator.handleSplitRequest(1, "localhost");
+		assertThat(context.getSentSourceEvent().get(0)).hasSize(1);
+		enumerator.handleSourceEvent(0, new StreamSplitResultEvent(null));
+
+		// the stream of subtask 0 is not asked again, so subtask 1 is done
+		assertThat(context.getSentSourceEvent().get(0)).hasSize(1);
+		assertThat(context.getSplitsAssignmentSequence()).hasSize(1);
+		assertThat(enumerator.snapshotState(1L).getRemainingSplits()).isEmpty();
+	}
+
+	@Test
+	public void testReaderWithoutStreamProgressIsNotAskedToSplit() throws Exception {
+		MockSplitEnumeratorContext<BigQuerySourceSplit> context = new MockSplitEnumeratorContext<>(2);
+		context.registerReader(new ReaderInfo(0, "localhost"));
+		context.registerReader(new ReaderInfo(1, "localhost"));
+		BigQuerySourceEnumerator enumerator = new BigQuerySourceEnumerator(context, Arrays.asList(STREAM_0, STREAM_1),
+				BigQuerySourceSplit.NO_EXPIRE_TIME, true);
+		// subtask 0 reads both streams as a group, which reports no progress
+		enumerator.handleSplitRequest(0, "localhost");
+		enumerator.handleSplitRequest(0, "localhost");
+
+		enumerator.handleSplitRequest(1, "localhost");
+
+		assertThat(context.getSentSourceEvent()).isEmpty();
+		assertThat(context.getSplitsAssignmentSequence()).hasSize(2);
+	}
+
+	@Test
+	public void testReadSessionIsCreatedWhenTheEnumeratorStarts() {
+		MockSplitEnumeratorContext<BigQuerySourceSplit> context = new MockSplitEnumeratorContext<>(1);
+		context.registerReader(new ReaderInfo(0, "localhost"));
+		AtomicInteger createdSessions = new AtomicInteger();
+		BigQuerySourceEnumerator enumerator = new BigQuerySourceEnumerator(context, () -> {
+			createdSessions.incrementAndGet();
+			return ReadSession.newBuilder().addStreams(ReadStream.newBuilder().setName(STREAM_0.getStreamName()))
+					.build();
+		}, false);
+		assertThat(createdSessions.get()).isEqualTo(0);
+
+		enumerator.start();
+		enumerator.handleSplitRequest(0, "localhost");
+
+		assertThat(createdSessions.get()).isEqualTo(1);
+		assertThat(context.getSplitsAssignmentSequence().get(0).assignment())
+				.containsExactly(0, Collections.singletonList(STREAM_0));
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.reader;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.connector.base.source.reader.RecordsBySplits;
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitReader;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitsChange;
+import org.apache.flink.core.io.InputStatus;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.junit.Test;
+
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+
+/** Drives a {@link BigQuerySourceReader} the way the enumerator does, one split per request. */
+public class BigQuerySourceReaderTest {
+
+	private static final long ROWS_PER_SPLIT = 2500;
+	private static final long ROWS_PER_FETCH = 500;
+	private static final RowData ROW = GenericRowData.of(1L);
+
+	@Test
+	public void testLimitSpansSplitsAssignedOneAfterAnother() throws Exception {
+		Queue<BigQuerySourceSplit> splits = new ArrayDeque<>();
+		for (int i = 0; i < 4; i++) {
+			splits.add(new BigQuerySourceSplit("stream-" + i));
+		}
+		List<String> openedSplits = new ArrayList<>();
+		TestingReaderContext context = new TestingReaderContext(0);
+		CountingReaderOutput output = new CountingReaderOutput();
+
+		RowLimit limit = new RowLimit(3000);
+		BigQuerySourceReader reader = new BigQuerySourceReader(
+				splitHandoff -> new GeneratingSplitReader(limit, openedSplits), null, 1, limit,
+				new Configuration(), context);
+		try {
+			reader.start();
+			InputStatus status;
+			while ((status = reader.pollNext(output)) != InputStatus.END_OF_INPUT) {
+				if (status == InputStatus.NOTHING_AVAILABLE) {
+					assignRequestedSplits(reader, context, splits);
+					reader.isAvailable().get(30, TimeUnit.SECONDS);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		// the idle fetcher of the first split exits, a new split reader reads the second one
+		assertThat(output.getRows()).isEqualTo(3000);
+		// the second split reaches the limit, no split is requested after it
+		assertThat(context.getSplitRequests()).isEqualTo(2);
+		assertThat(splits).hasSize(2);
+		assertThat(openedSplits).hasSize(2);
+	}
+
+	private static void assignRequestedSplits(BigQuerySourceReader reader, TestingReaderContext context,
+			Queue<BigQuerySourceSplit> splits) {
+		for (int requests = context.takeSplitRequests(); requests > 0; requests--) {
+			BigQuerySourceSplit split = splits.poll();
+			if (split == null) {
+				reader.notifyNoMoreSplits();
+			} else {
+				reader.addSplits(Collections.singletonList(split));
+			}
+		}
+	}
+
+	/**
+	 * Reads {@link #ROWS_PER_SPLIT} rows of every split, one split after another,
+	 * and counts them against the limit like {@link BigQuerySplitReader} does.
+	 */
+	private static class GeneratingSplitReader implements SplitReader<RowData, BigQuerySourceSplit> {
+
+		private final RowLimit limit;
+		private final List<String> openedSplits;
+		private final Queue<BigQuerySourceSplit> splits = new ArrayDeque<>();
+		private BigQuerySourceSplit currentSplit;
+		private long remainingRows;
+
+		GeneratingSplitReader(RowLimit limit, List<String> openedSplits) {
+			this.limit = limit;
+			this.openedSplits = openedSplits;
+		}
+
+		@Override
+		public RecordsWithSplitIds<RowData> fetch() {
+			RecordsBySplits.Builder<RowData> records = new RecordsBySplits.Builder<>();
+			if (currentSplit == null) {
+				currentSplit = splits.poll();
+				if (currentSplit == null) {
+					return records.build();
+				}
+				openedSplits.add(currentSplit.splitId());
+				remainingRows = ROWS_PER_SPLIT;
+			}
+			long rows = Math.min(ROWS_PER_FETCH, remainingRows);
+			long taken = limit.take(rows);
+			for (long i = 0; i < taken; i++) {
+				records.add(currentSplit.splitId(), ROW);
+			}
+			remainingRows -= rows;
+			if (remainingRows == 0 || taken < rows) {
+				records.addFinishedSplit(currentSplit.splitId());
+				currentSplit = null;
+			}
+			return records.build();
+		}
+
+		@Override
+		public void handleSplitsChanges(SplitsChange<BigQuerySourceSplit> splitsChanges) {
+			splits.addAll(splitsChanges.splits());
+		}
+
+		@Override
+		public void wakeUp() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
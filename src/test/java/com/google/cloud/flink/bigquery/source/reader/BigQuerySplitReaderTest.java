@@ -0,0 +1,177 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.reader;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.flink.api.connector.source.SplitEnumerator;
+import org.apache.flink.api.connector.source.mocks.MockSplitEnumeratorContext;
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitsAddition;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.runtime.typeutils.InternalTypeInfo;
+import org.apache.flink.table.types.logical.BigIntType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.VarCharType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.cloud.bigquery.storage.v1.BigQueryReadGrpc;
+import com.google.cloud.flink.bigquery.ArrowRowDataDeserializationSchema;
+import com.google.cloud.flink.bigquery.BigQueryReadSession;
+import com.google.cloud.flink.bigquery.common.NoOpBigQueryStorageReadRowsTracer;
+import com.google.cloud.flink.bigquery.fake.FakeBigQueryStorageServer;
+import com.google.cloud.flink.bigquery.source.BigQuerySource;
+import com.google.cloud.flink.bigquery.source.enumerator.BigQuerySourceEnumState;
+import com.google.cloud.flink.bigquery.source.split.BigQuerySourceSplit;
+import io.grpc.Status;
+
+/** Reads sessions of a {@link FakeBigQueryStorageServer}, without any access to BigQuery. */
+public class BigQuerySplitReaderTest {
+
+	private static final RowType ROW_TYPE = RowType.of(
+			new LogicalType[] { new BigIntType(), new VarCharType(VarCharType.MAX_LENGTH) },
+			new String[] { "id", "name" });
+
+	private FakeBigQueryStorageServer server;
+	private Map<String, String> options;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new FakeBigQueryStorageServer().addTable("project", "dataset", "table", ROW_TYPE, 10_000)
+				.setMaxStreams(4).setStreamSkew(2).setRowsPerResponse(500).start();
+		options = server.getSourceOptions("project", "dataset", "table");
+		options.put("maxParallelism", "4");
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		server.close();
+	}
+
+	@Test
+	public void testReadsAllRowsDespiteAnInjectedError() throws Exception {
+		List<BigQuerySourceSplit> splits = createSplits();
+		server.injectErrors(BigQueryReadGrpc.getReadRowsMethod(), Status.UNAVAILABLE, 1, 1000);
+
+		BigQuerySplitReader reader = createReader(1, -1);
+		try {
+			assertThat(readAll(reader, splits)).isEqualTo(10_000);
+		} finally {
+			reader.close();
+		}
+		assertThat(server.getCallCount(BigQueryReadGrpc.getReadRowsMethod())).isEqualTo(splits.size() + 1);
+	}
+
+	@Test
+	public void testReadsStreamGroupsOneAfterAnother() throws Exception {
+		List<BigQuerySourceSplit> splits = createSplits();
+
+		BigQuerySplitReader reader = createReader(2, -1);
+		try {
+			// two groups of two streams, decoded by the same executor
+			assertThat(readAll(reader, splits)).isEqualTo(10_000);
+		} finally {
+			reader.close();
+		}
+		assertThat(server.getCallCount(BigQueryReadGrpc.getReadRowsMethod())).isEqualTo(splits.size());
+	}
+
+	@Test
+	public void testStopsReadingOnceTheLimitIsReached() throws Exception {
+		List<BigQuerySourceSplit> splits = createSplits();
+
+		BigQuerySplitReader reader = createReader(1, 1200);
+		try {
+			assertThat(readAll(reader, splits)).isEqualTo(1200);
+		} finally {
+			reader.close();
+		}
+		// the first stream holds more rows than the limit, no other stream is read
+		assertThat(server.getCallCount(BigQueryReadGrpc.getReadRowsMethod())).isEqualTo(1);
+	}
+
+	@Test
+	public void testRestoreWithinTheExpiryMarginReadsTheRowsOnlyOnce() throws Exception {
+		// the session is still valid, but expires too soon to resume it
+		long expireTime = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(30);
+		List<BigQuerySourceSplit> splits = new ArrayList<>();
+		for (BigQuerySourceSplit split : createSplits()) {
+			splits.add(new BigQuerySourceSplit(split.getStreamName(), 100, expireTime));
+		}
+
+		BigQuerySource source = new BigQuerySource(
+				new ArrowRowDataDeserializationSchema(ROW_TYPE, InternalTypeInfo.of(ROW_TYPE)), options);
+		SplitEnumerator<BigQuerySourceSplit, BigQuerySourceEnumState> enumerator = source.restoreEnumerator(
+				new MockSplitEnumeratorContext<>(1), new BigQuerySourceEnumState(splits.subList(2, 4), expireTime));
+		// the enumerator recreates the session, none of the checkpointed streams is assigned again
+		assertThat(enumerator.snapshotState(1L).getRemainingSplits()).isEmpty();
+
+		BigQuerySplitReader reader = createReader(1, -1);
+		try {
+			assertThat(readAll(reader, splits.subList(0, 2))).isEqualTo(0);
+		} finally {
+			reader.close();
+		}
+		assertThat(server.getCallCount(BigQueryReadGrpc.getReadRowsMethod())).isEqualTo(0);
+	}
+
+	private List<BigQuerySourceSplit> createSplits() throws IOException {
+		return Arrays.asList(BigQuerySourceSplit.fromReadSession(BigQueryReadSession.getReadsession(options)));
+	}
+
+	private BigQuerySplitReader createReader(int streamsPerReader, long limit) throws IOException {
+		return new BigQuerySplitReader(() -> {
+			try {
+				return BigQueryReadSession.createReadClient(options);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}, BigQueryReadSession.getClientKey(options),
+				new ArrowRowDataDeserializationSchema(ROW_TYPE, InternalTypeInfo.of(ROW_TYPE)),
+				new StreamSplitHandoff(), BigQueryReadSession.getConfig(options),
+				streamName -> NoOpBigQueryStorageReadRowsTracer.INSTANCE, streamsPerReader, new RowLimit(limit));
+	}
+
+	/** Fetches until all splits are finished, returns the number of rows. */
+	private static long readAll(BigQuerySplitReader reader, List<BigQuerySourceSplit> splits) throws IOException {
+		reader.handleSplitsChanges(new SplitsAddition<>(splits));
+		Set<String> finishedSplits = new HashSet<>();
+		long rows = 0;
+		while (finishedSplits.size() < splits.size()) {
+			RecordsWithSplitIds<RowData> records = reader.fetch();
+			while (records.nextSplit() != null) {
+				while (records.nextRecordFromSplit() != null) {
+					rows++;
+				}
+			}
+			finishedSplits.addAll(records.finishedSplits());
+			records.recycle();
+		}
+		return rows;
+	}
+}
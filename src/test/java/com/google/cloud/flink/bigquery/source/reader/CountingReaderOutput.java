@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.reader;
+
+import org.apache.flink.api.common.eventtime.Watermark;
+import org.apache.flink.api.connector.source.ReaderOutput;
+import org.apache.flink.api.connector.source.SourceOutput;
+import org.apache.flink.table.data.RowData;
+
+/** A reader output which only counts the rows. */
+public class CountingReaderOutput implements ReaderOutput<RowData> {
+
+	private long rows;
+
+	public long getRows() {
+		return rows;
+	}
+
+	@Override
+	public void collect(RowData record) {
+		rows++;
+	}
+
+	@Override
+	public void collect(RowData record, long timestamp) {
+		rows++;
+	}
+
+	@Override
+	public void emitWatermark(Watermark watermark) {
+	}
+
+	@Override
+	public void markIdle() {
+	}
+
+	@Override
+	public SourceOutput<RowData> createOutputForSplit(String splitId) {
+		return this;
+	}
+
+	@Override
+	public void releaseOutputForSplit(String splitId) {
+	}
+}
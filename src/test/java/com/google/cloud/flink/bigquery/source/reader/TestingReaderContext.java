@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.flink.api.connector.source.SourceEvent;
+import org.apache.flink.api.connector.source.SourceReaderContext;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.apache.flink.util.SimpleUserCodeClassLoader;
+import org.apache.flink.util.UserCodeClassLoader;
+
+/**
+ * A reader context which collects the split requests and events of a source
+ * reader, for the test to answer them outside of the reader's calls.
+ */
+public class TestingReaderContext implements SourceReaderContext {
+
+	private final int subtaskId;
+	private final List<SourceEvent> sentEvents = new ArrayList<>();
+	private int splitRequests;
+	private int unansweredSplitRequests;
+
+	public TestingReaderContext(int subtaskId) {
+		this.subtaskId = subtaskId;
+	}
+
+	/** All split requests the reader sent. */
+	public int getSplitRequests() {
+		return splitRequests;
+	}
+
+	/** Returns the number of split requests sent since the last call. */
+	public int takeSplitRequests() {
+		int requests = unansweredSplitRequests;
+		unansweredSplitRequests = 0;
+		return requests;
+	}
+
+	/** Returns the events sent to the coordinator since the last call. */
+	public List<SourceEvent> takeSentEvents() {
+		List<SourceEvent> events = new ArrayList<>(sentEvents);
+		sentEvents.clear();
+		return events;
+	}
+
+	@Override
+	public MetricGroup metricGroup() {
+		return new UnregisteredMetricsGroup();
+	}
+
+	@Override
+	public Configuration getConfiguration() {
+		return new Configuration();
+	}
+
+	@Override
+	public String getLocalHostName() {
+		return "localhost";
+	}
+
+	@Override
+	public int getIndexOfSubtask() {
+		return subtaskId;
+	}
+
+	@Override
+	public void sendSplitRequest() {
+		splitRequests++;
+		unansweredSplitRequests++;
+	}
+
+	@Override
+	public void sendSourceEventToCoordinator(SourceEvent sourceEvent) {
+		sentEvents.add(sourceEvent);
+	}
+
+	@Override
+	public UserCodeClassLoader getUserCodeClassLoader() {
+		return SimpleUserCodeClassLoader.create(getClass().getClassLoader());
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.flink.bigquery.source.split;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.junit.Test;
+
+public class BigQuerySourceSplitSerializerTest {
+
+	private static final BigQuerySourceSplitSerializer SERIALIZER = BigQuerySourceSplitSerializer.INSTANCE;
+
+	@Test
+	public void testOffsetOfEmittedRowsIsCheckpointed() throws IOException {
+		BigQuerySourceSplitState state = new BigQuerySourceSplitState(
+				new BigQuerySourceSplit("session/streams/0", 40L, 1_000L));
+		state.incrementOffset();
+		state.incrementOffset();
+
+		BigQuerySourceSplit restored = SERIALIZER.deserialize(SERIALIZER.getVersion(),
+				SERIALIZER.serialize(state.toBigQuerySourceSplit()));
+
+		assertThat(restored.getStreamName()).isEqualTo("session/streams/0");
+		assertThat(restored.getOffset()).isEqualTo(42L);
+		assertThat(restored.getReadSessionExpireTime()).isEqualTo(1_000L);
+		assertThat(restored.isReadSessionExpired(999L)).isFalse();
+		assertThat(restored.isReadSessionExpired(1_000L)).isTrue();
+	}
+
+	@Test
+	public void testSplitsOfVersionOneStartFromTheBeginning() throws IOException {
+		DataOutputSerializer out = new DataOutputSerializer(64);
+		out.writeUTF("session/streams/1");
+
+		BigQuerySourceSplit restored = SERIALIZER.deserialize(1, out.getCopyOfBuffer());
+
+		assertThat(restored).isEqualTo(new BigQuerySourceSplit("session/streams/1"));
+		assertThat(restored.getOffset()).isEqualTo(0L);
+	}
+}